@@ -16,7 +16,10 @@
 package net.l2emuproject.proxy;
 
 import static net.l2emuproject.proxy.network.AbstractL2ClientConnections.PROPERTY_ACC_INTERVAL;
+import static net.l2emuproject.proxy.network.AbstractL2ServerConnections.PROPERTY_CONNECT_TIMEOUT;
+import static net.l2emuproject.proxy.network.AbstractL2ServerConnections.PROPERTY_MAX_PENDING_CONNECTIONS;
 import static net.l2emuproject.proxy.network.ProxyConnections.PROPERTY_RW_INTERVAL;
+import static net.l2emuproject.proxy.network.ProxyConnections.PROPERTY_RW_THREADS;
 
 import java.io.IOException;
 import java.net.BindException;
@@ -33,7 +36,8 @@ import net.l2emuproject.lang.management.StartupManager.StartupHook;
 import net.l2emuproject.lang.management.TerminationStatus;
 import net.l2emuproject.proxy.config.ConfigMarker;
 import net.l2emuproject.proxy.config.ProxyConfig;
-import net.l2emuproject.proxy.io.packetlog.HistoricalLogIOThread;
+import net.l2emuproject.proxy.io.packetlog.HistoricalLogWriterPool;
+import net.l2emuproject.proxy.network.ForwardedNotificationManager;
 import net.l2emuproject.proxy.network.L2AuthSocket;
 import net.l2emuproject.proxy.network.ListenSocket;
 import net.l2emuproject.proxy.network.ProxySocket;
@@ -120,6 +124,13 @@ public class L2Proxy
 			System.setProperty(L2LoginServerConnections.class.getName() + "#" + PROPERTY_RW_INTERVAL, String.valueOf(ProxyConfig.RW_SELECTOR_INTERVAL_LS));
 			System.setProperty(L2GameClientConnections.class.getName() + "#" + PROPERTY_RW_INTERVAL, String.valueOf(ProxyConfig.RW_SELECTOR_INTERVAL_GC));
 			System.setProperty(L2GameServerConnections.class.getName() + "#" + PROPERTY_RW_INTERVAL, String.valueOf(ProxyConfig.RW_SELECTOR_INTERVAL_GS));
+			System.setProperty(L2GameClientConnections.class.getName() + "#" + PROPERTY_RW_THREADS, String.valueOf(ProxyConfig.RW_SELECTOR_THREADS_GC));
+			System.setProperty(L2GameServerConnections.class.getName() + "#" + PROPERTY_RW_THREADS, String.valueOf(ProxyConfig.RW_SELECTOR_THREADS_GS));
+			
+			System.setProperty(L2LoginServerConnections.class.getName() + "#" + PROPERTY_MAX_PENDING_CONNECTIONS, String.valueOf(ProxyConfig.MAX_PENDING_SERVER_CONNECTIONS));
+			System.setProperty(L2GameServerConnections.class.getName() + "#" + PROPERTY_MAX_PENDING_CONNECTIONS, String.valueOf(ProxyConfig.MAX_PENDING_SERVER_CONNECTIONS));
+			System.setProperty(L2LoginServerConnections.class.getName() + "#" + PROPERTY_CONNECT_TIMEOUT, String.valueOf(ProxyConfig.SERVER_CONNECT_TIMEOUT));
+			System.setProperty(L2GameServerConnections.class.getName() + "#" + PROPERTY_CONNECT_TIMEOUT, String.valueOf(ProxyConfig.SERVER_CONNECT_TIMEOUT));
 			logger.spam("Sleep intervals set.");
 		}
 		
@@ -208,12 +219,14 @@ public class L2Proxy
 			
 			logger.trace("Setting up automatic packet logging…");
 			{
-				final HistoricalLogIOThread al = HistoricalLogIOThread.getInstance();
+				final HistoricalLogWriterPool al = HistoricalLogWriterPool.getInstance();
 				lcc.addConnectionListener(al);
 				lcc.addPacketListener(al);
+				lsc.addConnectionListener(al);
 				lsc.addPacketListener(al);
 				gcc.addConnectionListener(al);
 				gcc.addPacketListener(al);
+				L2GameServerConnections.getInstance().addConnectionListener(al);
 				L2GameServerConnections.getInstance().addPacketListener(al);
 			}
 			logger.spam("…SUCCESS");
@@ -261,6 +274,16 @@ public class L2Proxy
 			{
 				LOG.info("Shutting down the proxy server...");
 				
+				LOG.info("Forwarding latency to login clients (I/O interval " + ProxyConfig.RW_SELECTOR_INTERVAL_LC + " ms): " + L2LoginClientConnections.getInstance().getForwardingLatency());
+				LOG.info("Forwarding latency to game clients (I/O interval " + ProxyConfig.RW_SELECTOR_INTERVAL_GC + " ms): " + L2GameClientConnections.getInstance().getForwardingLatency());
+				LOG.info("Forwarding latency to login servers (I/O interval " + ProxyConfig.RW_SELECTOR_INTERVAL_LS + " ms): " + L2LoginServerConnections.getInstance().getForwardingLatency());
+				LOG.info("Forwarding latency to game servers (I/O interval " + ProxyConfig.RW_SELECTOR_INTERVAL_GS + " ms): " + L2GameServerConnections.getInstance().getForwardingLatency());
+				LOG.info("Game client I/O threads:\r\n" + L2GameClientConnections.getInstance().getIOThreadStats());
+				LOG.info("Game server I/O threads:\r\n" + L2GameServerConnections.getInstance().getIOThreadStats());
+				LOG.info("Packet log writers:\r\n" + HistoricalLogWriterPool.getInstance().getWriterStats());
+				LOG.info("Packet log open latency: " + HistoricalLogWriterPool.getInstance().getOpenLatency());
+				LOG.info("Packet notification executors:\r\n" + ForwardedNotificationManager.getInstance().getExecutorStats());
+				
 				LOG.info("Proxy login listener...");
 				L2LoginClientConnections.getInstance().shutdown();
 				LOG.info("Proxy game listener...");
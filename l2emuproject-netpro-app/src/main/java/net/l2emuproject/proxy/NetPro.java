@@ -54,7 +54,7 @@ import net.l2emuproject.lang.management.ShutdownManager;
 import net.l2emuproject.lang.management.TerminationStatus;
 import net.l2emuproject.proxy.config.ProxyConfig;
 import net.l2emuproject.proxy.io.definitions.VersionnedPacketTable;
-import net.l2emuproject.proxy.io.packetlog.HistoricalLogIOThread;
+import net.l2emuproject.proxy.io.packetlog.HistoricalLogWriterPool;
 import net.l2emuproject.proxy.network.game.client.L2GameClientConnections;
 import net.l2emuproject.proxy.network.game.server.L2GameServerConnections;
 import net.l2emuproject.proxy.network.login.client.L2LoginClientConnections;
@@ -553,7 +553,7 @@ public class NetPro extends Application implements NetProThreadPriority
 				final FXMLLoader loader = new FXMLLoader(FXUtils.getFXML(MainWindowController.class), UIStrings.getBundle());
 				final Scene scene = new Scene(loader.load());
 				final MainWindowController controller = loader.getController();
-				HistoricalLogIOThread.getInstance().setCaptureController(controller);
+				HistoricalLogWriterPool.getInstance().setCaptureController(controller);
 				// 3.2 LINK LOGGING WITH UI CONSOLE
 				//final Timeline tlLogging = new Timeline(new KeyFrame(Duration.ZERO, evt -> {
 				//	for (String msg; (msg = PENDING_LOG_ENTRIES.poll()) != null;)
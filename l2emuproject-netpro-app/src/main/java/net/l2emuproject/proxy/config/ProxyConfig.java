@@ -42,14 +42,42 @@ public final class ProxyConfig extends ConfigPropertiesLoader
 	/** RW thread sleep time for game server connections. */
 	@ConfigField(name = "PacketIOIntervalForGameServers", value = "3", eternal = true, comment = { "How often (ms) to do I/O for packets sent by/to game clients.", "Directly affects how fast packets are forwarded through the proxy.", "The value should generally be as low as your CPU can handle." })
 	public static int RW_SELECTOR_INTERVAL_GS;
+	/** RW thread count for game client connections. */
+	@ConfigField(name = "PacketIOThreadsForGameClients", value = "1", eternal = true, comment = { "How many threads (each with its own selector) do I/O for packets sent by/to game clients.", "Connections are spread among these threads, so that a busy session does not delay others.", "Should not exceed the number of available CPU cores." })
+	public static int RW_SELECTOR_THREADS_GC;
+	/** RW thread count for game server connections. */
+	@ConfigField(name = "PacketIOThreadsForGameServers", value = "1", eternal = true, comment = { "How many threads (each with its own selector) do I/O for packets sent by/to game servers.", "Connections are spread among these threads, so that a busy session does not delay others.", "Should not exceed the number of available CPU cores." })
+	public static int RW_SELECTOR_THREADS_GS;
 	
 	/** Acceptor thread sleep time for login client connections. */
 	@ConfigField(name = "ConnectionIntervalForLoginClients", value = "2500", eternal = true, comment = { "How often (ms) to accept pending connections from login (authd) clients.", "In order not to waste CPU cycles, this should be set just a little below the built-in client's connection timeout." })
 	public static int ACC_SELECTOR_INTERVAL_LOGIN;
 	/** Acceptor thread sleep time for game client connections. */
 	@ConfigField(name = "ConnectionIntervalForGameClients", value = "750", eternal = true, comment = { "How often (ms) to accept pending connections from game clients.", "In order not to waste CPU cycles, this should be set just a little below the built-in client's connection timeout." })
-	@ConfigGroupEnding(name = "Performance")
 	public static int ACC_SELECTOR_INTERVAL_GAME;
+	/** Maximum amount of simultaneously pending outgoing connections per server type. */
+	@ConfigField(name = "MaxPendingServerConnections", value = "10", eternal = true, comment = { "How many connections to login (authd) or game servers may be pending at once.", "Clients that connect while this many connections to the same type of server are pending will be disconnected.", "Raise this if many clients (re)connect at once." })
+	public static int MAX_PENDING_SERVER_CONNECTIONS;
+	/** Outgoing connection timeout. */
+	@ConfigField(name = "ServerConnectTimeout", value = "5000", eternal = true, comment = { "How long (ms) to wait for a connection to a login (authd) or game server to be established.", "A server that takes longer to accept connections is most likely unplayable anyway." })
+	public static int SERVER_CONNECT_TIMEOUT;
+	
+	/** Compression type of newly written packet logs. */
+	@ConfigField(name = "PacketLogCompression", value = "1", eternal = false, comment = { "How to compress packets written to historical packet logs: 0 - no compression, 1 - deflate, 2 - fast LZ block compression.", "Fast compression uses several times less CPU, but produces larger logs, which cannot be opened by older versions.", "Applies to logs opened after the change." })
+	public static int PACKET_LOG_COMPRESSION;
+	/** Historical packet log writer thread count. */
+	@ConfigField(name = "PacketLogWriterThreads", value = "2", eternal = true, comment = { "How many threads write historical packet logs.", "Each session is logged by a single thread, so that compressing and writing a busy session's log does not delay others.", "Should not exceed the number of available CPU cores." })
+	public static int PACKET_LOG_WRITER_THREADS;
+	/** Maximum amount of pending actions per packet log writer. */
+	@ConfigField(name = "PacketLogWriterQueueCapacity", value = "8192", eternal = true, comment = { "How many packets may wait to be logged by a single packet log writer thread.", "Bounds memory used by packets that have been forwarded, but not yet logged." })
+	public static int PACKET_LOG_WRITER_QUEUE_CAPACITY;
+	/** What to do when a packet log writer queue is full. */
+	@ConfigField(name = "PacketLogWriterOverflow", value = "2", eternal = false, comment = { "What to do with packets that do not fit in a packet log writer's queue: 0 - wait for space, 1 - do not log them, 2 - spill them to a temporary file.", "Waiting delays packet forwarding until the log catches up. A spill that cannot be written fast enough discards packets once as many as the queue capacity are waiting.", "Discarded packets are counted and reported on shutdown." })
+	public static int PACKET_LOG_WRITER_OVERFLOW;
+	/** Maximum amount of packets kept for a session whose log is not yet open. */
+	@ConfigField(name = "PacketLogPendingPacketLimit", value = "1024", eternal = false, comment = { "How many packets may be kept in memory for a session whose server connection is not yet established.", "Packets beyond this limit are not logged." })
+	@ConfigGroupEnding(name = "Performance")
+	public static int PACKET_LOG_PENDING_PACKET_LIMIT;
 	
 	/** Whether the proxy should read scripts from cache, if one is present. */
 	@ConfigGroupBeginning(name = "Debug")
@@ -58,14 +86,31 @@ public final class ProxyConfig extends ConfigPropertiesLoader
 	
 	/** Whether to enable partial MMOCore activity logging. */
 	@ConfigField(name = "MMOCoreDebug", value = "false", eternal = false, comment = "Whether to enable a part of MMOCore debug logging")
-	@ConfigGroupEnding(name = "Debug")
 	public static boolean MMO_DEBUG;
 	
+	/** Whether to validate packets that do not have to be enumerated against their definitions. */
+	@ConfigField(name = "ValidateSkippedPackets", value = "false", eternal = false, comment = { "Whether to read packets that no script or view needs against their definitions anyway, so that malformed definitions are reported.", "Costs as much as enumerating every packet." })
+	@ConfigGroupEnding(name = "Debug")
+	public static boolean VALIDATE_SKIPPED_PACKETS;
+	
 	/** Whether to open tabs for login connections. */
 	@ConfigGroupBeginning(name = "GUI")
 	@ConfigField(name = "NoTabsForLoginConnections", value = "false", eternal = false, comment = { "If true, only connections to game servers will open tabs in the GUI, pretty much like in l2phx (you can still open login packet logs as usual).", "If false, every incoming connection will automatically open a tab in the GUI, regardless of type." })
 	public static boolean NO_TABS_FOR_LOGIN_CONNECTIONS;
 	
+	/** Maximum amount of packets kept by a live connection tab. */
+	@ConfigField(name = "LiveTabPacketLimit", value = "0", eternal = false, comment = { "How many packets a tab of a live connection keeps in memory. 0 - no limit.", "Once any live tab limit is exceeded, the oldest packets are evicted until all limits are met with an eighth to spare.", "Applies to tabs opened after the change." })
+	public static int LIVE_TAB_PACKET_LIMIT;
+	/** Maximum age of packets kept by a live connection tab. */
+	@ConfigField(name = "LiveTabTimeLimit", value = "0", eternal = false, comment = { "How many minutes of packets (counting back from the newest one) a tab of a live connection keeps in memory. 0 - no limit.", "Applies to tabs opened after the change." })
+	public static int LIVE_TAB_TIME_LIMIT;
+	/** Maximum size of packets kept by a live connection tab. */
+	@ConfigField(name = "LiveTabMemoryLimit", value = "0", eternal = false, comment = { "How many megabytes of packet bodies a tab of a live connection keeps in memory. 0 - no limit.", "Bodies are kept in memory-mapped temporary files; about 23 additional bytes per packet are kept on the Java heap.", "Applies to tabs opened after the change." })
+	public static int LIVE_TAB_MEMORY_LIMIT;
+	/** Whether to keep packets evicted from live connection tabs. */
+	@ConfigField(name = "LiveTabSpillEvictedPackets", value = "true", eternal = false, comment = { "Whether packets evicted from a tab of a live connection are kept in a temporary file, so that they can be opened in a separate tab.", "The file is deleted once the tab is closed." })
+	public static boolean LIVE_TAB_SPILL_EVICTED_PACKETS;
+	
 	/** Amount of packets to be read from file before yielding CPU time */
 	@ConfigField(name = "PacketLogLoadCpuYieldThreshold", value = "0", eternal = false, comment = { "Specifies the amount of packets read from disk, after which CPU time will be yielded for other tasks.", "0 disables yielding and will deliver the fastest loading performance. The lower the value, the slower packets will be read from disk.", "Only enable this feature if you experience system-wide stuttering during packet loading (excessive DPC latency in Win32 terms)." })
 	public static int PACKET_LOG_LOADING_CPU_YIELD_THRESHOLD;
@@ -65,9 +65,9 @@ public interface IOConstants
 	long LOG_MAGIC_INCOMPLETE = 0xF411_F411_F411_F411L;
 	/** Default packet log file extension */
 	String LOG_EXTENSION = "plog";
-	/** Version of packet log file format for files written by this application. */
-	int LOG_VERSION = 10;
-	/** Current packet log compression type (deflate) */
+	/** Version of packet log file format for files written by this application. [since 11, each compressed block can be inflated independently] */
+	int LOG_VERSION = 11;
+	/** Default packet log compression type (deflate); the actual type is configurable and recorded in each log file */
 	int COMPRESSION_TYPE = 1;
 	/** Absolute position of the header size field in file */
 	int LOG_HEADER_SIZE_POS = 8 + 1;
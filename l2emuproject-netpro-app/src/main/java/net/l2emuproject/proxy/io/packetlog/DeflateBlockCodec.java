@@ -0,0 +1,127 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.io.packetlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import net.l2emuproject.proxy.io.NewIOHelper;
+
+/**
+ * Compresses each packet log block as raw deflate data, fully flushed so that blocks do not depend on each other.<BR>
+ * <BR>
+ * The trailing {@code 00 00 FF FF} flush marker is not stored in file.
+ * 
+ * @author _dev_
+ */
+final class DeflateBlockCodec implements LogBlockCodec
+{
+	/** Compression type in log file header. */
+	static final int COMPRESSION_TYPE = 1;
+	/** Shared instance. */
+	static final DeflateBlockCodec INSTANCE = new DeflateBlockCodec();
+	/** Flush marker omitted at the end of each block. */
+	static final byte[] OMITTED = { 0, 0, (byte)0xFF, (byte)0xFF };
+	
+	private DeflateBlockCodec()
+	{
+		// singleton
+	}
+	
+	@Override
+	public int getCompressionType()
+	{
+		return COMPRESSION_TYPE;
+	}
+	
+	@Override
+	public LogBlockCompressor newCompressor()
+	{
+		return new DeflateBlockCompressor();
+	}
+	
+	@Override
+	public ByteBuffer decompress(byte[] block, int length, byte[] buffer) throws DataFormatException
+	{
+		final Inflater inflater = new Inflater(true);
+		try
+		{
+			inflater.setInput(block, 0, length);
+			int size = 0;
+			for (int pass = 0; pass < 2; ++pass)
+			{
+				while (true)
+				{
+					if (size == buffer.length)
+						buffer = Arrays.copyOf(buffer, buffer.length << 1);
+					
+					final int inflatedSize = inflater.inflate(buffer, size, buffer.length - size);
+					size += inflatedSize;
+					if (inflatedSize == 0 && (inflater.needsInput() || inflater.finished()))
+						break;
+				}
+				inflater.setInput(OMITTED);
+			}
+			return ByteBuffer.wrap(buffer, 0, size);
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
+	
+	private static final class DeflateBlockCompressor implements LogBlockCompressor
+	{
+		private final Deflater _deflater;
+		private final byte[] _outputBuffer;
+		
+		DeflateBlockCompressor()
+		{
+			_deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+			_outputBuffer = new byte[8192];
+		}
+		
+		@Override
+		public int compress(byte[] block, int length, NewIOHelper out) throws IOException
+		{
+			_deflater.setInput(block, 0, length);
+			int totalDeflatedSize = 0;
+			int deflatedSize;
+			// UNLIKE zlib, do not initiate with SYNC_FLUSH and continue with NO_FLUSH until the marker is flushed; a different approach must be used according to the JavaDoc:
+			// In the case of FULL_FLUSH or SYNC_FLUSH, if the return value is len, the space available in outputbuffer b, this method should be invoked again with the same flush parameter and more output space.
+			// FULL_FLUSH also resets the dictionary, so that blocks do not refer to each other and can be inflated in parallel
+			do
+			{
+				deflatedSize = _deflater.deflate(_outputBuffer, 0, _outputBuffer.length, Deflater.FULL_FLUSH);
+				out.write(_outputBuffer, 0, deflatedSize);
+				totalDeflatedSize += deflatedSize;
+			}
+			while (deflatedSize == _outputBuffer.length);
+			// the marker will be overwritten by the next block's length
+			return totalDeflatedSize - OMITTED.length;
+		}
+		
+		@Override
+		public void end()
+		{
+			_deflater.end();
+		}
+	}
+}
@@ -23,18 +23,19 @@ import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.zip.Deflater;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.commons.lang3.mutable.MutableInt;
 
@@ -42,59 +43,145 @@ import net.l2emuproject.io.UnmanagedResource;
 import net.l2emuproject.lang.NetProThreadPriority;
 import net.l2emuproject.network.protocol.IProtocolVersion;
 import net.l2emuproject.proxy.StartupOption;
+import net.l2emuproject.proxy.config.ProxyConfig;
 import net.l2emuproject.proxy.io.IOConstants;
 import net.l2emuproject.proxy.io.NewIOHelper;
 import net.l2emuproject.proxy.network.EndpointType;
+import net.l2emuproject.proxy.network.ForwardingLatencyHistogram;
 import net.l2emuproject.proxy.network.Proxy;
 import net.l2emuproject.proxy.network.ServiceType;
-import net.l2emuproject.proxy.network.listener.ConnectionListener;
-import net.l2emuproject.proxy.network.listener.PacketListener;
 import net.l2emuproject.proxy.ui.ReceivedPacket;
 import net.l2emuproject.util.BitMaskUtils;
 import net.l2emuproject.util.Rnd;
 import net.l2emuproject.util.logging.L2Logger;
 
 /**
- * This class manages historical packet log file creation and generation.
+ * This class manages historical packet log file creation and generation for the sessions assigned to it by {@link HistoricalLogWriterPool}.<BR>
+ * <BR>
+ * Each writer has a bounded action queue. What happens when it is full is decided by {@link ProxyConfig#PACKET_LOG_WRITER_OVERFLOW}.<BR>
+ * <BR>
+ * A session's log is opened once the connection to its server is established. Until then, a limited amount of packets is kept in memory.
  * 
  * @author savormix
  */
-public class HistoricalLogIOThread extends Thread implements IOConstants, ConnectionListener, PacketListener, NetProThreadPriority
+public final class HistoricalLogIOThread extends Thread implements IOConstants, NetProThreadPriority
 {
 	static final L2Logger LOG = L2Logger.getLogger(HistoricalLogIOThread.class);
 	
+	/** Wait until there is space in the queue, which delays packet forwarding. */
+	public static final int OVERFLOW_BLOCK = 0;
+	/** Discard packets that do not fit in the queue. */
+	public static final int OVERFLOW_DROP = 1;
+	/** Write actions that do not fit in the queue to a temporary file, to be logged once the queue is drained. */
+	public static final int OVERFLOW_SPILL = 2;
+	
+	private static final long RATE_WINDOW = 1_000L;
+	
 	private final DateFormat _filenameFormat;
 	private final Map<Proxy, PacketLog> _files;
-	private final Map<Proxy, List<PacketWrapper>> _delayed;
+	private final Map<Proxy, PendingLog> _pending;
+	private final ForwardingLatencyHistogram _openLatency;
 	
 	private final BlockingQueue<Object> _actions;
+	private final int _queueCapacity;
+	private final Object _spillLock;
+	private volatile LogQueueSpill _spill;
 	
-	private CaptureController _captureController;
+	private final LongAdder _dropped;
+	private final LongAdder _spilled;
+	private volatile long _bytesWritten;
+	private volatile RateSample _rateBase;
+	private RateSample _rateWindow;
 	
-	HistoricalLogIOThread()
+	HistoricalLogIOThread(int index, int queueCapacity, ForwardingLatencyHistogram openLatency)
 	{
-		super(HistoricalLogIOThread.class.getSimpleName());
+		super(HistoricalLogIOThread.class.getSimpleName() + "-" + (index + 1));
 		
 		setPriority(HISTORICAL_LOG_IO);
 		
 		_filenameFormat = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss", Locale.ENGLISH);
 		_files = new HashMap<>();
-		_delayed = new HashMap<>();
+		_pending = new HashMap<>();
+		_openLatency = openLatency;
+		
+		_actions = new ArrayBlockingQueue<>(queueCapacity);
+		_queueCapacity = queueCapacity;
+		_spillLock = new Object();
+		_spill = null;
 		
-		_actions = new LinkedBlockingQueue<>();
+		_dropped = new LongAdder();
+		_spilled = new LongAdder();
+		_bytesWritten = 0L;
+		_rateBase = _rateWindow = new RateSample(System.currentTimeMillis(), 0L);
 		
 		net.l2emuproject.lang.management.ShutdownManager.addShutdownHook(() -> {
-			LOG.info("Interrupting...");
+			LOG.info("Interrupting " + getName() + "...");
 			HistoricalLogIOThread.this.interrupt();
 		});
+	}
+	
+	/**
+	 * Submits an action to this writer, applying the configured overflow policy if the queue is full.<BR>
+	 * <BR>
+	 * Connection, server connection and disconnection actions are never discarded.
+	 * 
+	 * @param action a connection, server connection, packet or disconnection action
+	 */
+	void enqueue(Object action)
+	{
+		final boolean control = !(action instanceof PacketWrapper);
+		if (_spill != null || ProxyConfig.PACKET_LOG_WRITER_OVERFLOW == OVERFLOW_SPILL)
+		{
+			// the lock is only needed once the queue overflows; afterwards, actions are spilled until the queue is drained, so that they stay in order
+			if (_spill == null && _actions.offer(action))
+				return;
+			
+			final boolean spilled;
+			synchronized (_spillLock)
+			{
+				if (_spill == null && _actions.offer(action))
+					return;
+				
+				// the spill writes in the background, so no disk I/O takes place here
+				if (_spill == null)
+					_spill = new LogQueueSpill(_queueCapacity);
+				spilled = _spill.append(action);
+			}
+			if (spilled)
+				_spilled.increment();
+			else
+				_dropped.increment();
+			return;
+		}
+		else if (ProxyConfig.PACKET_LOG_WRITER_OVERFLOW == OVERFLOW_DROP && !control)
+		{
+			if (!_actions.offer(action))
+				_dropped.increment();
+			return;
+		}
 		
-		_captureController = c -> false;
+		try
+		{
+			while (!_actions.offer(action, 100, TimeUnit.MILLISECONDS))
+			{
+				if (!isAlive())
+				{
+					_dropped.increment();
+					return;
+				}
+			}
+		}
+		catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			_dropped.increment();
+		}
 	}
 	
 	@Override
 	public void run()
 	{
-		actionHandling: while (true)
+		while (true)
 		{
 			try
 			{
@@ -104,123 +191,15 @@ public class HistoricalLogIOThread extends Thread implements IOConstants, Connec
 				final Object action;
 				try
 				{
-					action = _actions.take();
+					action = nextAction();
 				}
 				catch (final InterruptedException e)
 				{
 					break;
 				}
 				
-				if (action instanceof Proxy)
-				{
-					closeFile(_files.remove(action), ((Proxy)action).getProtocol());
-				}
-				else if (action instanceof ConnectionWrapper)
-				{
-					final ConnectionWrapper ci = (ConnectionWrapper)action;
-					final Proxy client = ci._client;
-					if (client.getTarget() == null)
-					{
-						// _log.warn("Unfinished connection; delaying logging for " + ci.getClient());
-						if (client.isDced())
-							continue;
-						
-						_actions.add(ci);
-						
-						// let's waste some CPU to see if we should stop using CPU
-						// because all that can be done is to keep waiting
-						for (final Object pendingAction : _actions)
-						{
-							// a connection that is still pending completion; safe to wait
-							if (pendingAction instanceof ConnectionWrapper && ((ConnectionWrapper)pendingAction)._client.getTarget() == null)
-								continue;
-							
-							// any other action should be processed immediately
-							continue actionHandling;
-						}
-						
-						// there's no real work; yield the CPU
-						try
-						{
-							Thread.sleep(1);
-						}
-						catch (final InterruptedException e)
-						{
-							break;
-						}
-						continue;
-					}
-					openFile(ci);
-				}
-				else if (action instanceof PacketWrapper)
-				{
-					final PacketLog log;
-					final NewIOHelper ioh;
-					List<PacketWrapper> delayed;
-					{
-						final PacketWrapper pi = (PacketWrapper)action;
-						final Proxy client = pi._client;
-						log = _files.get(client);
-						if (log == null)
-						{
-							if (_actions.isEmpty())
-							{
-								LOG.warn("No open log for " + client + ", discarding packet.");
-								continue;
-							}
-							delayed = _delayed.computeIfAbsent(client, c -> new LinkedList<>());
-							delayed.add(pi);
-							continue;
-						}
-						
-						ioh = log.getWriter();
-						
-						delayed = _delayed.remove(client);
-						if (delayed != null)
-							delayed.add(pi);
-						else
-							delayed = Collections.singletonList(pi);
-					}
-					
-					try
-					{
-						for (final PacketWrapper pi : delayed)
-						{
-							final ReceivedPacket packet = pi._packet;
-							final byte[] buf = packet.getBody();
-							
-							Deflater deflater = log.getDeflater();
-							if (deflater != null)
-							{
-								ByteBuffer deflateBuffer = log.getDeflateBuffer();
-								deflateBuffer.put((byte)(packet.getEndpoint().isClient() ? 1 : 0));
-								deflateBuffer.putChar((char)buf.length);
-								deflateBuffer.put(buf);
-								deflateBuffer.putLong(packet.getReceived());
-								deflateBuffer.put((byte)BitMaskUtils.maskOf(pi._flags));
-								if (deflateBuffer.position() > (deflateBuffer.capacity() >> 1))
-									writeBlock(log);
-							}
-							else
-							{
-								ioh.writeBoolean(packet.getEndpoint().isClient());
-								ioh.writeChar(buf.length);
-								ioh.write(buf);
-								ioh.writeLong(packet.getReceived());
-								ioh.writeByte((int)BitMaskUtils.maskOf(pi._flags));
-							}
-							log.onPacket(packet);
-						}
-					}
-					catch (final IOException e)
-					{
-						_files.remove(((PacketWrapper)action)._client);
-						UnmanagedResource.close(ioh);
-						LOG.error("A packet cannot be logged to file!", e);
-					}
-				}
-				else
-					LOG.error("Unknown action: " + action);
+				if (action != null)
+					handleAction(action);
 			}
 			catch (final Throwable t)
 			{
@@ -233,7 +212,16 @@ public class HistoricalLogIOThread extends Thread implements IOConstants, Connec
 			LOG.info("There are " + _actions.size() + " unfinished tasks that will not be completed.");
 			_actions.clear();
 		}
-		_delayed.clear();
+		synchronized (_spillLock)
+		{
+			if (_spill != null)
+			{
+				LOG.info("There are " + _spill.size() + " spilled tasks that will not be completed.");
+				_spill.discard();
+				_spill = null;
+			}
+		}
+		_pending.clear();
 		
 		LOG.info("Finalizing open files.");
 		for (final Entry<Proxy, PacketLog> e : _files.entrySet())
@@ -242,6 +230,145 @@ public class HistoricalLogIOThread extends Thread implements IOConstants, Connec
 		LOG.info("Packet logging terminated successfully.");
 	}
 	
+	/**
+	 * Returns the next queued action.<BR>
+	 * <BR>
+	 * Once the queue is drained, spilled actions are handled before anything else is taken from the queue.
+	 * 
+	 * @return next action or {@code null}
+	 * @throws InterruptedException if this thread is interrupted while waiting
+	 */
+	private Object nextAction() throws InterruptedException
+	{
+		final Object action = _actions.poll();
+		if (action != null)
+			return action;
+		
+		final LogQueueSpill spill;
+		synchronized (_spillLock)
+		{
+			spill = _spill;
+			_spill = null;
+		}
+		if (spill != null)
+		{
+			_dropped.add(spill.replay(this::handleAction));
+			return null;
+		}
+		
+		return _actions.take();
+	}
+	
+	private void handleAction(Object action)
+	{
+		if (action instanceof Proxy)
+		{
+			final Proxy client = (Proxy)action;
+			_pending.remove(client);
+			closeFile(_files.remove(client), client.getProtocol());
+		}
+		else if (action instanceof ConnectionWrapper)
+		{
+			final ConnectionWrapper ci = (ConnectionWrapper)action;
+			final Proxy client = ci._client;
+			if (client.getTarget() == null)
+			{
+				// the log will be opened once the server connection is established
+				if (!client.isDced())
+					_pending.putIfAbsent(client, new PendingLog(ci));
+				return;
+			}
+			openFile(ci);
+		}
+		else if (action instanceof ServerConnectionWrapper)
+		{
+			final Proxy client = ((ServerConnectionWrapper)action)._client;
+			final PendingLog pending = _pending.remove(client);
+			if (pending == null)
+				return; // already open or already closed
+			
+			openFile(pending._connection);
+			final PacketLog log = _files.get(client);
+			if (log == null)
+				return;
+			
+			if (pending._discarded > 0)
+				LOG.warn(pending._discarded + " packet(s) received before the server connection was established will not be logged for " + client);
+			writePackets(log, client, pending._packets);
+		}
+		else if (action instanceof PacketWrapper)
+		{
+			final PacketWrapper pi = (PacketWrapper)action;
+			final Proxy client = pi._client;
+			final PacketLog log = _files.get(client);
+			if (log == null)
+			{
+				final PendingLog pending = _pending.get(client);
+				if (pending == null)
+				{
+					LOG.warn("No open log for " + client + ", discarding packet.");
+					return;
+				}
+				
+				if (pending._packets.size() < ProxyConfig.PACKET_LOG_PENDING_PACKET_LIMIT)
+					pending._packets.add(pi);
+				else
+				{
+					++pending._discarded;
+					_dropped.increment();
+				}
+				return;
+			}
+			
+			writePackets(log, client, Collections.singletonList(pi));
+		}
+		else
+			LOG.error("Unknown action: " + action);
+	}
+	
+	private void writePackets(PacketLog log, Proxy client, List<PacketWrapper> packets)
+	{
+		final NewIOHelper ioh = log.getWriter();
+		try
+		{
+			for (final PacketWrapper pi : packets)
+			{
+				final ReceivedPacket packet = pi._packet;
+				final byte[] buf = packet.getBody();
+				
+				if (log.getCompressor() != null)
+				{
+					final ByteBuffer blockBuffer = log.getBlockBuffer();
+					blockBuffer.put((byte)(packet.getEndpoint().isClient() ? 1 : 0));
+					blockBuffer.putChar((char)buf.length);
+					blockBuffer.put(buf);
+					blockBuffer.putLong(packet.getReceived());
+					blockBuffer.put((byte)BitMaskUtils.maskOf(pi._flags));
+					log.onBufferedPacket(packet.getReceived());
+					if (blockBuffer.position() > (blockBuffer.capacity() >> 1))
+						writeBlock(log);
+				}
+				else
+				{
+					ioh.writeBoolean(packet.getEndpoint().isClient());
+					ioh.writeChar(buf.length);
+					ioh.write(buf);
+					ioh.writeLong(packet.getReceived());
+					ioh.writeByte((int)BitMaskUtils.maskOf(pi._flags));
+					onBytesWritten(1 + 2 + buf.length + 8 + 1);
+				}
+				log.onPacket(packet);
+			}
+		}
+		catch (final IOException e)
+		{
+			_files.remove(client);
+			log.releaseCompressor();
+			UnmanagedResource.close(ioh);
+			LOG.error("A packet cannot be logged to file!", e);
+		}
+	}
+	
 	/**
 	 * Opens a file to log packets to.<BR>
 	 * <BR>
@@ -297,6 +424,13 @@ public class HistoricalLogIOThread extends Thread implements IOConstants, Connec
 			log = dir.resolve(fn.toString());
 		}
 		
+		LogBlockCodec codec = LogBlockCodec.valueOf(ProxyConfig.PACKET_LOG_COMPRESSION);
+		if (codec == null && ProxyConfig.PACKET_LOG_COMPRESSION != 0)
+		{
+			LOG.warn("Unknown packet log compression type " + ProxyConfig.PACKET_LOG_COMPRESSION + ", using " + COMPRESSION_TYPE + " instead.");
+			codec = LogBlockCodec.valueOf(COMPRESSION_TYPE);
+		}
+		
 		SeekableByteChannel chan = null;
 		try
 		{
@@ -306,8 +440,9 @@ public class HistoricalLogIOThread extends Thread implements IOConstants, Connec
 			ioh.writeLong(LOG_MAGIC_INCOMPLETE).writeByte(LOG_VERSION);
 			ioh.writeInt(8 + 1 + 4 + 4 + 8 + 8 + 1 + 4 + 8 + 1).writeInt(0).writeLong(-1); // header size, footer size, footer start
 			ioh.writeLong(connection._time).writeBoolean(type.isLogin()).writeInt(-1); // protocol version
-			ioh.writeLong(0).writeByte(COMPRESSION_TYPE); // total packet data size, compression type
-			_files.put(provider, new PacketLog(ioh, new Deflater(Deflater.DEFAULT_COMPRESSION, true)));
+			ioh.writeLong(0).writeByte(codec != null ? codec.getCompressionType() : 0); // total packet data size, compression type
+			_files.put(provider, new PacketLog(ioh, codec != null ? codec.newCompressor() : null));
+			_openLatency.record(System.nanoTime() - connection._nanoTime);
 		}
 		catch (final IOException e)
 		{
@@ -316,45 +451,34 @@ public class HistoricalLogIOThread extends Thread implements IOConstants, Connec
 		}
 	}
 	
-	private static void writeBlock(PacketLog log) throws IOException
+	private void writeBlock(PacketLog log) throws IOException
 	{
 		NewIOHelper ioh = log.getWriter();
 		final long totalSizePos = ioh.getPositionInChannel(true);
-		ioh.writeInt(0); // deflated size
-		int totalDeflatedSize = 0;
+		ioh.writeInt(0); // compressed size
 		
-		final Deflater deflater = log.getDeflater();
-		final ByteBuffer deflateBuffer = log.getDeflateBuffer();
-		final byte[] outputBuffer = log.getOutputBuffer();
-		deflater.setInput(deflateBuffer.array(), 0, deflateBuffer.position());
-		int deflatedSize;
-		// UNLIKE zlib, do not initiate with SYNC_FLUSH and continue with NO_FLUSH until the marker is flushed; a different approach must be used according to the JavaDoc:
-		// In the case of FULL_FLUSH or SYNC_FLUSH, if the return value is len, the space available in outputbuffer b, this method should be invoked again with the same flush parameter and more output space.
-		do
-		{
-			deflatedSize = deflater.deflate(outputBuffer, 0, outputBuffer.length, Deflater.SYNC_FLUSH);
-			ioh.write(outputBuffer, 0, deflatedSize);
-			totalDeflatedSize += deflatedSize;
-			//int toOutput = Math.min(deflatedSize, 4);
-			//LOG.info("Flush ended in " + HexUtil.bytesToHexString(outputBuffer, deflatedSize - toOutput, toOutput, " "));
-		}
-		while (deflatedSize == outputBuffer.length);
-		deflateBuffer.clear();
+		final ByteBuffer blockBuffer = log.getBlockBuffer();
+		final int compressedSize = log.getCompressor().compress(blockBuffer.array(), blockBuffer.position(), ioh);
+		blockBuffer.clear();
+		if (compressedSize <= 0 || compressedSize > LogBlockCodec.MAX_COMPRESSED_BLOCK_SIZE)
+			throw new IOException("Invalid compressed block length: " + compressedSize);
 		ioh.flush();
-		final long blockEndPos = ioh.getPositionInChannel(true) - 4;
+		final long blockEndPos = totalSizePos + 4 + compressedSize;
 		ioh.setPositionInChannel(totalSizePos);
-		ioh.writeInt(totalDeflatedSize - 4).flush();
+		ioh.writeInt(compressedSize).flush();
 		ioh.setPositionInChannel(blockEndPos);
+		log.onBlockWritten(totalSizePos);
+		onBytesWritten(4 + compressedSize);
 	}
 	
-	private static void closeFile(PacketLog log, IProtocolVersion protocol)
+	private void closeFile(PacketLog log, IProtocolVersion protocol)
 	{
 		if (log == null)
 			return;
 		
 		try (final NewIOHelper ioh = log.getWriter())
 		{
-			if (log.getDeflater() != null)
+			if (log.getCompressor() != null)
 			{
 				writeBlock(log);
 				ioh.writeInt(-1);
@@ -389,6 +513,17 @@ public class HistoricalLogIOThread extends Thread implements IOConstants, Connec
 					ioh.writeChar(altMode.charAt(i));
 			}
 			
+			final LogBlockIndex blockIndex = log.getBlockIndex();
+			if (blockIndex != null)
+			{
+				ioh.writeInt(LogBlockIndex.SECTION_MAGIC).writeInt(blockIndex.size());
+				for (int i = 0; i < blockIndex.size(); ++i)
+				{
+					ioh.writeLong(blockIndex.getOffset(i)).writeInt(blockIndex.getFirstPacket(i));
+					ioh.writeLong(blockIndex.getMinTime(i)).writeLong(blockIndex.getLastTime(i));
+				}
+			}
+			
 			final int fs = (int)(ioh.getPositionInChannel(true) - footerStartPos);
 			
 			ioh.flush();
@@ -414,107 +549,150 @@ public class HistoricalLogIOThread extends Thread implements IOConstants, Connec
 		{
 			LOG.error("Cannot finalize packet log file!", e);
 		}
-	}
-	
-	private static class ConnectionWrapper
-	{
-		final Proxy _client;
-		final long _time;
-		
-		ConnectionWrapper(Proxy client)
+		finally
 		{
-			_client = client;
-			_time = System.currentTimeMillis();
+			log.releaseCompressor();
 		}
 	}
 	
-	private static class PacketWrapper
+	private void onBytesWritten(long bytes)
 	{
-		final Proxy _client;
-		final ReceivedPacket _packet;
-		final Set<LoggedPacketFlag> _flags;
+		// only ever updated by this thread
+		_bytesWritten += bytes;
 		
-		PacketWrapper(Proxy provider, ReceivedPacket packet, Set<LoggedPacketFlag> flags)
-		{
-			_client = provider;
-			_packet = packet;
-			_flags = flags;
-		}
+		final long now = System.currentTimeMillis();
+		if (now - _rateWindow._time < RATE_WINDOW)
+			return;
+		
+		_rateBase = _rateWindow;
+		_rateWindow = new RateSample(now, _bytesWritten);
 	}
 	
-	@Override
-	public void onClientPacket(Proxy sender, Proxy recipient, ByteBuffer packet, long time) throws RuntimeException
+	/**
+	 * Returns the amount of actions waiting in this writer's queue, not including spilled actions.
+	 * 
+	 * @return queue depth
+	 */
+	public int getQueueDepth()
 	{
-		final byte[] body = new byte[packet.clear().limit()];
-		packet.get(body);
-		_actions.add(new PacketWrapper(sender, new ReceivedPacket(ServiceType.valueOf(sender.getProtocol()), sender.getType(), body, time), getPacketFlags(sender)));
+		return _actions.size();
 	}
 	
-	@Override
-	public void onServerPacket(Proxy sender, Proxy recipient, ByteBuffer packet, long time) throws RuntimeException
+	/**
+	 * Returns the amount of bytes written to log files by this writer.
+	 * 
+	 * @return written bytes
+	 */
+	public long getBytesWritten()
 	{
-		final byte[] body = new byte[packet.clear().limit()];
-		packet.get(body);
-		_actions.add(new PacketWrapper(recipient, new ReceivedPacket(ServiceType.valueOf(sender.getProtocol()), sender.getType(), body, time), getPacketFlags(recipient)));
+		return _bytesWritten;
 	}
 	
-	@Override
-	public void onProtocolVersion(Proxy affected, IProtocolVersion version) throws RuntimeException
+	/**
+	 * Returns the recent write rate of this writer. The rate is measured over the last one to two seconds of activity and decays while the writer is idle.
+	 * 
+	 * @return written bytes per second
+	 */
+	public long getBytesPerSecond()
 	{
-		// ignore
+		final RateSample base = _rateBase;
+		final long elapsed = System.currentTimeMillis() - base._time;
+		return elapsed > 0 ? (_bytesWritten - base._bytes) * 1_000L / elapsed : 0L;
 	}
 	
-	@Override
-	public void onClientConnection(Proxy client)
+	/**
+	 * Returns the amount of actions discarded because the queue was full or too many packets arrived before the server connection was established.
+	 * 
+	 * @return dropped actions
+	 */
+	public long getDroppedActions()
 	{
-		_actions.add(new ConnectionWrapper(client));
+		return _dropped.sum();
 	}
 	
-	@Override
-	public void onServerConnection(Proxy server)
+	/**
+	 * Returns the amount of actions written to a spill file because the queue was full.
+	 * 
+	 * @return spilled actions
+	 */
+	public long getSpilledActions()
 	{
-		// ignore
+		return _spilled.sum();
 	}
 	
 	@Override
-	public void onDisconnection(Proxy client, Proxy server)
+	public String toString()
 	{
-		_actions.add(client);
+		return getName() + ": " + getQueueDepth() + " queued, " + getBytesPerSecond() + " B/s, " + getBytesWritten() + " B written, " + getDroppedActions() + " dropped, "
+				+ getSpilledActions() + " spilled";
 	}
 	
-	public void setCaptureController(CaptureController controller)
+	private static final class RateSample
 	{
-		_captureController = controller;
+		final long _time;
+		final long _bytes;
+		
+		RateSample(long time, long bytes)
+		{
+			_time = time;
+			_bytes = bytes;
+		}
 	}
 	
-	private static final Set<LoggedPacketFlag> CAPTURE_DISABLED_FLAGS = Collections.singleton(LoggedPacketFlag.HIDDEN);
-	
-	private final Set<LoggedPacketFlag> getPacketFlags(Proxy client)
+	private static final class PendingLog
 	{
-		return _captureController.isCaptureDisabledFor(client) ? CAPTURE_DISABLED_FLAGS : Collections.emptySet();
+		final ConnectionWrapper _connection;
+		final List<PacketWrapper> _packets;
+		int _discarded;
+		
+		PendingLog(ConnectionWrapper connection)
+		{
+			_connection = connection;
+			_packets = new ArrayList<>();
+			_discarded = 0;
+		}
 	}
 	
-	public interface CaptureController
+	static final class ConnectionWrapper
 	{
-		boolean isCaptureDisabledFor(Proxy client);
+		final Proxy _client;
+		final long _time;
+		final long _nanoTime;
+		
+		ConnectionWrapper(Proxy client)
+		{
+			this(client, System.currentTimeMillis(), System.nanoTime());
+		}
+		
+		ConnectionWrapper(Proxy client, long time, long nanoTime)
+		{
+			_client = client;
+			_time = time;
+			_nanoTime = nanoTime;
+		}
 	}
 	
-	/**
-	 * Returns a singleton instance of this type.
-	 * 
-	 * @return an instance of this class
-	 */
-	public static final HistoricalLogIOThread getInstance()
+	static final class ServerConnectionWrapper
 	{
-		return SingletonHolder.INSTANCE;
+		final Proxy _client;
+		
+		ServerConnectionWrapper(Proxy client)
+		{
+			_client = client;
+		}
 	}
 	
-	private static final class SingletonHolder
+	static final class PacketWrapper
 	{
-		static final HistoricalLogIOThread INSTANCE;
-		static
+		final Proxy _client;
+		final ReceivedPacket _packet;
+		final Set<LoggedPacketFlag> _flags;
+		
+		PacketWrapper(Proxy provider, ReceivedPacket packet, Set<LoggedPacketFlag> flags)
 		{
-			(INSTANCE = new HistoricalLogIOThread()).start();
+			_client = provider;
+			_packet = packet;
+			_flags = flags;
 		}
 	}
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.io.packetlog;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.l2emuproject.lang.L2TextBuilder;
+import net.l2emuproject.network.protocol.IProtocolVersion;
+import net.l2emuproject.proxy.config.ProxyConfig;
+import net.l2emuproject.proxy.io.packetlog.HistoricalLogIOThread.ConnectionWrapper;
+import net.l2emuproject.proxy.io.packetlog.HistoricalLogIOThread.PacketWrapper;
+import net.l2emuproject.proxy.io.packetlog.HistoricalLogIOThread.ServerConnectionWrapper;
+import net.l2emuproject.proxy.network.ForwardingLatencyHistogram;
+import net.l2emuproject.proxy.network.Proxy;
+import net.l2emuproject.proxy.network.ServiceType;
+import net.l2emuproject.proxy.network.SharedPacketBody;
+import net.l2emuproject.proxy.network.listener.ConnectionListener;
+import net.l2emuproject.proxy.network.listener.PacketListener;
+import net.l2emuproject.proxy.ui.ReceivedPacket;
+
+/**
+ * Distributes historical packet logging among several writer threads.<BR>
+ * <BR>
+ * Each session is assigned to a single writer when it connects, so all of its packets are written in order by the same thread.<BR>
+ * In order to open a session's log as soon as the server connection is established, this listener must also be added to server connection managers.
+ * 
+ * @author _dev_
+ */
+public final class HistoricalLogWriterPool implements ConnectionListener, PacketListener
+{
+	private final HistoricalLogIOThread[] _writers;
+	private final Map<Proxy, HistoricalLogIOThread> _owners;
+	private final AtomicInteger _nextWriter;
+	private final ForwardingLatencyHistogram _openLatency;
+	
+	private volatile CaptureController _captureController;
+	
+	HistoricalLogWriterPool()
+	{
+		final int queueCapacity = Math.max(1, ProxyConfig.PACKET_LOG_WRITER_QUEUE_CAPACITY);
+		_openLatency = new ForwardingLatencyHistogram();
+		_writers = new HistoricalLogIOThread[Math.max(1, ProxyConfig.PACKET_LOG_WRITER_THREADS)];
+		for (int i = 0; i < _writers.length; ++i)
+			_writers[i] = new HistoricalLogIOThread(i, queueCapacity, _openLatency);
+		_owners = new ConcurrentHashMap<>();
+		_nextWriter = new AtomicInteger();
+		
+		_captureController = c -> false;
+		
+		if (ProxyConfig.PACKET_LOG_WRITER_OVERFLOW < HistoricalLogIOThread.OVERFLOW_BLOCK || ProxyConfig.PACKET_LOG_WRITER_OVERFLOW > HistoricalLogIOThread.OVERFLOW_SPILL)
+			HistoricalLogIOThread.LOG.warn("Unknown packet log queue overflow policy " + ProxyConfig.PACKET_LOG_WRITER_OVERFLOW + ", packets will wait for the queue instead.");
+	}
+	
+	private void start()
+	{
+		for (final HistoricalLogIOThread writer : _writers)
+			writer.start();
+	}
+	
+	private HistoricalLogIOThread getWriter(Proxy client)
+	{
+		final HistoricalLogIOThread writer = _owners.get(client);
+		return writer != null ? writer : _writers[Math.floorMod(System.identityHashCode(client), _writers.length)];
+	}
+	
+	/**
+	 * Returns all writer threads of this pool.
+	 * 
+	 * @return packet log writers
+	 */
+	public List<HistoricalLogIOThread> getWriters()
+	{
+		return Collections.unmodifiableList(Arrays.asList(_writers));
+	}
+	
+	/**
+	 * Returns a summary of queue depth and write rate for each writer.
+	 * 
+	 * @return writer statistics
+	 */
+	public String getWriterStats()
+	{
+		final L2TextBuilder tb = new L2TextBuilder();
+		for (final HistoricalLogIOThread writer : _writers)
+			tb.appendNewline(writer.toString());
+		return tb.moveToString();
+	}
+	
+	/**
+	 * Returns the distribution of time passed between a client connecting and its log file being created.
+	 * 
+	 * @return log open latency
+	 */
+	public ForwardingLatencyHistogram getOpenLatency()
+	{
+		return _openLatency;
+	}
+	
+	@Override
+	public void onClientPacket(Proxy sender, Proxy recipient, ByteBuffer packet, long time) throws RuntimeException
+	{
+		onClientPacket(sender, recipient, new SharedPacketBody(packet, null), time);
+	}
+	
+	@Override
+	public void onServerPacket(Proxy sender, Proxy recipient, ByteBuffer packet, long time) throws RuntimeException
+	{
+		onServerPacket(sender, recipient, new SharedPacketBody(packet, null), time);
+	}
+	
+	@Override
+	public void onClientPacket(Proxy sender, Proxy recipient, SharedPacketBody packet, long time) throws RuntimeException
+	{
+		// the body array is shared with the forwarding path and other listeners
+		getWriter(sender).enqueue(new PacketWrapper(sender, new ReceivedPacket(ServiceType.valueOf(sender.getProtocol()), sender.getType(), packet.toArray(), time), getPacketFlags(sender)));
+	}
+	
+	@Override
+	public void onServerPacket(Proxy sender, Proxy recipient, SharedPacketBody packet, long time) throws RuntimeException
+	{
+		getWriter(recipient).enqueue(new PacketWrapper(recipient, new ReceivedPacket(ServiceType.valueOf(sender.getProtocol()), sender.getType(), packet.toArray(), time), getPacketFlags(recipient)));
+	}
+	
+	@Override
+	public void onProtocolVersion(Proxy affected, IProtocolVersion version) throws RuntimeException
+	{
+		// ignore
+	}
+	
+	@Override
+	public void onClientConnection(Proxy client)
+	{
+		final HistoricalLogIOThread writer = _writers[Math.floorMod(_nextWriter.getAndIncrement(), _writers.length)];
+		_owners.put(client, writer);
+		writer.enqueue(new ConnectionWrapper(client));
+	}
+	
+	@Override
+	public void onServerConnection(Proxy server)
+	{
+		final Proxy client = server.getTarget();
+		if (client != null)
+			getWriter(client).enqueue(new ServerConnectionWrapper(client));
+	}
+	
+	@Override
+	public void onDisconnection(Proxy client, Proxy server)
+	{
+		final HistoricalLogIOThread writer = _owners.remove(client);
+		if (writer != null)
+			writer.enqueue(client);
+	}
+	
+	public void setCaptureController(CaptureController controller)
+	{
+		_captureController = controller;
+	}
+	
+	private static final Set<LoggedPacketFlag> CAPTURE_DISABLED_FLAGS = Collections.singleton(LoggedPacketFlag.HIDDEN);
+	
+	private final Set<LoggedPacketFlag> getPacketFlags(Proxy client)
+	{
+		return _captureController.isCaptureDisabledFor(client) ? CAPTURE_DISABLED_FLAGS : Collections.emptySet();
+	}
+	
+	public interface CaptureController
+	{
+		boolean isCaptureDisabledFor(Proxy client);
+	}
+	
+	/**
+	 * Returns a singleton instance of this type.
+	 * 
+	 * @return an instance of this class
+	 */
+	public static final HistoricalLogWriterPool getInstance()
+	{
+		return SingletonHolder.INSTANCE;
+	}
+	
+	private static final class SingletonHolder
+	{
+		static final HistoricalLogWriterPool INSTANCE;
+		static
+		{
+			(INSTANCE = new HistoricalLogWriterPool()).start();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.io.packetlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+
+import net.l2emuproject.proxy.io.NewIOHelper;
+
+/**
+ * A compression method for packet log blocks.<BR>
+ * <BR>
+ * A compressed packet log is a sequence of blocks, each prefixed by its length in file and terminated by a length of {@code -1}. The codec is identified by the
+ * compression type in the log file header, so readers that do not know it can refuse the file instead of misinterpreting it.
+ * 
+ * @author _dev_
+ */
+public interface LogBlockCodec
+{
+	/** Maximum length of an uncompressed block: half of it is filled before a block is written, then a maximum length packet may follow. */
+	int MAX_BLOCK_SIZE = (1 + 2 + (1 << 16) - 1 + 8 + 1) << 1;
+	/** Maximum length of a compressed block in file, which leaves room for the overhead of incompressible blocks in all codecs. */
+	int MAX_COMPRESSED_BLOCK_SIZE = MAX_BLOCK_SIZE + (MAX_BLOCK_SIZE >>> 6) + 64;
+	
+	/**
+	 * Returns the compression type written to the log file header.
+	 * 
+	 * @return compression type
+	 */
+	int getCompressionType();
+	
+	/**
+	 * Creates a compressor to be used for a single log file.
+	 * 
+	 * @return block compressor
+	 */
+	LogBlockCompressor newCompressor();
+	
+	/**
+	 * Decompresses a single block. This method may be called concurrently.
+	 * 
+	 * @param block compressed block
+	 * @param length length of the compressed block
+	 * @param buffer suggested decompression buffer
+	 * @return decompressed data, which is backed by {@code buffer} or a larger array if {@code buffer} was insufficient
+	 * @throws DataFormatException if the block is corrupt
+	 */
+	ByteBuffer decompress(byte[] block, int length, byte[] buffer) throws DataFormatException;
+	
+	/**
+	 * Returns the codec associated with the given compression type.
+	 * 
+	 * @param compressionType compression type
+	 * @return block codec or {@code null}, if packets are not stored in blocks or the compression type is unknown
+	 */
+	static LogBlockCodec valueOf(int compressionType)
+	{
+		switch (compressionType)
+		{
+			case DeflateBlockCodec.COMPRESSION_TYPE:
+				return DeflateBlockCodec.INSTANCE;
+			case LzBlockCodec.COMPRESSION_TYPE:
+				return LzBlockCodec.INSTANCE;
+			default:
+				return null;
+		}
+	}
+	
+	/**
+	 * Compresses blocks of a single log file. Implementations do not need to be thread-safe.
+	 * 
+	 * @author _dev_
+	 */
+	interface LogBlockCompressor
+	{
+		/**
+		 * Compresses a block and writes it to the log file. The caller writes the returned length before the block and continues writing right after the
+		 * returned amount of bytes.
+		 * 
+		 * @param block uncompressed block
+		 * @param length length of the uncompressed block
+		 * @param out log file writer
+		 * @return length of the compressed block
+		 * @throws IOException if the block cannot be written
+		 */
+		int compress(byte[] block, int length, NewIOHelper out) throws IOException;
+		
+		/** Releases all resources held by this compressor. */
+		void end();
+	}
+}
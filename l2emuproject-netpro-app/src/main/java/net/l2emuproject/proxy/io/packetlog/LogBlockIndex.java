@@ -0,0 +1,188 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.io.packetlog;
+
+import java.util.Arrays;
+
+/**
+ * An index of compressed blocks within a packet log file.<BR>
+ * <BR>
+ * Since each block can be inflated on its own, a reader may start at any indexed block, without inflating anything before it.
+ * 
+ * @author _dev_
+ */
+public class LogBlockIndex
+{
+	/** Identifies the block index section in the log file footer. */
+	static final int SECTION_MAGIC = 0x4E504249;
+	/** Size of a single block entry in the log file footer. */
+	static final int ENTRY_SIZE = 8 + 4 + 8 + 8;
+	
+	private long[] _offsets;
+	private int[] _firstPackets;
+	private long[] _minTimes;
+	private long[] _lastTimes;
+	private int _size;
+	private long[] _remainingMinTimes;
+	
+	/**
+	 * Creates an empty index.
+	 * 
+	 * @param capacity expected amount of blocks
+	 */
+	LogBlockIndex(int capacity)
+	{
+		capacity = Math.max(16, capacity);
+		_offsets = new long[capacity];
+		_firstPackets = new int[capacity];
+		_minTimes = new long[capacity];
+		_lastTimes = new long[capacity];
+		_size = 0;
+		_remainingMinTimes = null;
+	}
+	
+	/**
+	 * Appends a block to this index. Blocks must be added in file order.
+	 * 
+	 * @param offset position of the block's length field in file
+	 * @param firstPacket index of the first packet in block
+	 * @param minTime earliest reception time of a packet in block
+	 * @param lastTime latest reception time of a packet in this or any previous block
+	 */
+	void add(long offset, int firstPacket, long minTime, long lastTime)
+	{
+		if (_size == _offsets.length)
+		{
+			final int capacity = _size << 1;
+			_offsets = Arrays.copyOf(_offsets, capacity);
+			_firstPackets = Arrays.copyOf(_firstPackets, capacity);
+			_minTimes = Arrays.copyOf(_minTimes, capacity);
+			_lastTimes = Arrays.copyOf(_lastTimes, capacity);
+		}
+		
+		_offsets[_size] = offset;
+		_firstPackets[_size] = firstPacket;
+		_minTimes[_size] = minTime;
+		_lastTimes[_size] = _size > 0 ? Math.max(lastTime, _lastTimes[_size - 1]) : lastTime;
+		++_size;
+		_remainingMinTimes = null;
+	}
+	
+	/**
+	 * Returns the amount of indexed blocks.
+	 * 
+	 * @return block count
+	 */
+	public int size()
+	{
+		return _size;
+	}
+	
+	/**
+	 * Returns the position of the given block in file.
+	 * 
+	 * @param block block number
+	 * @return offset of the block's length field
+	 */
+	public long getOffset(int block)
+	{
+		return _offsets[block];
+	}
+	
+	/**
+	 * Returns the index of the first packet within the given block.
+	 * 
+	 * @param block block number
+	 * @return packet index
+	 */
+	public int getFirstPacket(int block)
+	{
+		return _firstPackets[block];
+	}
+	
+	/**
+	 * Returns the earliest reception time of a packet within the given block.
+	 * 
+	 * @param block block number
+	 * @return packet timestamp
+	 */
+	public long getMinTime(int block)
+	{
+		return _minTimes[block];
+	}
+	
+	/**
+	 * Returns the earliest reception time of a packet within the given block or any block after it.
+	 * 
+	 * @param block block number
+	 * @return packet timestamp
+	 */
+	public long getRemainingMinTime(int block)
+	{
+		if (_remainingMinTimes == null)
+		{
+			final long[] remainingMinTimes = new long[_size];
+			long minTime = Long.MAX_VALUE;
+			for (int i = _size - 1; i >= 0; --i)
+				remainingMinTimes[i] = minTime = Math.min(minTime, _minTimes[i]);
+			_remainingMinTimes = remainingMinTimes;
+		}
+		return _remainingMinTimes[block];
+	}
+	
+	/**
+	 * Returns the latest reception time of a packet within the given block or any block before it.
+	 * 
+	 * @param block block number
+	 * @return packet timestamp
+	 */
+	public long getLastTime(int block)
+	{
+		return _lastTimes[block];
+	}
+	
+	/**
+	 * Returns the block that contains the packet with the given index.
+	 * 
+	 * @param packet packet index
+	 * @return block number or {@code -1}, if the packet precedes all indexed blocks
+	 */
+	public int findByPacket(int packet)
+	{
+		final int idx = Arrays.binarySearch(_firstPackets, 0, _size, packet);
+		return idx >= 0 ? idx : -idx - 2;
+	}
+	
+	/**
+	 * Returns the first block that may contain a packet received at or after the given time.
+	 * 
+	 * @param time packet timestamp
+	 * @return block number or {@code -1}, if all packets were received before {@code time}
+	 */
+	public int findByTime(long time)
+	{
+		int low = 0, high = _size - 1;
+		while (low <= high)
+		{
+			final int mid = (low + high) >>> 1;
+			if (_lastTimes[mid] < time)
+				low = mid + 1;
+			else
+				high = mid - 1;
+		}
+		return low < _size ? low : -1;
+	}
+}
@@ -44,6 +44,7 @@ public class LogFileHeader
 	private final Map<Integer, Integer> _cp;
 	private final Map<Integer, Integer> _sp;
 	private final long _totalPacketBytes;
+	private final LogBlockIndex _blockIndex;
 	
 	/**
 	 * Constructs this header.
@@ -63,9 +64,10 @@ public class LogFileHeader
 	 * @param cp client packet amounts within the file (empty for legacy format logs)
 	 * @param sp server packet amounts within the file (empty for legacy format logs)
 	 * @param totalPacketBytes total amount of bytes with packet payload data
+	 * @param blockIndex compressed block index or {@code null}
 	 */
 	LogFileHeader(Path logFile, long logFileSize, int version, int headerSize, int footerSize, long footerStart, long created, ServiceType service, int protocol, Set<String> altModes,
-			int compressionType, int packets, Map<Integer, Integer> cp, Map<Integer, Integer> sp, long totalPacketBytes)
+			int compressionType, int packets, Map<Integer, Integer> cp, Map<Integer, Integer> sp, long totalPacketBytes, LogBlockIndex blockIndex)
 	{
 		_logFile = logFile;
 		_logFileSize = logFileSize;
@@ -83,6 +85,7 @@ public class LogFileHeader
 		_cp = cp;
 		_sp = sp;
 		_totalPacketBytes = totalPacketBytes;
+		_blockIndex = blockIndex;
 	}
 	
 	/**
@@ -225,6 +228,16 @@ public class LogFileHeader
 		return _totalPacketBytes;
 	}
 	
+	/**
+	 * Returns the index of compressed blocks, which allows to start reading from an arbitrary packet or time.
+	 * 
+	 * @return block index or {@code null}, if the log file does not have one
+	 */
+	public LogBlockIndex getBlockIndex()
+	{
+		return _blockIndex;
+	}
+	
 	/**
 	 * Returns the footer offset in the associated log file.
 	 * 
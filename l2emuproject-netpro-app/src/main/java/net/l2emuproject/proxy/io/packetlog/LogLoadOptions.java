@@ -28,6 +28,8 @@ public class LogLoadOptions
 {
 	private final IProtocolVersion _protocol;
 	private final Set<LogLoadFlag> _flags;
+	private final long _windowStart;
+	private final long _windowEnd;
 	
 	/**
 	 * Constructs this wrapper.
@@ -36,9 +38,24 @@ public class LogLoadOptions
 	 * @param flags toggleable options
 	 */
 	public LogLoadOptions(IProtocolVersion protocol, Set<LogLoadFlag> flags)
+	{
+		this(protocol, flags, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Constructs this wrapper.
+	 * 
+	 * @param protocol protocol version
+	 * @param flags toggleable options
+	 * @param windowStart earliest reception time of a packet to be loaded
+	 * @param windowEnd latest reception time of a packet to be loaded
+	 */
+	public LogLoadOptions(IProtocolVersion protocol, Set<LogLoadFlag> flags, long windowStart, long windowEnd)
 	{
 		_protocol = protocol;
 		_flags = flags;
+		_windowStart = windowStart;
+		_windowEnd = windowEnd;
 	}
 	
 	/**
@@ -61,6 +78,36 @@ public class LogLoadOptions
 		return _flags;
 	}
 	
+	/**
+	 * Returns the earliest reception time of a packet to be loaded.
+	 * 
+	 * @return time window start or {@link Long#MIN_VALUE}
+	 */
+	public long getWindowStart()
+	{
+		return _windowStart;
+	}
+	
+	/**
+	 * Returns the latest reception time of a packet to be loaded.
+	 * 
+	 * @return time window end or {@link Long#MAX_VALUE}
+	 */
+	public long getWindowEnd()
+	{
+		return _windowEnd;
+	}
+	
+	/**
+	 * Returns whether only a part of the log should be loaded.
+	 * 
+	 * @return {@code true} if a time window was specified, {@code false} otherwise
+	 */
+	public boolean hasWindow()
+	{
+		return _windowStart != Long.MIN_VALUE || _windowEnd != Long.MAX_VALUE;
+	}
+	
 	/** Toggleable log load options. */
 	public enum LogLoadFlag
 	{
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.io.packetlog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import net.l2emuproject.io.UnmanagedResource;
+import net.l2emuproject.proxy.io.packetlog.HistoricalLogIOThread.ConnectionWrapper;
+import net.l2emuproject.proxy.io.packetlog.HistoricalLogIOThread.PacketWrapper;
+import net.l2emuproject.proxy.io.packetlog.HistoricalLogIOThread.ServerConnectionWrapper;
+import net.l2emuproject.proxy.network.EndpointType;
+import net.l2emuproject.proxy.network.Proxy;
+import net.l2emuproject.proxy.network.ServiceType;
+import net.l2emuproject.proxy.ui.ReceivedPacket;
+import net.l2emuproject.util.BitMaskUtils;
+import net.l2emuproject.util.concurrent.L2ThreadPool;
+import net.l2emuproject.util.logging.L2Logger;
+
+/**
+ * A temporary file that keeps packet log writer actions which did not fit into the writer's queue.<BR>
+ * <BR>
+ * Only a small session table is kept in memory; packet bodies are stored on disk until the spill is replayed. Actions are written to the file in the background,
+ * so that network threads do not wait for disk I/O. Actions that are yet to be written are kept in memory, up to a given amount of packets; should the file
+ * fail or fall behind, further packets are discarded instead.
+ * 
+ * @author _dev_
+ */
+final class LogQueueSpill
+{
+	private static final L2Logger LOG = L2Logger.getLogger(LogQueueSpill.class);
+	
+	private static final int RECORD_CONNECTION = 0;
+	private static final int RECORD_PACKET = 1;
+	private static final int RECORD_DISCONNECTION = 2;
+	private static final int RECORD_SERVER_CONNECTION = 3;
+	
+	private final Queue<Object> _incoming;
+	private final AtomicInteger _incomingSize;
+	private final int _capacity;
+	private final AtomicBoolean _writeScheduled;
+	private volatile boolean _overflowReported;
+	private volatile boolean _failed;
+	private volatile boolean _sealed;
+	
+	// guarded by this
+	private Path _file;
+	private DataOutputStream _out;
+	private final List<Proxy> _sessions;
+	private final Map<Proxy, Integer> _sessionIDs;
+	private int _written;
+	
+	/**
+	 * Creates an empty spill.
+	 * 
+	 * @param capacity how many actions may wait to be written before packets are discarded
+	 */
+	LogQueueSpill(int capacity)
+	{
+		_incoming = new ConcurrentLinkedQueue<>();
+		_incomingSize = new AtomicInteger();
+		_capacity = capacity;
+		_writeScheduled = new AtomicBoolean();
+		_overflowReported = false;
+		_failed = false;
+		_sealed = false;
+		
+		_file = null;
+		_out = null;
+		_sessions = new ArrayList<>();
+		_sessionIDs = new IdentityHashMap<>();
+		_written = 0;
+	}
+	
+	/**
+	 * Appends an action to this spill. The action is written to the spill file in the background.<BR>
+	 * <BR>
+	 * If too many actions are waiting to be written, a packet is discarded instead. Connection, server connection and disconnection actions are never discarded.
+	 * 
+	 * @param action a connection, server connection, packet or disconnection action
+	 * @return whether the action was appended
+	 */
+	boolean append(Object action)
+	{
+		if (_incomingSize.get() >= _capacity && action instanceof PacketWrapper)
+		{
+			if (!_overflowReported)
+			{
+				_overflowReported = true;
+				LOG.warn("Packet log spill " + (_failed ? "cannot be written" : "is falling behind") + ", packets that do not fit in memory will not be logged.");
+			}
+			return false;
+		}
+		
+		_incomingSize.incrementAndGet();
+		_incoming.offer(action);
+		scheduleWrite();
+		return true;
+	}
+	
+	private void scheduleWrite()
+	{
+		if (_writeScheduled.compareAndSet(false, true))
+			L2ThreadPool.executeLongRunning(this::writePending);
+	}
+	
+	private void writePending()
+	{
+		synchronized (this)
+		{
+			if (!_sealed && !_failed)
+			{
+				try
+				{
+					if (_out == null)
+					{
+						_file = Files.createTempFile("netpro-log-spill", ".tmp");
+						_out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(_file), 1 << 16));
+					}
+					
+					// an action is only removed once it has been written, so that it can be kept in memory if writing fails
+					for (Object action; (action = _incoming.peek()) != null;)
+					{
+						write(action);
+						_incoming.poll();
+						_incomingSize.decrementAndGet();
+						++_written;
+					}
+					_out.flush();
+				}
+				catch (final IOException e)
+				{
+					LOG.error("Cannot write to packet log spill " + _file + ", further spilled actions will be kept in memory up to " + _capacity + " packets.", e);
+					_failed = true;
+				}
+			}
+		}
+		
+		_writeScheduled.set(false);
+		// an action may have been added while we were finishing up
+		if (!_incoming.isEmpty() && !_sealed && !_failed)
+			scheduleWrite();
+	}
+	
+	private void write(Object action) throws IOException
+	{
+		if (action instanceof PacketWrapper)
+		{
+			final PacketWrapper pi = (PacketWrapper)action;
+			final ReceivedPacket packet = pi._packet;
+			final byte[] body = packet.getBody();
+			_out.writeInt(getSessionID(pi._client));
+			_out.writeByte(RECORD_PACKET);
+			_out.writeByte(packet.getService().ordinal());
+			_out.writeByte(packet.getEndpoint().ordinal());
+			_out.writeLong(packet.getReceived());
+			_out.writeByte((int)BitMaskUtils.maskOf(pi._flags));
+			_out.writeChar(body.length);
+			_out.write(body);
+		}
+		else if (action instanceof ConnectionWrapper)
+		{
+			final ConnectionWrapper ci = (ConnectionWrapper)action;
+			_out.writeInt(getSessionID(ci._client));
+			_out.writeByte(RECORD_CONNECTION);
+			_out.writeLong(ci._time);
+			_out.writeLong(ci._nanoTime);
+		}
+		else if (action instanceof ServerConnectionWrapper)
+		{
+			_out.writeInt(getSessionID(((ServerConnectionWrapper)action)._client));
+			_out.writeByte(RECORD_SERVER_CONNECTION);
+		}
+		else if (action instanceof Proxy)
+		{
+			_out.writeInt(getSessionID((Proxy)action));
+			_out.writeByte(RECORD_DISCONNECTION);
+		}
+		else
+			throw new IllegalArgumentException(String.valueOf(action));
+	}
+	
+	private int getSessionID(Proxy client)
+	{
+		Integer id = _sessionIDs.get(client);
+		if (id == null)
+		{
+			id = _sessions.size();
+			_sessions.add(client);
+			_sessionIDs.put(client, id);
+		}
+		return id;
+	}
+	
+	/**
+	 * Returns the amount of actions in this spill.
+	 * 
+	 * @return spilled actions
+	 */
+	synchronized int size()
+	{
+		return _written + _incomingSize.get();
+	}
+	
+	/**
+	 * Passes all spilled actions, in order, to the given handler and deletes the spill file. No actions may be appended once this method is called.<BR>
+	 * <BR>
+	 * If some actions cannot be read back, the rest are still passed to the handler. As disconnections may have been lost, logs of all disconnected sessions in
+	 * this spill are closed afterwards.
+	 * 
+	 * @param handler action handler
+	 * @return amount of actions that could not be read back
+	 */
+	int replay(Consumer<Object> handler)
+	{
+		seal();
+		
+		final ServiceType[] services = ServiceType.values();
+		final EndpointType[] endpoints = EndpointType.values();
+		int replayed = 0;
+		if (_written > 0)
+		{
+			try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(_file), 1 << 16)))
+			{
+				for (; replayed < _written; ++replayed)
+				{
+					final Proxy client = _sessions.get(in.readInt());
+					switch (in.readUnsignedByte())
+					{
+						case RECORD_CONNECTION:
+							handler.accept(new ConnectionWrapper(client, in.readLong(), in.readLong()));
+							break;
+						case RECORD_SERVER_CONNECTION:
+							handler.accept(new ServerConnectionWrapper(client));
+							break;
+						case RECORD_PACKET:
+							final ServiceType service = services[in.readUnsignedByte()];
+							final EndpointType endpoint = endpoints[in.readUnsignedByte()];
+							final long received = in.readLong();
+							final int flags = in.readUnsignedByte();
+							final byte[] body = new byte[in.readChar()];
+							in.readFully(body);
+							handler.accept(new PacketWrapper(client, new ReceivedPacket(service, endpoint, body, received), BitMaskUtils.setOf(flags, LoggedPacketFlag.class)));
+							break;
+						case RECORD_DISCONNECTION:
+							handler.accept(client);
+							break;
+						default:
+							throw new IOException("Unknown record type");
+					}
+				}
+			}
+			catch (final IOException | RuntimeException e)
+			{
+				LOG.error("Cannot replay " + (_written - replayed) + " action(s) from packet log spill " + _file, e);
+			}
+		}
+		
+		// actions that were not written follow all that were
+		for (Object action; (action = _incoming.poll()) != null;)
+		{
+			_incomingSize.decrementAndGet();
+			handler.accept(action);
+		}
+		
+		final int lost = _written - replayed;
+		if (lost > 0)
+		{
+			for (final Proxy client : _sessions)
+				if (client.isDced())
+					handler.accept(client);
+		}
+		
+		delete();
+		return lost;
+	}
+	
+	/** Deletes the spill file without replaying it. */
+	void discard()
+	{
+		seal();
+		_incoming.clear();
+		_incomingSize.set(0);
+		delete();
+	}
+	
+	private synchronized void seal()
+	{
+		_sealed = true;
+		if (_out != null)
+			UnmanagedResource.close(_out);
+	}
+	
+	private void delete()
+	{
+		if (_file == null)
+			return;
+		
+		try
+		{
+			Files.deleteIfExists(_file);
+		}
+		catch (final IOException e)
+		{
+			LOG.warn("Cannot delete packet log spill " + _file, e);
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.io.packetlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+
+import net.l2emuproject.proxy.io.NewIOHelper;
+
+/**
+ * A fast LZ77 block codec, similar to the LZ4 block format.<BR>
+ * <BR>
+ * A block starts with its uncompressed length (little-endian) and is followed by sequences. Each sequence consists of a token (4 bits literal length, 4 bits match
+ * length minus 4), optional literal length extension bytes, literals, a 2 byte match offset and optional match length extension bytes. The last sequence only
+ * consists of literals.<BR>
+ * <BR>
+ * Compression trades ratio for speed: only a single hash table probe is made at each position.
+ * 
+ * @author _dev_
+ */
+final class LzBlockCodec implements LogBlockCodec
+{
+	/** Compression type in log file header. */
+	static final int COMPRESSION_TYPE = 2;
+	/** Shared instance. */
+	static final LzBlockCodec INSTANCE = new LzBlockCodec();
+	
+	private static final int MIN_MATCH = 4;
+	private static final int MAX_OFFSET = 0xFFFF;
+	private static final int HASH_BITS = 14;
+	private static final int SKIP_TRIGGER = 6;
+	
+	private LzBlockCodec()
+	{
+		// singleton
+	}
+	
+	@Override
+	public int getCompressionType()
+	{
+		return COMPRESSION_TYPE;
+	}
+	
+	@Override
+	public LogBlockCompressor newCompressor()
+	{
+		return new LzBlockCompressor();
+	}
+	
+	@Override
+	public ByteBuffer decompress(byte[] block, int length, byte[] buffer) throws DataFormatException
+	{
+		try
+		{
+			final int size = readInt(block, 0);
+			if (size < 0 || size > MAX_BLOCK_SIZE)
+				throw new DataFormatException("Block size");
+			if (buffer.length < size)
+				buffer = new byte[size];
+			
+			int sp = 4, dp = 0;
+			while (true)
+			{
+				final int token = block[sp++] & 0xFF;
+				int literals = token >>> 4;
+				if (literals == 15)
+				{
+					int b;
+					do
+						literals += b = block[sp++] & 0xFF;
+					while (b == 0xFF);
+				}
+				if (dp + literals > size || sp + literals > length)
+					throw new DataFormatException("Literal length");
+				System.arraycopy(block, sp, buffer, dp, literals);
+				sp += literals;
+				dp += literals;
+				if (sp >= length)
+					break;
+				
+				final int offset = (block[sp++] & 0xFF) | (block[sp++] & 0xFF) << 8;
+				int match = token & 0x0F;
+				if (match == 15)
+				{
+					int b;
+					do
+						match += b = block[sp++] & 0xFF;
+					while (b == 0xFF);
+				}
+				match += MIN_MATCH;
+				
+				final int ref = dp - offset;
+				if (offset == 0 || ref < 0 || dp + match > size)
+					throw new DataFormatException("Match");
+				if (offset >= match)
+					System.arraycopy(buffer, ref, buffer, dp, match);
+				else
+				{
+					// overlapping copy repeats the referenced bytes
+					for (int i = 0; i < match; ++i)
+						buffer[dp + i] = buffer[ref + i];
+				}
+				dp += match;
+			}
+			
+			if (dp != size)
+				throw new DataFormatException("Block size");
+			return ByteBuffer.wrap(buffer, 0, size);
+		}
+		catch (final IndexOutOfBoundsException e)
+		{
+			throw new DataFormatException("Truncated block");
+		}
+	}
+	
+	static int readInt(byte[] array, int offset)
+	{
+		return (array[offset] & 0xFF) | (array[offset + 1] & 0xFF) << 8 | (array[offset + 2] & 0xFF) << 16 | (array[offset + 3] & 0xFF) << 24;
+	}
+	
+	static void writeInt(byte[] array, int offset, int value)
+	{
+		array[offset] = (byte)value;
+		array[offset + 1] = (byte)(value >>> 8);
+		array[offset + 2] = (byte)(value >>> 16);
+		array[offset + 3] = (byte)(value >>> 24);
+	}
+	
+	private static final class LzBlockCompressor implements LogBlockCompressor
+	{
+		private final int[] _table;
+		private byte[] _output;
+		
+		LzBlockCompressor()
+		{
+			_table = new int[1 << HASH_BITS];
+			_output = new byte[0];
+		}
+		
+		@Override
+		public int compress(byte[] block, int length, NewIOHelper out) throws IOException
+		{
+			final int worstCase = 4 + length + length / 0xFF + 16;
+			if (_output.length < worstCase)
+				_output = new byte[worstCase];
+			
+			final byte[] dst = _output;
+			writeInt(dst, 0, length);
+			int dp = 4;
+			
+			Arrays.fill(_table, -1);
+			int anchor = 0, ip = 0, misses = 0;
+			while (ip + MIN_MATCH <= length)
+			{
+				final int sequence = readInt(block, ip);
+				final int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+				final int ref = _table[hash];
+				_table[hash] = ip;
+				if (ref < 0 || ip - ref > MAX_OFFSET || readInt(block, ref) != sequence)
+				{
+					// skip faster through data that does not compress
+					ip += 1 + (misses++ >>> SKIP_TRIGGER);
+					continue;
+				}
+				
+				int match = MIN_MATCH;
+				while (ip + match < length && block[ref + match] == block[ip + match])
+					++match;
+				
+				dp = writeLiterals(dst, dp, block, anchor, ip - anchor, match - MIN_MATCH);
+				final int offset = ip - ref;
+				dst[dp++] = (byte)offset;
+				dst[dp++] = (byte)(offset >>> 8);
+				dp = writeLength(dst, dp, match - MIN_MATCH);
+				
+				ip += match;
+				anchor = ip;
+				misses = 0;
+			}
+			dp = writeLiterals(dst, dp, block, anchor, length - anchor, 0);
+			
+			out.write(dst, 0, dp);
+			return dp;
+		}
+		
+		private static int writeLiterals(byte[] dst, int dp, byte[] src, int offset, int literals, int match)
+		{
+			dst[dp++] = (byte)(Math.min(literals, 15) << 4 | Math.min(match, 15));
+			dp = writeLength(dst, dp, literals);
+			System.arraycopy(src, offset, dst, dp, literals);
+			return dp + literals;
+		}
+		
+		private static int writeLength(byte[] dst, int dp, int length)
+		{
+			if (length < 15)
+				return dp;
+			
+			int remaining = length - 15;
+			while (remaining >= 0xFF)
+			{
+				dst[dp++] = (byte)0xFF;
+				remaining -= 0xFF;
+			}
+			dst[dp++] = (byte)remaining;
+			return dp;
+		}
+		
+		@Override
+		public void end()
+		{
+			_output = null;
+		}
+	}
+}
@@ -25,6 +25,7 @@ import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
@@ -46,17 +47,26 @@ public class NetProPacketLogFileIterator implements Iterator<LogFilePacket>, Aut
 	private static final int MINIMAL_PACKET_LENGTH_IN_LOG_FILE = 1 + 2 + 1 + 8;
 	private static final int MINIMAL_PACKET_LENGTH_IN_LOG_FILE_V7 = 1 + 2 + 1 + 8 + 1;
 	
+	/** First log file format version where each compressed block can be decompressed on its own. */
+	private static final int FIRST_VERSION_WITH_INDEPENDENT_BLOCKS = 11;
+	
 	private static final int DEFLATED_BUFFER_SIZE = 8192;
-	private static final byte[] OMITTED = { 0, 0, (byte)0xFF, (byte)0xFF };
+	private static final byte[] OMITTED = DeflateBlockCodec.OMITTED;
 	
 	private final LogFileHeader _logFileMetadata;
 	private final NewIOHelper _input;
+	private final boolean _ownsInput;
 	
 	private Inflater _inflater;
 	private ByteBuffer _inflated;
 	private byte[] _deflated;
 	private int _remainingInDeflatedBlock;
 	
+	private final ParallelBlockInflater _blocks;
+	private LogFilePacket[] _block;
+	private int _nextInBlock;
+	private int _nextPacket;
+	
 	NetProPacketLogFileIterator(LogFileHeader logFileMetadata) throws IOException
 	{
 		_logFileMetadata = logFileMetadata;
@@ -64,13 +74,30 @@ public class NetProPacketLogFileIterator implements Iterator<LogFilePacket>, Aut
 		_input = new NewIOHelper(Files.newByteChannel(logFileMetadata.getLogFile(), StandardOpenOption.READ));
 		// move to first packet
 		_input.setPositionInChannel(logFileMetadata.getHeaderSize());
+		_ownsInput = true;
+		
+		_blocks = newBlockReader(ParallelBlockInflater.getDefaultReadAhead());
 	}
 	
 	NetProPacketLogFileIterator(NewIOHelper input, int version, long footerStart, int compressionType, Path logFile) throws IOException
 	{
 		_logFileMetadata = new LogFileHeader(logFile, -1L, version, -1, -1, footerStart, -1L, null, -1, Collections.emptySet(), compressionType, -1, Collections.emptyMap(), Collections.emptyMap(),
-				-1L);
+				-1L, null);
+		// the caller keeps reading metadata, so closing this iterator will only discard blocks that were read ahead
 		_input = input;
+		_ownsInput = false;
+		_blocks = newBlockReader(1);
+	}
+	
+	private ParallelBlockInflater newBlockReader(int readAhead)
+	{
+		// blocks of older logs share a single deflate stream, so they can only be inflated sequentially
+		final LogBlockCodec codec = LogBlockCodec.valueOf(_logFileMetadata.getCompressionType());
+		if (codec == null || _logFileMetadata.getVersion() < FIRST_VERSION_WITH_INDEPENDENT_BLOCKS)
+			return null;
+		
+		// blocks are only read ahead once iteration begins
+		return new ParallelBlockInflater(_input, codec, _logFileMetadata.getLogFile().getFileName().toString(), readAhead);
 	}
 	
 	@Override
@@ -78,6 +105,9 @@ public class NetProPacketLogFileIterator implements Iterator<LogFilePacket>, Aut
 	{
 		try
 		{
+			if (_blocks != null)
+				return nextBlockIfNecessary();
+			
 			switch (_logFileMetadata.getCompressionType())
 			{
 				case 0:
@@ -100,6 +130,14 @@ public class NetProPacketLogFileIterator implements Iterator<LogFilePacket>, Aut
 	@Override
 	public LogFilePacket next() throws LogFileIterationIOException
 	{
+		if (_blocks != null)
+		{
+			if (!hasNext())
+				throw new NoSuchElementException();
+			++_nextPacket;
+			return _block[_nextInBlock++];
+		}
+		
 		switch (_logFileMetadata.getCompressionType())
 		{
 			case 0:
@@ -140,6 +178,92 @@ public class NetProPacketLogFileIterator implements Iterator<LogFilePacket>, Aut
 		}
 	}
 	
+	/**
+	 * Moves this iterator to the packet with the given index, so that it will be returned by the next call to {@link #next()}.
+	 * 
+	 * @param packetIndex index of a packet within the log file
+	 * @return {@code true} if this iterator was moved, {@code false} if the log file cannot be navigated
+	 * @throws IOException if the log file cannot be read
+	 */
+	public boolean seekToPacket(int packetIndex) throws IOException
+	{
+		final LogBlockIndex index = _logFileMetadata.getBlockIndex();
+		if (_blocks == null || index == null || index.size() < 1)
+			return false;
+		
+		final int block = Math.max(0, index.findByPacket(packetIndex));
+		seekToBlock(index, block);
+		
+		if (nextBlockIfNecessary())
+		{
+			_nextInBlock = Math.min(_block.length, Math.max(0, packetIndex - index.getFirstPacket(block)));
+			_nextPacket += _nextInBlock;
+		}
+		return true;
+	}
+	
+	/**
+	 * Moves this iterator to the first packet received at or after the given time, so that it will be returned by the next call to {@link #next()}.
+	 * 
+	 * @param time packet reception timestamp
+	 * @return {@code true} if this iterator was moved, {@code false} if the log file cannot be navigated
+	 * @throws IOException if the log file cannot be read
+	 */
+	public boolean seekToTime(long time) throws IOException
+	{
+		final LogBlockIndex index = _logFileMetadata.getBlockIndex();
+		if (_blocks == null || index == null || index.size() < 1)
+			return false;
+		
+		final int block = index.findByTime(time);
+		seekToBlock(index, block != -1 ? block : index.size() - 1);
+		
+		while (nextBlockIfNecessary() && _block[_nextInBlock].getReceivalTime() < time)
+		{
+			++_nextInBlock;
+			++_nextPacket;
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns whether all packets that have not been returned by this iterator yet were received after the given time. Packets of a log file are not necessarily
+	 * ordered by reception time, so this can only be told by logs with a block index.
+	 * 
+	 * @param time packet reception timestamp
+	 * @return {@code true} if no remaining packet was received at or before {@code time}, {@code false} if there may be such packets
+	 */
+	public boolean isPastTime(long time)
+	{
+		final LogBlockIndex index = _logFileMetadata.getBlockIndex();
+		if (_blocks == null || index == null || index.size() < 1)
+			return false;
+		
+		final int block = index.findByPacket(_nextPacket);
+		return block >= 0 && index.getRemainingMinTime(block) > time;
+	}
+	
+	private void seekToBlock(LogBlockIndex index, int block) throws IOException
+	{
+		_blocks.reset();
+		_block = null;
+		_nextInBlock = 0;
+		_nextPacket = index.getFirstPacket(block);
+		_input.setPositionInChannel(index.getOffset(block));
+	}
+	
+	private boolean nextBlockIfNecessary() throws IOException
+	{
+		while (_block == null || _nextInBlock >= _block.length)
+		{
+			_block = _blocks.nextBlock();
+			_nextInBlock = 0;
+			if (_block == null)
+				return false;
+		}
+		return true;
+	}
+	
 	private void initC1() throws IOException
 	{
 		if (_inflater != null)
@@ -196,7 +320,10 @@ public class NetProPacketLogFileIterator implements Iterator<LogFilePacket>, Aut
 	@Override
 	public void close() throws IOException
 	{
-		_input.close();
+		if (_blocks != null)
+			_blocks.close();
+		if (_ownsInput)
+			_input.close();
 	}
 	
 	@Override
@@ -19,11 +19,11 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.zip.Deflater;
 
 import org.apache.commons.lang3.mutable.MutableInt;
 
 import net.l2emuproject.proxy.io.NewIOHelper;
+import net.l2emuproject.proxy.io.packetlog.LogBlockCodec.LogBlockCompressor;
 import net.l2emuproject.proxy.ui.ReceivedPacket;
 
 /**
@@ -37,15 +37,20 @@ public class PacketLog
 	private static final byte EXT_SERVER = (byte)0xFE;
 	
 	private final NewIOHelper _writer;
-	private final Deflater _deflater;
-	private final ByteBuffer _deflateBuffer;
-	private final byte[] _outputBuffer;
+	private final LogBlockCompressor _compressor;
+	private final ByteBuffer _blockBuffer;
 	
 	private final Map<Integer, MutableInt> _cp;
 	private final Map<Integer, MutableInt> _sp;
 	
 	private final ByteBuffer _buffer;
 	
+	private final LogBlockIndex _blockIndex;
+	private int _blockPackets;
+	private int _blockFirstPacket;
+	private long _blockMinTime;
+	private long _blockLastTime;
+	
 	private int _total;
 	private long _totalPacketBytes;
 	
@@ -53,20 +58,22 @@ public class PacketLog
 	 * Creates a packet log metadata tracker.
 	 * 
 	 * @param writer an associated log file writer
-	 * @param deflater deflate implementation
+	 * @param compressor block compressor or {@code null}, if packets should not be compressed
 	 */
-	public PacketLog(NewIOHelper writer, Deflater deflater)
+	public PacketLog(NewIOHelper writer, LogBlockCompressor compressor)
 	{
 		_writer = writer;
-		_deflater = deflater;
-		_deflateBuffer = _deflater != null ? ByteBuffer.allocate((1 + 2 + (1 << 16) - 1 + 8 + 1) << 1).order(ByteOrder.LITTLE_ENDIAN) : null;
-		_outputBuffer = _deflater != null ? new byte[8192] : null;
+		_compressor = compressor;
+		_blockBuffer = _compressor != null ? ByteBuffer.allocate(LogBlockCodec.MAX_BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN) : null;
 		
 		_cp = new HashMap<>();
 		_sp = new HashMap<>();
 		
 		_buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
 		
+		_blockIndex = _compressor != null ? new LogBlockIndex(64) : null;
+		_blockPackets = 0;
+		
 		_total = 0;
 		_totalPacketBytes = 0L;
 	}
@@ -105,24 +112,63 @@ public class PacketLog
 		count.increment();
 	}
 	
+	/**
+	 * Called after a packet is added to the current block, but before the block is written.
+	 * 
+	 * @param time packet reception time
+	 */
+	void onBufferedPacket(long time)
+	{
+		if (_blockPackets++ == 0)
+		{
+			_blockFirstPacket = _total;
+			_blockMinTime = _blockLastTime = time;
+		}
+		else
+		{
+			_blockMinTime = Math.min(_blockMinTime, time);
+			_blockLastTime = Math.max(_blockLastTime, time);
+		}
+	}
+	
+	/**
+	 * Called after the current block has been written.
+	 * 
+	 * @param offset position of the block's length field in file
+	 */
+	void onBlockWritten(long offset)
+	{
+		if (_blockPackets == 0)
+			return;
+		
+		_blockIndex.add(offset, _blockFirstPacket, _blockMinTime, _blockLastTime);
+		_blockPackets = 0;
+	}
+	
+	LogBlockIndex getBlockIndex()
+	{
+		return _blockIndex;
+	}
+	
 	NewIOHelper getWriter()
 	{
 		return _writer;
 	}
 	
-	Deflater getDeflater()
+	LogBlockCompressor getCompressor()
 	{
-		return _deflater;
+		return _compressor;
 	}
 	
-	ByteBuffer getDeflateBuffer()
+	ByteBuffer getBlockBuffer()
 	{
-		return _deflateBuffer;
+		return _blockBuffer;
 	}
 	
-	byte[] getOutputBuffer()
+	void releaseCompressor()
 	{
-		return _outputBuffer;
+		if (_compressor != null)
+			_compressor.end();
 	}
 	
 	Map<Integer, MutableInt> getCp()
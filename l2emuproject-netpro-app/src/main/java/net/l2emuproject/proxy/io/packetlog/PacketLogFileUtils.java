@@ -221,6 +221,8 @@ public final class PacketLogFileUtils implements IOConstants
 				{
 					totalPacketBytes = in.readLong();
 					compressionType = in.readByte();
+					if (compressionType != 0 && LogBlockCodec.valueOf(compressionType) == null)
+						throw new DamagedFileException("Compression type");
 				}
 			}
 			
@@ -239,68 +241,71 @@ public final class PacketLogFileUtils implements IOConstants
 			
 			in.skip(unreadHeaderBytes, false);
 			
-			@SuppressWarnings("resource")
-			final NetProPacketLogFileIterator it = new NetProPacketLogFileIterator(in, logFileVersion, footerStartPosition, compressionType, packetLogFile);
-			LogFilePacket firstPacket = null;
-			extractProtocolVersion: if (protocolVersionNumber == -1)
+			// only the first few packets are read, so blocks read ahead must be discarded
+			try (final NetProPacketLogFileIterator it = new NetProPacketLogFileIterator(in, logFileVersion, footerStartPosition, compressionType, packetLogFile))
 			{
-				// first packet should be [C] SendProtocolVersion
-				if (!it.hasNext())
-					break extractProtocolVersion;
-				firstPacket = it.next();
-				if (!firstPacket.getEndpoint().isClient()) // not a client packet
-					break extractProtocolVersion;
-				if (firstPacket.getContent().length < 1 + 4)
-					break extractProtocolVersion;
-				
-				final int opcode = firstPacket.getContent()[0];
-				if (opcode != 0x00 && opcode != 0x0E) // Chronicle opcode/Throne opcode
-					break extractProtocolVersion;
-				
-				protocolVersionNumber = ByteBuffer.wrap(firstPacket.getContent(), 1, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
-			}
-			
-			LogFilePacket secondPacket = null;
-			extractAltModes: if (logFileVersion < 9)
-			{
-				extractServerType:
+				LogFilePacket firstPacket = null;
+				extractProtocolVersion: if (protocolVersionNumber == -1)
 				{
-					// second packet should be [S] VersionCheck
+					// first packet should be [C] SendProtocolVersion
 					if (!it.hasNext())
-						break extractAltModes;
-					if (firstPacket == null)
+						break extractProtocolVersion;
+					firstPacket = it.next();
+					if (!firstPacket.getEndpoint().isClient()) // not a client packet
+						break extractProtocolVersion;
+					if (firstPacket.getContent().length < 1 + 4)
+						break extractProtocolVersion;
+					
+					final int opcode = firstPacket.getContent()[0];
+					if (opcode != 0x00 && opcode != 0x0E) // Chronicle opcode/Throne opcode
+						break extractProtocolVersion;
+					
+					protocolVersionNumber = ByteBuffer.wrap(firstPacket.getContent(), 1, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+				}
+				
+				LogFilePacket secondPacket = null;
+				extractAltModes: if (logFileVersion < 9)
+				{
+					extractServerType:
 					{
-						firstPacket = it.next();
+						// second packet should be [S] VersionCheck
 						if (!it.hasNext())
 							break extractAltModes;
+						if (firstPacket == null)
+						{
+							firstPacket = it.next();
+							if (!it.hasNext())
+								break extractAltModes;
+						}
+						secondPacket = it.next();
+						if (!secondPacket.getEndpoint().isServer()) // not a server packet
+							break extractServerType;
+						if (secondPacket.getContent().length < 1 + 1 + 8 + 4 + 4 + 1 + 4 + 1)
+							break extractServerType;
+						altModes.addAll(L2ServerType.valueOf(secondPacket.getContent()[23]).getAltModeSet());
+					}
+					
+					for (int i = 0; it.hasNext() && i < 5; ++i)
+					{
+						final LogFilePacket packet = it.next();
+						if (packet.getEndpoint().isServer())
+							continue;
+						if (packet.getContent()[0] != 0x2B)
+							continue;
+						final ByteBuffer buf = ByteBuffer.wrap(packet.getContent()).order(ByteOrder.LITTLE_ENDIAN);
+						buf.position(1);
+						while (buf.getChar() != 0)
+							continue;
+						buf.position(buf.position() + 16);
+						altModes.addAll(L2ServerLocale.valueOf(buf.getInt()).getAltModeSet());
+						break;
 					}
-					secondPacket = it.next();
-					if (!secondPacket.getEndpoint().isServer()) // not a server packet
-						break extractServerType;
-					if (secondPacket.getContent().length < 1 + 1 + 8 + 4 + 4 + 1 + 4 + 1)
-						break extractServerType;
-					altModes.addAll(L2ServerType.valueOf(secondPacket.getContent()[23]).getAltModeSet());
-				}
-				
-				for (int i = 0; it.hasNext() && i < 5; ++i)
-				{
-					final LogFilePacket packet = it.next();
-					if (packet.getEndpoint().isServer())
-						continue;
-					if (packet.getContent()[0] != 0x2B)
-						continue;
-					final ByteBuffer buf = ByteBuffer.wrap(packet.getContent()).order(ByteOrder.LITTLE_ENDIAN);
-					buf.position(1);
-					while (buf.getChar() != 0)
-						continue;
-					buf.position(buf.position() + 16);
-					altModes.addAll(L2ServerLocale.valueOf(buf.getInt()).getAltModeSet());
-					break;
 				}
 			}
 			
 			int totalPackets = -1;
 			Map<Integer, Integer> cp = Collections.emptyMap(), sp = Collections.emptyMap();
+			LogBlockIndex blockIndex = null;
 			
 			footer:
 			{
@@ -351,10 +356,29 @@ public final class PacketLogFileUtils implements IOConstants
 					}
 					altModes.add(String.valueOf(modeChars));
 				}
+				
+				// optional section, only present in compressed logs written by newer versions
+				final long footerEnd = footerStartPosition + footerSize;
+				if (logFileVersion < 11 || footerEnd - in.getPositionInChannel(false) < 4 + 4 || in.readInt() != LogBlockIndex.SECTION_MAGIC)
+					break footer;
+				
+				final int blockCount = in.readInt();
+				if (blockCount < 0 || (long)blockCount * LogBlockIndex.ENTRY_SIZE > footerEnd - in.getPositionInChannel(false))
+					throw new DamagedFileException("Block index");
+				
+				blockIndex = new LogBlockIndex(blockCount);
+				for (int i = 0; i < blockCount; ++i)
+				{
+					final long offset = in.readLong();
+					final int firstPacket = in.readInt();
+					final long minTime = in.readLong();
+					final long lastTime = in.readLong();
+					blockIndex.add(offset, firstPacket, minTime, lastTime);
+				}
 			}
 			
 			return new LogFileHeader(packetLogFile, size, logFileVersion, headerSize, footerSize, footerStartPosition, creationTime, service, protocolVersionNumber, altModes, compressionType,
-					totalPackets, cp, sp, totalPacketBytes);
+					totalPackets, cp, sp, totalPacketBytes, blockIndex);
 		}
 		catch (final BufferUnderflowException e)
 		{
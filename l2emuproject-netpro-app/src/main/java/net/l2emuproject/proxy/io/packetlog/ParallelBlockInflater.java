@@ -0,0 +1,214 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.io.packetlog;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.DataFormatException;
+
+import net.l2emuproject.proxy.io.NewIOHelper;
+import net.l2emuproject.proxy.io.exception.LogFileIterationIOException;
+import net.l2emuproject.proxy.network.EndpointType;
+import net.l2emuproject.util.BitMaskUtils;
+
+/**
+ * Reads independently compressed packet log blocks and decompresses them in parallel.<BR>
+ * <BR>
+ * Blocks are read sequentially, so the channel is only touched by the calling thread. Each block is then decompressed and split into packets by a fork-join worker,
+ * while a bounded amount of subsequent blocks is read ahead. Blocks are handed out in file order.
+ * 
+ * @author _dev_
+ */
+final class ParallelBlockInflater implements AutoCloseable
+{
+	private static final int MINIMAL_PACKET_LENGTH = 1 + 2 + 1 + 8 + 1;
+	private static final ThreadLocal<byte[]> INFLATED = ThreadLocal.withInitial(() -> new byte[LogBlockCodec.MAX_BLOCK_SIZE]);
+	@SuppressWarnings("unchecked")
+	private static final Set<LoggedPacketFlag>[] FLAGS = new Set[1 << LoggedPacketFlag.values().length];
+	
+	static
+	{
+		for (int mask = 0; mask < FLAGS.length; ++mask)
+		{
+			final Set<LoggedPacketFlag> flags = BitMaskUtils.setOf(mask, LoggedPacketFlag.class);
+			FLAGS[mask] = flags.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(EnumSet.copyOf(flags));
+		}
+	}
+	
+	private final NewIOHelper _input;
+	private final LogBlockCodec _codec;
+	private final String _filename;
+	private final ForkJoinPool _pool;
+	private final int _readAhead;
+	private final Queue<ForkJoinTask<LogFilePacket[]>> _pending;
+	
+	private boolean _lastBlockRead;
+	
+	/**
+	 * Creates a block reader.
+	 * 
+	 * @param input log file reader, positioned at the first block's length
+	 * @param codec block codec
+	 * @param filename log file name
+	 * @param readAhead maximum amount of blocks that are read, but not yet handed out
+	 */
+	ParallelBlockInflater(NewIOHelper input, LogBlockCodec codec, String filename, int readAhead)
+	{
+		_input = input;
+		_codec = codec;
+		_filename = filename;
+		_pool = ForkJoinPool.commonPool();
+		_readAhead = Math.max(1, readAhead);
+		_pending = new ArrayDeque<>(_readAhead);
+		
+		_lastBlockRead = false;
+	}
+	
+	/**
+	 * Returns the amount of blocks to read ahead, so that all fork-join workers can be kept busy.
+	 * 
+	 * @return read-ahead block count
+	 */
+	static int getDefaultReadAhead()
+	{
+		return Math.max(2, ForkJoinPool.commonPool().getParallelism() << 1);
+	}
+	
+	/**
+	 * Returns packets of the next block in file.
+	 * 
+	 * @return packets or {@code null}, if there are no more blocks
+	 * @throws IOException if the log file cannot be read
+	 * @throws LogFileIterationIOException if a block is corrupt
+	 */
+	LogFilePacket[] nextBlock() throws IOException, LogFileIterationIOException
+	{
+		readAhead();
+		final ForkJoinTask<LogFilePacket[]> task = _pending.poll();
+		if (task == null)
+			return null;
+		
+		final LogFilePacket[] packets = task.join();
+		readAhead();
+		return packets;
+	}
+	
+	private void readAhead() throws IOException, LogFileIterationIOException
+	{
+		while (!_lastBlockRead && _pending.size() < _readAhead)
+		{
+			final int length = _input.readInt();
+			if (length == -1)
+			{
+				_lastBlockRead = true;
+				break;
+			}
+			if (length <= 0 || length > LogBlockCodec.MAX_COMPRESSED_BLOCK_SIZE)
+				throw new LogFileIterationIOException(_filename, new IOException("Invalid block length: " + length));
+			
+			final byte[] compressed = new byte[length];
+			_input.read(compressed, 0, length);
+			_pending.add(_pool.submit(new BlockInflationTask(_codec, compressed, _filename)));
+		}
+	}
+	
+	/** Discards all blocks that were read ahead. The caller must then move the input to a block's length field. */
+	void reset()
+	{
+		for (final ForkJoinTask<LogFilePacket[]> task : _pending)
+			task.cancel(false);
+		_pending.clear();
+		_lastBlockRead = false;
+	}
+	
+	@Override
+	public void close()
+	{
+		for (final ForkJoinTask<LogFilePacket[]> task : _pending)
+			task.cancel(false);
+		_pending.clear();
+		_lastBlockRead = true;
+	}
+	
+	private static final class BlockInflationTask extends RecursiveTask<LogFilePacket[]>
+	{
+		private static final long serialVersionUID = -3590237915337429425L;
+		
+		private final LogBlockCodec _codec;
+		private final byte[] _compressed;
+		private final String _filename;
+		
+		BlockInflationTask(LogBlockCodec codec, byte[] compressed, String filename)
+		{
+			_codec = codec;
+			_compressed = compressed;
+			_filename = filename;
+		}
+		
+		@Override
+		protected LogFilePacket[] compute()
+		{
+			final byte[] scratch = INFLATED.get();
+			final ByteBuffer buf;
+			try
+			{
+				buf = _codec.decompress(_compressed, _compressed.length, scratch).order(ByteOrder.LITTLE_ENDIAN);
+			}
+			catch (final DataFormatException e)
+			{
+				throw new LogFileIterationIOException(_filename, e);
+			}
+			if (buf.array() != scratch)
+				INFLATED.set(buf.array());
+			
+			final int size = buf.remaining();
+			LogFilePacket[] packets = new LogFilePacket[Math.max(1, size / 64)];
+			int count = 0;
+			try
+			{
+				while (buf.remaining() >= MINIMAL_PACKET_LENGTH)
+				{
+					final EndpointType type = EndpointType.valueOf(buf.get() != 0);
+					final byte[] body = new byte[buf.getChar()];
+					buf.get(body);
+					final long time = buf.getLong();
+					final Set<LoggedPacketFlag> flags = FLAGS[buf.get() & (FLAGS.length - 1)];
+					
+					if (count == packets.length)
+						packets = Arrays.copyOf(packets, count << 1);
+					packets[count++] = new LogFilePacket(type, body, time, flags);
+				}
+			}
+			catch (final BufferUnderflowException | IndexOutOfBoundsException e)
+			{
+				// a packet runs past the end of the block
+				throw new LogFileIterationIOException(_filename, new IOException("Malformed block", e));
+			}
+			return count == packets.length ? packets : Arrays.copyOf(packets, count);
+		}
+	}
+}
@@ -16,18 +16,16 @@
 package net.l2emuproject.proxy.network.meta;
 
 import java.nio.BufferUnderflowException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
+import java.util.function.Function;
 
 import net.l2emuproject.lang.L2TextBuilder;
 import net.l2emuproject.network.mmocore.MMOBuffer;
 import net.l2emuproject.network.protocol.IProtocolVersion;
+import net.l2emuproject.proxy.config.ProxyConfig;
 import net.l2emuproject.proxy.io.definitions.VersionnedPacketTable;
 import net.l2emuproject.proxy.network.ByteBufferUtils;
 import net.l2emuproject.proxy.network.EndpointType;
@@ -37,6 +35,7 @@ import net.l2emuproject.proxy.network.meta.exception.RunawayLoopException;
 import net.l2emuproject.proxy.network.meta.structure.BranchElement;
 import net.l2emuproject.proxy.network.meta.structure.FieldElement;
 import net.l2emuproject.proxy.network.meta.structure.LoopElement;
+import net.l2emuproject.proxy.network.meta.structure.PacketStructureElement;
 import net.l2emuproject.proxy.network.meta.structure.field.FieldValue;
 import net.l2emuproject.proxy.network.meta.structure.field.FieldValueReadOption;
 import net.l2emuproject.proxy.network.meta.structure.field.bytes.AbstractByteArrayFieldElement;
@@ -61,72 +60,165 @@ public class L2PacketTablePayloadEnumerator implements PacketPayloadEnumerator
 	// this should allow optimal memory & performance
 	//private static final MMOLogger LOG = new MMOLogger(L2PacketTablePayloadEnumerator.class, 5000);
 	
+	private static final Map<FieldValueReadOption, ?> READ_OPTIONS = Collections.singletonMap(FieldValueReadOption.APPLY_MODIFICATIONS, null);
+	
+	private static final Function<IPacketTemplate, EnumerationPlan> COMPLETE_PLANNER = t -> EnumerationPlan.COMPLETE;
+	
+	private final ThreadLocal<EnumeratingVisitor> _visitors = ThreadLocal.withInitial(EnumeratingVisitor::new);
+	
 	@Override
 	public RandomAccessMMOBuffer enumeratePacketPayload(IProtocolVersion protocol, MMOBuffer buf, IPacketSource packetAuthor) throws InvalidPacketOpcodeSchemeException,
 			PartialPayloadEnumerationException
 	{
-		final RandomAccessMMOBuffer result;
+		return enumeratePacketPayload(protocol, buf, packetAuthor, COMPLETE_PLANNER);
+	}
+	
+	@Override
+	public RandomAccessMMOBuffer enumeratePacketPayload(IProtocolVersion protocol, MMOBuffer buf, IPacketSource packetAuthor, Function<IPacketTemplate, EnumerationPlan> planner)
+			throws InvalidPacketOpcodeSchemeException, PartialPayloadEnumerationException
+	{
+		final ByteBuffer body;
 		try
 		{
-			result = new RandomAccessMMOBuffer(buf, protocol, packetAuthor);
+			body = RandomAccessMMOBuffer.unwrap(buf);
 		}
 		catch (NoSuchFieldException | IllegalAccessException e)
 		{
 			throw new InternalError("Failed instrumenting MMOBuffer", e);
 		}
-		final Map<String, List<EnumeratedPayloadField>> efields = new HashMap<>();
-		result.setEnumeratedFields(efields);
 		
-		final int pos = result._buffer.position();
+		final int pos = body.position();
 		try
 		{
 			final EndpointType endpoint = packetAuthor.getType();
 			final IPacketTemplate template;
 			try
 			{
-				//result._buffer.clear();
-				result._buffer.position(0);
-				template = VersionnedPacketTable.getInstance().getTemplate(protocol, endpoint, result._buffer);
+				//body.clear();
+				body.position(0);
+				template = VersionnedPacketTable.getInstance().getTemplate(protocol, endpoint, body);
 			}
 			catch (final RuntimeException e)
 			{
-				throw new InvalidPacketOpcodeSchemeException(endpoint, HexUtil.bytesToHexString(ByteBufferUtils.asMutable(result._buffer).array(), " "), e);
+				throw new InvalidPacketOpcodeSchemeException(endpoint, HexUtil.bytesToHexString(ByteBufferUtils.asMutable(body).array(), " "), e);
 			}
 			
-			final EnumeratingVisitor visitor = new EnumeratingVisitor(template, result);
-			template.visitStructureElements(visitor, result._buffer, Collections.singletonMap(FieldValueReadOption.APPLY_MODIFICATIONS, null));
-			if (visitor._partialEnumerationException != null)
-				throw visitor._partialEnumerationException;
-			if (visitor._failure != null)
-				throw visitor._failure;
+			final EnumerationPlan plan = planner.apply(template);
+			if (!plan.isRequired() && !ProxyConfig.VALIDATE_SKIPPED_PACKETS)
+				return null;
+			
+			final RandomAccessMMOBuffer result = new RandomAccessMMOBuffer(buf, body, protocol, packetAuthor);
+			EnumeratingVisitor visitor = _visitors.get();
+			if (visitor._result != null)
+				visitor = new EnumeratingVisitor(); // re-entrant enumeration
+			// skipped packets are only walked to report malformed definitions
+			visitor.reset(template, result, plan.getLastElement(), plan.isRequired());
+			try
+			{
+				template.visitStructureElements(visitor, result._buffer, READ_OPTIONS);
+				if (plan.isRequired())
+					visitor.publish();
+				if (visitor._partialEnumerationException != null)
+					throw visitor._partialEnumerationException;
+				if (visitor._failure != null)
+					throw visitor._failure;
+			}
+			finally
+			{
+				visitor.reset(null, null, null, false);
+			}
+			if (!plan.isRequired())
+				return null;
 			if (template.isDefined())
 				result.setPacketName(template.getName());
 			return result;
 		}
 		finally
 		{
-			result._buffer.position(pos);
+			body.position(pos);
 		}
 	}
 	
+	/**
+	 * Collects aliased fields into flat arrays that are reused by all enumerations performed on the same thread.
+	 * Fields are chained per alias ID, so that they can be grouped without any lookup structures once enumeration completes.
+	 */
 	private static final class EnumeratingVisitor implements /*ISODateTime, */PacketStructureElementVisitor
 	{
-		private final IPacketTemplate _template;
+		private static final int NONE = -1;
+		
+		IPacketTemplate _template;
 		//private final long _receivalTimestamp;
 		
-		private final RandomAccessMMOBuffer _result;
-		private final Queue<Integer> _loopSizes;
+		RandomAccessMMOBuffer _result;
+		private PacketStructureElement _lastElement;
+		private boolean _collecting;
+		
+		// per field
+		private int[] _fieldOffsets;
+		private FieldElement<?>[] _fieldElements;
+		private int[] _nextField;
+		private int _fieldCount;
+		
+		// per alias ID
+		private int[] _firstField;
+		private int[] _lastField;
+		
+		// distinct aliases in order of first occurrence
+		private int[] _aliasOrder;
+		private int _aliasCount;
 		
 		PartialPayloadEnumerationException _partialEnumerationException;
 		RuntimeException _failure;
 		
-		EnumeratingVisitor(IPacketTemplate template/*, long receivalTimestamp*/, RandomAccessMMOBuffer result)
+		EnumeratingVisitor()
 		{
-			_template = template;
-			//_receivalTimestamp = receivalTimestamp;
+			_fieldOffsets = new int[64];
+			_fieldElements = new FieldElement<?>[64];
+			_nextField = new int[64];
+			
+			_firstField = new int[64];
+			_lastField = new int[64];
+			Arrays.fill(_firstField, NONE);
 			
+			_aliasOrder = new int[16];
+		}
+		
+		void reset(IPacketTemplate template, RandomAccessMMOBuffer result, PacketStructureElement lastElement, boolean collecting)
+		{
+			_template = template;
 			_result = result;
-			_loopSizes = new LinkedList<>();
+			_lastElement = lastElement;
+			_collecting = collecting;
+			
+			for (int i = 0; i < _aliasCount; ++i)
+				_firstField[_aliasOrder[i]] = NONE;
+			_aliasCount = 0;
+			Arrays.fill(_fieldElements, 0, _fieldCount, null);
+			_fieldCount = 0;
+			
+			_partialEnumerationException = null;
+			_failure = null;
+		}
+		
+		void publish()
+		{
+			final int[] aliasIDs = Arrays.copyOf(_aliasOrder, _aliasCount);
+			final int[] fieldStarts = new int[_aliasCount + 1];
+			final int[] offsets = new int[_fieldCount];
+			final FieldElement<?>[] elements = new FieldElement<?>[_fieldCount];
+			int field = 0;
+			for (int i = 0; i < _aliasCount; ++i)
+			{
+				fieldStarts[i] = field;
+				for (int f = _firstField[aliasIDs[i]]; f != NONE; f = _nextField[f])
+				{
+					offsets[field] = _fieldOffsets[f];
+					elements[field++] = _fieldElements[f];
+				}
+			}
+			fieldStarts[_aliasCount] = field;
+			_result.setEnumeratedFields(aliasIDs, fieldStarts, offsets, elements);
 		}
 		
 		@Override
@@ -150,7 +242,7 @@ public class L2PacketTablePayloadEnumerator implements PacketPayloadEnumerator
 		@Override
 		public void onLoopStart(LoopElement element, int expectedIterations) throws RuntimeException
 		{
-			_loopSizes.add(expectedIterations);
+			// do nothing
 		}
 		
 		@Override
@@ -168,7 +260,8 @@ public class L2PacketTablePayloadEnumerator implements PacketPayloadEnumerator
 		@Override
 		public void onLoopEnd(LoopElement element) throws RuntimeException
 		{
-			_loopSizes.remove();
+			if (element == _lastElement)
+				throw EnumerationCompletedException.INSTANCE;
 		}
 		
 		@Override
@@ -211,6 +304,9 @@ public class L2PacketTablePayloadEnumerator implements PacketPayloadEnumerator
 		@Override
 		public void onException(Exception e, int remainingBytes)
 		{
+			if (e == EnumerationCompletedException.INSTANCE)
+				return;
+			
 			if (e instanceof RunawayLoopException)
 			{
 				_partialEnumerationException = new PartialPayloadEnumerationException(_result, _template, (RunawayLoopException)e);
@@ -226,24 +322,67 @@ public class L2PacketTablePayloadEnumerator implements PacketPayloadEnumerator
 		
 		private <V extends FieldValue> void onField(FieldElement<V> element, V value)
 		{
-			if (value == null)
-				return;
+			if (value != null && _collecting)
+				enumerate(element, value);
 			
-			final Set<String> aliases = element.getFieldAliases();
-			if (aliases.isEmpty())
+			if (element == _lastElement)
+				throw EnumerationCompletedException.INSTANCE;
+		}
+		
+		private <V extends FieldValue> void enumerate(FieldElement<V> element, V value)
+		{
+			final int[] aliases = element.getFieldAliasIDs();
+			if (aliases.length == 0)
 				return;
 			
-			for (final String alias : aliases)
+			final int offset = _result._buffer.position() - value.raw().length;
+			for (final int alias : aliases)
 			{
-				List<EnumeratedPayloadField> list = _result.getEnumeratedFields().get(alias);
-				if (list == null)
+				if (alias >= _firstField.length)
+				{
+					final int size = Math.max(alias + 1, _firstField.length << 1);
+					final int oldSize = _firstField.length;
+					_firstField = Arrays.copyOf(_firstField, size);
+					_lastField = Arrays.copyOf(_lastField, size);
+					Arrays.fill(_firstField, oldSize, size, NONE);
+				}
+				if (_fieldCount == _fieldOffsets.length)
 				{
-					final Integer size = _loopSizes.peek();
-					list = new ArrayList<>(size != null ? size : 1);
-					_result.getEnumeratedFields().put(alias, list);
+					final int size = _fieldCount << 1;
+					_fieldOffsets = Arrays.copyOf(_fieldOffsets, size);
+					_fieldElements = Arrays.copyOf(_fieldElements, size);
+					_nextField = Arrays.copyOf(_nextField, size);
 				}
-				list.add(new EnumeratedPayloadField(element, _result._buffer.position() - value.raw().length));
+				
+				final int field = _fieldCount++;
+				_fieldOffsets[field] = offset;
+				_fieldElements[field] = element;
+				_nextField[field] = NONE;
+				
+				if (_firstField[alias] == NONE)
+				{
+					if (_aliasCount == _aliasOrder.length)
+						_aliasOrder = Arrays.copyOf(_aliasOrder, _aliasCount << 1);
+					_aliasOrder[_aliasCount++] = alias;
+					_firstField[alias] = field;
+				}
+				else
+					_nextField[_lastField[alias]] = field;
+				_lastField[alias] = field;
 			}
 		}
 	}
+	
+	/** Ends a structure walk once all elements of interest have been visited. */
+	private static final class EnumerationCompletedException extends RuntimeException
+	{
+		private static final long serialVersionUID = 4446335553396404342L;
+		
+		static final EnumerationCompletedException INSTANCE = new EnumerationCompletedException();
+		
+		private EnumerationCompletedException()
+		{
+			super(null, null, false, false);
+		}
+	}
 }
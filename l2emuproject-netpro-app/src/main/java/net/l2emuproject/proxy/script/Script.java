@@ -28,6 +28,7 @@ import net.l2emuproject.proxy.StartupOption;
 import net.l2emuproject.proxy.network.Packet;
 import net.l2emuproject.proxy.network.Proxy;
 import net.l2emuproject.proxy.network.listener.ConnectionListener;
+import net.l2emuproject.proxy.network.listener.OpcodeFilteredManipulator;
 import net.l2emuproject.proxy.network.listener.PacketManipulator;
 import net.l2emuproject.util.ObjectPool;
 import net.l2emuproject.util.logging.L2Logger;
@@ -43,7 +44,7 @@ import net.l2emuproject.util.logging.L2Logger;
  * @param <S> internal type representing a server
  * @author savormix
  */
-public abstract class Script<C extends Proxy, S extends Proxy> implements ConnectionListener, PacketManipulator, UnloadableScript
+public abstract class Script<C extends Proxy, S extends Proxy> implements ConnectionListener, OpcodeFilteredManipulator, UnloadableScript
 {
 	/** Default logger for scripts. */
 	protected static final L2Logger LOG = L2Logger.getLogger(Script.class);
@@ -139,6 +140,12 @@ public abstract class Script<C extends Proxy, S extends Proxy> implements Connec
 	 */
 	public abstract void tearDown();
 	
+	/**
+	 * Rebuilds opcode dispatch tables of all connection managers this script is registered with,
+	 * so that packets are only delivered while this script is enabled.
+	 */
+	protected abstract void refreshDispatch();
+	
 	/**
 	 * General client packet manipulation.
 	 * 
@@ -330,6 +337,19 @@ public abstract class Script<C extends Proxy, S extends Proxy> implements Connec
 		return Arrays.binarySearch(handledOpcodes, opcode) >= 0;
 	}
 	
+	@Override
+	public final int[] getHandledOpcodes(boolean client)
+	{
+		final int[] handledOpcodes = client ? _handledClient : _handledServer;
+		return handledOpcodes != WILDCARD ? handledOpcodes.clone() : null;
+	}
+	
+	@Override
+	public final boolean isEnabled()
+	{
+		return _enabled;
+	}
+	
 	/**
 	 * Enables or disables this script.
 	 * 
@@ -337,7 +357,11 @@ public abstract class Script<C extends Proxy, S extends Proxy> implements Connec
 	 */
 	public void setEnabled(boolean enabled)
 	{
+		if (_enabled == enabled)
+			return;
+		
 		_enabled = enabled;
+		refreshDispatch();
 	}
 	
 	@Override
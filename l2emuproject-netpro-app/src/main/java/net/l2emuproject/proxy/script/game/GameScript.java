@@ -58,6 +58,13 @@ public abstract class GameScript extends Script<L2GameClient, L2GameServer>
 		pc.addPacketListener(this);
 	}
 	
+	@Override
+	protected final void refreshDispatch()
+	{
+		L2GameClientConnections.getInstance().refreshPacketManipulators();
+		L2GameServerConnections.getInstance().refreshPacketManipulators();
+	}
+	
 	@Override
 	public final void tearDown()
 	{
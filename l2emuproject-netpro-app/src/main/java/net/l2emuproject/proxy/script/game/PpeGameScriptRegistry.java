@@ -18,18 +18,32 @@ package net.l2emuproject.proxy.script.game;
 import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.mutable.MutableInt;
 
 import net.l2emuproject.network.mmocore.MMOBuffer;
 import net.l2emuproject.network.mmocore.MMOLogger;
+import net.l2emuproject.network.protocol.IProtocolVersion;
 import net.l2emuproject.proxy.network.game.client.L2GameClient;
 import net.l2emuproject.proxy.network.game.server.L2GameServer;
+import net.l2emuproject.proxy.network.meta.EnumerationPlan;
+import net.l2emuproject.proxy.network.meta.FieldAliasRegistry;
 import net.l2emuproject.proxy.network.meta.IPacketTemplate;
 import net.l2emuproject.proxy.network.meta.L2PpeProvider;
 import net.l2emuproject.proxy.network.meta.RandomAccessMMOBuffer;
 import net.l2emuproject.proxy.network.meta.exception.InvalidPacketOpcodeSchemeException;
 import net.l2emuproject.proxy.network.meta.exception.PartialPayloadEnumerationException;
+import net.l2emuproject.proxy.network.meta.structure.FieldElement;
+import net.l2emuproject.proxy.network.meta.structure.LoopElement;
+import net.l2emuproject.proxy.network.meta.structure.PacketStructureElement;
+import net.l2emuproject.proxy.network.meta.structure.StructureElementListElement;
 import net.l2emuproject.proxy.script.ScriptFieldAlias;
 import net.l2emuproject.proxy.script.ScriptManager;
 import net.l2emuproject.util.concurrent.RunnableStatsManager;
@@ -42,6 +56,7 @@ public final class PpeGameScriptRegistry extends GameScript
 	private static final MMOLogger LOG = new MMOLogger(PpeGameScriptRegistry.class, 3_000);
 	
 	private final List<PpeEnabledGameScript> _registry, _registryEx;
+	private volatile Subscriptions _subscriptions, _subscriptionsEx;
 	
 	/** Creates this script manager script. */
 	public PpeGameScriptRegistry()
@@ -50,6 +65,8 @@ public final class PpeGameScriptRegistry extends GameScript
 		
 		_registry = new CopyOnWriteArrayList<>();
 		_registryEx = new CopyOnWriteArrayList<>();
+		_subscriptions = new Subscriptions(_registry, true);
+		_subscriptionsEx = new Subscriptions(_registryEx, false);
 	}
 	
 	/**
@@ -65,6 +82,7 @@ public final class PpeGameScriptRegistry extends GameScript
 			return;
 		
 		_registry.add(-ip - 1, script);
+		_subscriptions = new Subscriptions(_registry, true);
 		setEnabled(true);
 	}
 	
@@ -83,6 +101,7 @@ public final class PpeGameScriptRegistry extends GameScript
 			return;
 		
 		_registryEx.add(-ip - 1, script);
+		_subscriptionsEx = new Subscriptions(_registryEx, false);
 		setEnabled(true);
 	}
 	
@@ -93,8 +112,10 @@ public final class PpeGameScriptRegistry extends GameScript
 	 */
 	public void remove(PpeEnabledGameScript script)
 	{
-		_registry.remove(script);
-		_registryEx.remove(script);
+		if (_registry.remove(script))
+			_subscriptions = new Subscriptions(_registry, true);
+		if (_registryEx.remove(script))
+			_subscriptionsEx = new Subscriptions(_registryEx, false);
 	}
 	
 	@Override
@@ -119,7 +140,7 @@ public final class PpeGameScriptRegistry extends GameScript
 		final RandomAccessMMOBuffer rab;
 		try
 		{
-			rab = L2PpeProvider.getPacketPayloadEnumerator().enumeratePacketPayload(client.getProtocol(), buf, client);
+			rab = L2PpeProvider.getPacketPayloadEnumerator().enumeratePacketPayload(client.getProtocol(), buf, client, _subscriptions.getClientPlanner(client.getProtocol()));
 		}
 		catch (final InvalidPacketOpcodeSchemeException e)
 		{
@@ -143,6 +164,9 @@ public final class PpeGameScriptRegistry extends GameScript
 			return;
 		}
 		
+		if (rab == null)
+			return;
+		
 		if (rab.getAllFields().isEmpty())
 		{
 			if (rab.getPacketName() == null)
@@ -195,7 +219,7 @@ public final class PpeGameScriptRegistry extends GameScript
 		final RandomAccessMMOBuffer rab;
 		try
 		{
-			rab = L2PpeProvider.getPacketPayloadEnumerator().enumeratePacketPayload(server.getProtocol(), buf, server);
+			rab = L2PpeProvider.getPacketPayloadEnumerator().enumeratePacketPayload(server.getProtocol(), buf, server, _subscriptions.getServerPlanner(server.getProtocol()));
 		}
 		catch (final InvalidPacketOpcodeSchemeException e)
 		{
@@ -219,6 +243,9 @@ public final class PpeGameScriptRegistry extends GameScript
 			return;
 		}
 		
+		if (rab == null)
+			return;
+		
 		if (rab.getAllFields().isEmpty())
 		{
 			if (rab.getPacketName() == null)
@@ -282,7 +309,7 @@ public final class PpeGameScriptRegistry extends GameScript
 			try
 			{
 				buf.setByteBuffer(sent);
-				rab = L2PpeProvider.getPacketPayloadEnumerator().enumeratePacketPayload(sender.getProtocol(), buf, sender);
+				rab = L2PpeProvider.getPacketPayloadEnumerator().enumeratePacketPayload(sender.getProtocol(), buf, sender, _subscriptionsEx.getClientPlanner(sender.getProtocol()));
 			}
 			catch (final InvalidPacketOpcodeSchemeException e)
 			{
@@ -302,7 +329,7 @@ public final class PpeGameScriptRegistry extends GameScript
 				return;
 			}
 			
-			if (rab.getAllFields().isEmpty())
+			if (rab == null || rab.getAllFields().isEmpty())
 				return;
 			
 			for (final PpeEnabledGameScript script : _registryEx)
@@ -348,6 +375,145 @@ public final class PpeGameScriptRegistry extends GameScript
 		return "savormix";
 	}
 	
+	/**
+	 * Decides, for each packet template, whether any of the registered scripts may need that packet enumerated, and how far.<BR>
+	 * <BR>
+	 * Plans are cached per protocol version and endpoint type. A new instance is created whenever the set of registered scripts changes;
+	 * reloaded templates are recognized by identity and planned anew.
+	 */
+	private static final class Subscriptions
+	{
+		private final boolean[] _aliases;
+		private final Set<String> _packetNames;
+		private final Map<IProtocolVersion, Planner> _clientPlanners, _serverPlanners;
+		
+		Subscriptions(List<PpeEnabledGameScript> scripts, boolean includePacketNames)
+		{
+			final FieldAliasRegistry registry = FieldAliasRegistry.getInstance();
+			final Set<String> aliases = new HashSet<>();
+			final Set<String> packetNames = new HashSet<>();
+			for (final PpeEnabledGameScript script : scripts)
+			{
+				aliases.addAll(script.getHandledScriptFieldAliases());
+				if (includePacketNames)
+					packetNames.addAll(script.getHandledPacketNames());
+			}
+			
+			final int[] ids = new int[aliases.size()];
+			int i = 0, max = -1;
+			for (final String alias : aliases)
+				max = Math.max(max, ids[i++] = registry.intern(alias));
+			_aliases = new boolean[max + 1];
+			for (final int id : ids)
+				_aliases[id] = true;
+			_packetNames = packetNames;
+			
+			_clientPlanners = new ConcurrentHashMap<>();
+			_serverPlanners = new ConcurrentHashMap<>();
+		}
+		
+		Function<IPacketTemplate, EnumerationPlan> getClientPlanner(IProtocolVersion protocol)
+		{
+			return _clientPlanners.computeIfAbsent(protocol, k -> new Planner());
+		}
+		
+		Function<IPacketTemplate, EnumerationPlan> getServerPlanner(IProtocolVersion protocol)
+		{
+			return _serverPlanners.computeIfAbsent(protocol, k -> new Planner());
+		}
+		
+		EnumerationPlan plan(IPacketTemplate template)
+		{
+			// unknown packets are always enumerated, so that they can be reported
+			if (!template.isDefined() || _packetNames.contains(template.getName()))
+				return EnumerationPlan.COMPLETE;
+			if (!template.isWithScriptAliases())
+				return EnumerationPlan.SKIP;
+			
+			final PacketStructureElement lastElement = findLastElement(template.getStructure(), null);
+			if (lastElement == null)
+				return EnumerationPlan.SKIP;
+			
+			final MutableInt occurrences = new MutableInt(0);
+			countOccurrences(template.getStructure(), lastElement, occurrences);
+			return occurrences.intValue() == 1 ? EnumerationPlan.until(lastElement) : EnumerationPlan.COMPLETE;
+		}
+		
+		private PacketStructureElement findLastElement(List<PacketStructureElement> nodes, LoopElement outermostLoop)
+		{
+			PacketStructureElement lastElement = null;
+			for (final PacketStructureElement node : nodes)
+			{
+				if (node instanceof FieldElement)
+				{
+					if (isSubscribed((FieldElement<?>)node))
+						lastElement = outermostLoop != null ? outermostLoop : node;
+				}
+				else if (node instanceof StructureElementListElement)
+				{
+					final LoopElement loop = outermostLoop == null && node instanceof LoopElement ? (LoopElement)node : outermostLoop;
+					final PacketStructureElement nested = findLastElement(((StructureElementListElement)node).getNodes(), loop);
+					if (nested != null)
+						lastElement = nested;
+				}
+			}
+			return lastElement;
+		}
+		
+		private boolean isSubscribed(FieldElement<?> field)
+		{
+			for (final int id : field.getFieldAliasIDs())
+				if (id < _aliases.length && _aliases[id])
+					return true;
+			return false;
+		}
+		
+		private static void countOccurrences(List<PacketStructureElement> nodes, PacketStructureElement element, MutableInt occurrences)
+		{
+			for (final PacketStructureElement node : nodes)
+			{
+				if (node == element)
+					occurrences.increment();
+				if (node instanceof StructureElementListElement)
+					countOccurrences(((StructureElementListElement)node).getNodes(), element, occurrences);
+			}
+		}
+		
+		private final class Planner implements Function<IPacketTemplate, EnumerationPlan>
+		{
+			private final Map<IPacketTemplate, PlannedTemplate> _plans;
+			
+			Planner()
+			{
+				_plans = new ConcurrentHashMap<>();
+			}
+			
+			@Override
+			public EnumerationPlan apply(IPacketTemplate template)
+			{
+				final PlannedTemplate planned = _plans.get(template);
+				if (planned != null && planned._template == template)
+					return planned._plan;
+				
+				final EnumerationPlan plan = plan(template);
+				_plans.put(template, new PlannedTemplate(template, plan));
+				return plan;
+			}
+		}
+	}
+	
+	private static final class PlannedTemplate
+	{
+		final IPacketTemplate _template;
+		final EnumerationPlan _plan;
+		
+		PlannedTemplate(IPacketTemplate template, EnumerationPlan plan)
+		{
+			_template = template;
+			_plan = plan;
+		}
+	}
+	
 	private static final class PriorityComparator implements Comparator<PpeEnabledGameScript>
 	{
 		PriorityComparator()
@@ -58,6 +58,13 @@ public abstract class LoginScript extends Script<L2LoginClient, L2LoginServer>
 		pc.addPacketListener(this);
 	}
 	
+	@Override
+	protected final void refreshDispatch()
+	{
+		L2LoginClientConnections.getInstance().refreshPacketManipulators();
+		L2LoginServerConnections.getInstance().refreshPacketManipulators();
+	}
+	
 	@Override
 	public final void tearDown()
 	{
@@ -46,6 +46,9 @@ public final class LogFileLoadProgressDialogController
 	@FXML
 	private Label _labAmount;
 	
+	@FXML
+	private Label _labRates;
+	
 	@FXML
 	private Button _btnCancel;
 	
@@ -98,6 +101,21 @@ public final class LogFileLoadProgressDialogController
 		_labAmount.setText(UIStrings.get("generic.amountof", integerFormat.format(loadedAmount), integerFormat.format(totalAmount)));
 	}
 	
+	/**
+	 * Updates the load rate of each loading stage.
+	 * 
+	 * @param readRate packets read per second
+	 * @param decodeRate packets decoded per second
+	 * @param deliveryRate packets delivered per second
+	 * @param failedAmount packets that could not be loaded
+	 */
+	public void setStageRates(double readRate, double decodeRate, double deliveryRate, long failedAmount)
+	{
+		final NumberFormat integerFormat = NumberFormat.getIntegerInstance(UIStrings.CURRENT_LOCALE);
+		final String rates = UIStrings.get("open.netpro.loaddlg.rates", integerFormat.format(readRate), integerFormat.format(decodeRate), integerFormat.format(deliveryRate));
+		_labRates.setText(failedAmount > 0 ? UIStrings.get("open.netpro.loaddlg.rates.failed", rates, integerFormat.format(failedAmount)) : rates);
+	}
+	
 	/**
 	 * Assigns a task that can be cancelled when pressing the cancellation button.
 	 * 
@@ -19,25 +19,24 @@ import static net.l2emuproject.proxy.ui.javafx.UtilityDialogs.makeNonModalUtilit
 import static net.l2emuproject.proxy.ui.javafx.UtilityDialogs.wrapException;
 
 import java.io.IOException;
+import java.net.URL;
 import java.nio.channels.ClosedByInterruptException;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import net.l2emuproject.network.protocol.IProtocolVersion;
 import net.l2emuproject.proxy.io.exception.LogFileIterationIOException;
 import net.l2emuproject.proxy.io.packetlog.LogFileHeader;
-import net.l2emuproject.proxy.io.packetlog.LogFilePacket;
 import net.l2emuproject.proxy.io.packetlog.LogLoadOptions;
 import net.l2emuproject.proxy.io.packetlog.LogLoadOptions.LogLoadFlag;
 import net.l2emuproject.proxy.io.packetlog.NetProPacketLogFileIterator;
 import net.l2emuproject.proxy.io.packetlog.PacketLogFileUtils;
-import net.l2emuproject.proxy.script.LogLoadScriptManager;
-import net.l2emuproject.proxy.ui.ReceivedPacket;
 import net.l2emuproject.proxy.ui.i18n.UIStrings;
 import net.l2emuproject.proxy.ui.javafx.FXUtils;
 import net.l2emuproject.proxy.ui.javafx.WindowTracker;
@@ -48,28 +47,37 @@ import net.l2emuproject.proxy.ui.savormix.io.task.HistoricalPacketLog;
 import net.l2emuproject.util.StackTraceUtil;
 import net.l2emuproject.util.concurrent.L2ThreadPool;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.fxml.Initializable;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.SpinnerValueFactory.IntegerSpinnerValueFactory;
 import javafx.scene.control.Tab;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
+import javafx.util.Duration;
 
 /**
  * Handles the packet log loading option selection dialog.
  * 
  * @author _dev_
  */
-public final class PacketLogLoadOptionController extends AbstractLogLoadOptionController<LogFileHeader>
+public final class PacketLogLoadOptionController extends AbstractLogLoadOptionController<LogFileHeader> implements Initializable
 {
+	private static final int PROGRESS_UPDATE_INTERVAL = 250;
+	
 	@FXML
 	private Label _labVersion;
 	
@@ -82,6 +90,19 @@ public final class PacketLogLoadOptionController extends AbstractLogLoadOptionCo
 	@FXML
 	private CheckBox _cbNonCaptured;
 	
+	@FXML
+	private Spinner<Integer> _spWindowStart;
+	
+	@FXML
+	private Spinner<Integer> _spWindowLength;
+	
+	@Override
+	public void initialize(URL location, ResourceBundle resources)
+	{
+		_spWindowStart.setValueFactory(new IntegerSpinnerValueFactory(0, Integer.MAX_VALUE, 0));
+		_spWindowLength.setValueFactory(new IntegerSpinnerValueFactory(0, Integer.MAX_VALUE, 0));
+	}
+	
 	@FXML
 	private void loadPacketLog(ActionEvent event)
 	{
@@ -170,47 +191,42 @@ public final class PacketLogLoadOptionController extends AbstractLogLoadOptionCo
 			flags.add(LogLoadFlag.INCLUDE_SYNTHETIC);
 		if (_cbNonCaptured.isSelected())
 			flags.add(LogLoadFlag.INCLUDE_NON_CAPTURED);
-		final LogLoadOptions options = new LogLoadOptions(protocolVersion, flags);
-		final LogLoadScriptManager scriptManager = LogLoadScriptManager.getInstance();
+		final long windowStart, windowEnd;
+		{
+			final int skippedMinutes = _spWindowStart.getValue(), loadedMinutes = _spWindowLength.getValue();
+			windowStart = skippedMinutes > 0 ? logFileHeader.getCreated() + TimeUnit.MINUTES.toMillis(skippedMinutes) : Long.MIN_VALUE;
+			windowEnd = loadedMinutes > 0 ? logFileHeader.getCreated() + TimeUnit.MINUTES.toMillis(skippedMinutes + (long)loadedMinutes) : Long.MAX_VALUE;
+		}
+		final LogLoadOptions options = new LogLoadOptions(protocolVersion, flags, windowStart, windowEnd);
 		
 		final AtomicBoolean canUpdateUI = new AtomicBoolean(true);
-		final AtomicInteger packetsRead = new AtomicInteger(0);
 		final List<PacketLogEntry> packets = new ArrayList<>();
-		final Future<?> loadTask = L2ThreadPool.submitLongRunning(() -> {
-			try (final NetProPacketLogFileIterator it = PacketLogFileUtils.getPacketIterator(logFileHeader))
+		final PacketLogLoadPipeline pipeline = new PacketLogLoadPipeline(logFileHeader, options, cacheContext, loaded -> {
+			synchronized (packets)
 			{
-				while (it.hasNext())
+				packets.addAll(loaded);
+				if (!canUpdateUI.getAndSet(false))
+					return;
+			}
+			Platform.runLater(() -> {
+				synchronized (packets)
 				{
-					if (Thread.interrupted())
-						return;
-					
-					final LogFilePacket packet = it.next();
-					packetsRead.incrementAndGet();
-					// scripts enable analytics on packets that will be visible in the table
-					scriptManager.onLoadedPacket(logFileHeader.getService().isLogin(), packet.getEndpoint().isClient(), packet.getContent(), protocolVersion, cacheContext, packet.getReceivalTime());
-					if (PacketLogFileUtils.isLoadable(packet, options))
-					{
-						final PacketLogEntry packetEntry = new PacketLogEntry(new ReceivedPacket(logFileHeader.getService(), packet.getEndpoint(), packet.getContent(), packet.getReceivalTime()));
-						packetEntry.updateView(protocolVersion);
-						
-						synchronized (packets)
-						{
-							packets.add(packetEntry);
-							if (canUpdateUI.getAndSet(false))
-							{
-								Platform.runLater(() -> {
-									synchronized (packets)
-									{
-										controller.addPackets(packets);
-										packets.clear();
-										progressDialog.setLoadedAmount(packetsRead.get(), totalPackets);
-										canUpdateUI.set(true);
-									}
-								});
-							}
-						}
-					}
+					controller.addPackets(packets);
+					packets.clear();
+					canUpdateUI.set(true);
 				}
+			});
+		});
+		final Timeline tlProgress = new Timeline(new KeyFrame(Duration.millis(PROGRESS_UPDATE_INTERVAL), e -> {
+			progressDialog.setLoadedAmount((int)pipeline.getReadCount(), totalPackets);
+			progressDialog.setStageRates(pipeline.getReadRate(), pipeline.getDecodeRate(), pipeline.getDeliveryRate(), pipeline.getFailedCount());
+		}));
+		tlProgress.setCycleCount(Animation.INDEFINITE);
+		tlProgress.play();
+		final Future<?> loadTask = L2ThreadPool.submitLongRunning(() -> {
+			try (final NetProPacketLogFileIterator it = PacketLogFileUtils.getPacketIterator(logFileHeader))
+			{
+				pipeline.run(it);
 			}
 			catch (final IOException e) // trying to open
 			{
@@ -230,9 +246,19 @@ public final class PacketLogLoadOptionController extends AbstractLogLoadOptionCo
 						() -> wrapException(t, "open.netpro.err.dialog.title.named", new Object[]
 				{ filename }, "open.netpro.err.dialog.header.io", null, getDialogWindow(), Modality.NONE).show());
 			}
+			catch (final RuntimeException e) // during read
+			{
+				final Throwable t = StackTraceUtil.stripUntilClassContext(e, true, PacketLogLoadOptionController.class.getName());
+				Platform.runLater(
+						() -> wrapException(t, "open.netpro.err.dialog.title.named", new Object[]
+				{ filename }, "open.netpro.err.dialog.header.runtime", null, getDialogWindow(), Modality.NONE).show());
+			}
 			finally
 			{
-				Platform.runLater(progressDialogWindow::hide);
+				Platform.runLater(() -> {
+					tlProgress.stop();
+					progressDialogWindow.hide();
+				});
 			}
 		});
 		progressDialog.setTask(loadTask);
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.ui.javafx.io.view;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import net.l2emuproject.proxy.io.packetlog.LogFileHeader;
+import net.l2emuproject.proxy.io.packetlog.LogFilePacket;
+import net.l2emuproject.proxy.io.packetlog.LogLoadOptions;
+import net.l2emuproject.proxy.io.packetlog.NetProPacketLogFileIterator;
+import net.l2emuproject.proxy.io.packetlog.PacketLogFileUtils;
+import net.l2emuproject.proxy.script.LogLoadScriptManager;
+import net.l2emuproject.proxy.ui.ReceivedPacket;
+import net.l2emuproject.proxy.ui.javafx.packet.PacketLogEntry;
+import net.l2emuproject.proxy.ui.savormix.io.task.HistoricalPacketLog;
+import net.l2emuproject.util.concurrent.L2ThreadPool;
+import net.l2emuproject.util.logging.L2Logger;
+
+/**
+ * Loads packets from a NetPro packet log in three stages.<BR>
+ * <BR>
+ * The calling thread reads (and, via the iterator, inflates) packets and groups them into batches. Each batch is then filtered and its packet templates resolved by a
+ * fork-join worker. Finally, a dedicated thread takes the batches in file order, passes every packet to log load scripts and hands loadable packets over to the table.<BR>
+ * Only a bounded amount of batches may await delivery, so reading is suspended whenever the later stages fall behind.<BR>
+ * <BR>
+ * A batch that cannot be decoded or delivered is skipped and its packets are counted as failed. If reading fails, packets read so far are still delivered before the
+ * failure is reported to the caller.
+ * 
+ * @author _dev_
+ */
+final class PacketLogLoadPipeline
+{
+	private static final L2Logger LOG = L2Logger.getLogger(PacketLogLoadPipeline.class);
+	
+	private static final int BATCH_SIZE = 256;
+	
+	private final LogFileHeader _logFileHeader;
+	private final LogLoadOptions _options;
+	private final HistoricalPacketLog _cacheContext;
+	private final Consumer<List<PacketLogEntry>> _sink;
+	
+	private final ForkJoinPool _pool;
+	private final BlockingQueue<DecodeTask> _pending;
+	private final DecodeTask _endOfLog;
+	
+	private final AtomicLong _read, _decoded, _delivered, _failed;
+	private volatile long _started;
+	
+	/**
+	 * Creates a pipeline.
+	 * 
+	 * @param logFileHeader packet log metadata
+	 * @param options load options
+	 * @param cacheContext entity cache context
+	 * @param sink receives loadable packets, in order, on the delivery thread; must not retain the given list
+	 */
+	PacketLogLoadPipeline(LogFileHeader logFileHeader, LogLoadOptions options, HistoricalPacketLog cacheContext, Consumer<List<PacketLogEntry>> sink)
+	{
+		_logFileHeader = logFileHeader;
+		_options = options;
+		_cacheContext = cacheContext;
+		_sink = sink;
+		
+		_pool = ForkJoinPool.commonPool();
+		_pending = new ArrayBlockingQueue<>(Math.max(2, _pool.getParallelism() << 1));
+		_endOfLog = new DecodeTask(new LogFilePacket[0], 0);
+		
+		_read = new AtomicLong(0);
+		_decoded = new AtomicLong(0);
+		_delivered = new AtomicLong(0);
+		_failed = new AtomicLong(0);
+		_started = System.nanoTime();
+	}
+	
+	/**
+	 * Loads all packets within the time window specified by load options. Returns when all packets have been delivered or when the calling thread is interrupted.
+	 * 
+	 * @param it packet iterator
+	 * @throws IOException if the iterator cannot be moved to the start of the time window
+	 * @throws RuntimeException if the iterator fails, after all packets read so far have been delivered
+	 */
+	void run(NetProPacketLogFileIterator it) throws IOException
+	{
+		_started = System.nanoTime();
+		final Future<?> delivery = L2ThreadPool.submitLongRunning(this::deliver);
+		try
+		{
+			// with a block index, packets before the window are not even inflated
+			if (_options.hasWindow())
+				it.seekToTime(_options.getWindowStart());
+			
+			LogFilePacket[] batch = new LogFilePacket[BATCH_SIZE];
+			int count = 0;
+			RuntimeException readFailure = null;
+			try
+			{
+				while (it.hasNext())
+				{
+					if (Thread.interrupted())
+						return;
+					
+					final LogFilePacket packet = it.next();
+					_read.incrementAndGet();
+					if (packet.getReceivalTime() < _options.getWindowStart())
+						continue;
+					if (packet.getReceivalTime() > _options.getWindowEnd())
+					{
+						// packets are not necessarily ordered by reception time
+						if (it.isPastTime(_options.getWindowEnd()))
+							break;
+						continue;
+					}
+					
+					batch[count++] = packet;
+					if (count == BATCH_SIZE)
+					{
+						_pending.put(submit(batch, count));
+						batch = new LogFilePacket[BATCH_SIZE];
+						count = 0;
+					}
+				}
+			}
+			catch (final RuntimeException e)
+			{
+				// the delivery thread would wait forever for the end of log
+				readFailure = e;
+			}
+			if (count > 0)
+				_pending.put(submit(batch, count));
+			_pending.put(_endOfLog);
+			
+			delivery.get();
+			if (_failed.get() > 0)
+				LOG.warn(_failed.get() + " packets could not be loaded from " + _logFileHeader.getLogFile().getFileName());
+			if (readFailure != null)
+				throw readFailure;
+		}
+		catch (final InterruptedException e)
+		{
+			// user cancelled operation
+		}
+		catch (final ExecutionException e)
+		{
+			LOG.error("Packet delivery failed", e.getCause());
+		}
+		finally
+		{
+			delivery.cancel(true);
+		}
+	}
+	
+	private DecodeTask submit(LogFilePacket[] batch, int count)
+	{
+		final DecodeTask task = new DecodeTask(batch, count);
+		_pool.execute(task);
+		return task;
+	}
+	
+	private void deliver()
+	{
+		final LogLoadScriptManager scriptManager = LogLoadScriptManager.getInstance();
+		final boolean login = _logFileHeader.getService().isLogin();
+		final List<PacketLogEntry> entries = new ArrayList<>(BATCH_SIZE);
+		try
+		{
+			for (DecodeTask task; (task = _pending.take()) != _endOfLog;)
+			{
+				// the reader would wait forever if this thread stopped taking batches
+				try
+				{
+					final DecodedBatch batch = task.join();
+					for (int i = 0; i < batch._count; ++i)
+					{
+						// scripts enable analytics on packets that will be visible in the table
+						final LogFilePacket packet = batch._packets[i];
+						scriptManager.onLoadedPacket(login, packet.getEndpoint().isClient(), packet.getContent(), _options.getProtocol(), _cacheContext, packet.getReceivalTime());
+						if (batch._entries[i] != null)
+							entries.add(batch._entries[i]);
+					}
+					_delivered.addAndGet(batch._count);
+					
+					if (!entries.isEmpty())
+						_sink.accept(entries);
+				}
+				catch (final RuntimeException e)
+				{
+					_failed.addAndGet(task._count);
+					LOG.error("Cannot deliver loaded packets", e);
+				}
+				finally
+				{
+					entries.clear();
+				}
+			}
+		}
+		catch (final InterruptedException e)
+		{
+			// user cancelled operation
+		}
+	}
+	
+	/**
+	 * Returns the amount of packets read from the log file so far.
+	 * 
+	 * @return read packets
+	 */
+	long getReadCount()
+	{
+		return _read.get();
+	}
+	
+	/**
+	 * Returns the amount of packets that were skipped, because their batch could not be decoded or delivered.
+	 * 
+	 * @return failed packets
+	 */
+	long getFailedCount()
+	{
+		return _failed.get();
+	}
+	
+	/**
+	 * Returns the average rate of packets read from the log file.
+	 * 
+	 * @return packets per second
+	 */
+	double getReadRate()
+	{
+		return toRate(_read.get());
+	}
+	
+	/**
+	 * Returns the average rate of packets filtered and resolved by workers.
+	 * 
+	 * @return packets per second
+	 */
+	double getDecodeRate()
+	{
+		return toRate(_decoded.get());
+	}
+	
+	/**
+	 * Returns the average rate of packets passed to scripts and the table.
+	 * 
+	 * @return packets per second
+	 */
+	double getDeliveryRate()
+	{
+		return toRate(_delivered.get());
+	}
+	
+	private double toRate(long packets)
+	{
+		final long elapsed = System.nanoTime() - _started;
+		return elapsed > 0 ? packets * 1_000_000_000D / elapsed : 0D;
+	}
+	
+	private final class DecodeTask extends RecursiveTask<DecodedBatch>
+	{
+		private static final long serialVersionUID = 5226190853441932318L;
+		
+		private final LogFilePacket[] _packets;
+		private final int _count;
+		
+		DecodeTask(LogFilePacket[] packets, int count)
+		{
+			_packets = packets;
+			_count = count;
+		}
+		
+		@Override
+		protected DecodedBatch compute()
+		{
+			final PacketLogEntry[] entries = new PacketLogEntry[_count];
+			for (int i = 0; i < _count; ++i)
+			{
+				final LogFilePacket packet = _packets[i];
+				if (!PacketLogFileUtils.isLoadable(packet, _options))
+					continue;
+				
+				final PacketLogEntry packetEntry = new PacketLogEntry(new ReceivedPacket(_logFileHeader.getService(), packet.getEndpoint(), packet.getContent(), packet.getReceivalTime()));
+				packetEntry.updateView(_options.getProtocol());
+				entries[i] = packetEntry;
+			}
+			_decoded.addAndGet(_count);
+			return new DecodedBatch(_packets, _count, entries);
+		}
+	}
+	
+	private static final class DecodedBatch
+	{
+		final LogFilePacket[] _packets;
+		final int _count;
+		final PacketLogEntry[] _entries;
+		
+		DecodedBatch(LogFilePacket[] packets, int count, PacketLogEntry[] entries)
+		{
+			_packets = packets;
+			_count = count;
+			_entries = entries;
+		}
+	}
+}
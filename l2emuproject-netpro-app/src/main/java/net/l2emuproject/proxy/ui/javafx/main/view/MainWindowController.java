@@ -76,7 +76,7 @@ import net.l2emuproject.proxy.io.exception.IncompletePacketLogFileException;
 import net.l2emuproject.proxy.io.exception.InsufficientlyLargeFileException;
 import net.l2emuproject.proxy.io.exception.TruncatedPacketLogFileException;
 import net.l2emuproject.proxy.io.exception.UnknownFileTypeException;
-import net.l2emuproject.proxy.io.packetlog.HistoricalLogIOThread.CaptureController;
+import net.l2emuproject.proxy.io.packetlog.HistoricalLogWriterPool.CaptureController;
 import net.l2emuproject.proxy.io.packetlog.LogFileHeader;
 import net.l2emuproject.proxy.io.packetlog.PacketLogFileUtils;
 import net.l2emuproject.proxy.io.packetlog.l2ph.L2PhLogFileHeader;
@@ -87,6 +87,7 @@ import net.l2emuproject.proxy.io.packetlog.ps.PSPacketLogUtils;
 import net.l2emuproject.proxy.network.EndpointType;
 import net.l2emuproject.proxy.network.Proxy;
 import net.l2emuproject.proxy.network.ServiceType;
+import net.l2emuproject.proxy.network.SharedPacketBody;
 import net.l2emuproject.proxy.network.listener.ConnectionListener;
 import net.l2emuproject.proxy.network.listener.PacketListener;
 import net.l2emuproject.proxy.network.meta.IPacketTemplate;
@@ -113,6 +114,8 @@ import net.l2emuproject.proxy.ui.javafx.io.view.PacketLogLoadOptionController;
 import net.l2emuproject.proxy.ui.javafx.io.view.SamuraiPacketLogLoadOptionController;
 import net.l2emuproject.proxy.ui.javafx.packet.IPacketHidingConfig;
 import net.l2emuproject.proxy.ui.javafx.packet.PacketLogEntry;
+import net.l2emuproject.proxy.ui.javafx.packet.PacketRetentionPolicy;
+import net.l2emuproject.proxy.ui.javafx.packet.PacketTemplateDescriptorTable;
 import net.l2emuproject.proxy.ui.javafx.packet.view.PacketBuilderDialogController;
 import net.l2emuproject.proxy.ui.javafx.packet.view.PacketDisplayConfigDialogController;
 import net.l2emuproject.proxy.ui.javafx.packet.view.PacketLogTabController;
@@ -917,6 +920,7 @@ public class MainWindowController implements IOConstants, ConnectionListener, Pa
 	{
 		L2ThreadPool.executeLongRunning(() -> {
 			VersionnedPacketTable.getInstance().reloadConfig();
+			PacketTemplateDescriptorTable.reset();
 			Platform.runLater(() -> {
 				rebuildProtocolMenu();
 				
@@ -1367,6 +1371,7 @@ public class MainWindowController implements IOConstants, ConnectionListener, Pa
 				_sessionCapture.remove(userData.getClient());
 			if (userData.getServer() != null)
 				EntityInfoCache.removeSharedContext(new ServerSocketID(userData.getServer().getInetSocketAddress()));
+			userData.getController().dispose();
 		});
 		tabs.remove(_tabIdle);
 		tabs.add(tab);
@@ -1380,19 +1385,31 @@ public class MainWindowController implements IOConstants, ConnectionListener, Pa
 	@Override
 	public void onClientPacket(Proxy sender, Proxy recipient, ByteBuffer packet, long time) throws RuntimeException
 	{
-		findTabAndAddPacket(sender, recipient, packet, time);
+		findTabAndAddPacket(sender, recipient, new SharedPacketBody(packet, null), time);
 	}
 	
 	@Override
 	public void onServerPacket(Proxy sender, Proxy recipient, ByteBuffer packet, long time) throws RuntimeException
+	{
+		findTabAndAddPacket(sender, recipient, new SharedPacketBody(packet, null), time);
+	}
+	
+	@Override
+	public void onClientPacket(Proxy sender, Proxy recipient, SharedPacketBody packet, long time) throws RuntimeException
+	{
+		findTabAndAddPacket(sender, recipient, packet, time);
+	}
+	
+	@Override
+	public void onServerPacket(Proxy sender, Proxy recipient, SharedPacketBody packet, long time) throws RuntimeException
 	{
 		findTabAndAddPacket(sender, recipient, packet, time);
 	}
 	
-	private void findTabAndAddPacket(Proxy sender, Proxy recipient, ByteBuffer packet, long time)
+	private void findTabAndAddPacket(Proxy sender, Proxy recipient, SharedPacketBody packet, long time)
 	{
-		final byte[] body = new byte[packet.clear().remaining()];
-		packet.get(body);
+		// the body array is shared with the forwarding path and other listeners
+		final byte[] body = packet.toArray();
 		
 		final ReceivedPacket result = new ReceivedPacket(ServiceType.valueOf(sender.getProtocol()), sender.getType(), body, time);
 		final PacketLogEntry ple = new PacketLogEntry(result);
@@ -1537,6 +1554,8 @@ public class MainWindowController implements IOConstants, ConnectionListener, Pa
 			controller.protocolProperty().set(server.getProtocol());
 			controller.setEntityCacheContext(new ServerSocketID(server.getInetSocketAddress()));
 			controller.setOnProtocolPacketHidingConfigurationChange(this::refreshFilters);
+			controller.setRetentionPolicy(PacketRetentionPolicy.getLiveTabPolicy());
+			controller.setOnOpenEvictedPackets(c -> openEvictedPackets(tab, c, new ServerSocketID(server.getInetSocketAddress())));
 			
 			final Canvas icon = new Canvas(10, 10);
 			final GraphicsContext gc = icon.getGraphicsContext2D();
@@ -1553,6 +1572,34 @@ public class MainWindowController implements IOConstants, ConnectionListener, Pa
 		});
 	}
 	
+	private void openEvictedPackets(Tab sourceTab, PacketLogTabController source, ServerSocketID entityCacheContext)
+	{
+		final Tab tab;
+		final PacketLogTabController controller;
+		try
+		{
+			final FXMLLoader loader = new FXMLLoader(FXUtils.getFXML(PacketLogTabController.class), UIStrings.getBundle());
+			tab = new Tab(UIStrings.get("packettab.evicted.title", sourceTab.getText()), loader.load());
+			controller = loader.getController();
+		}
+		catch (final IOException e)
+		{
+			final Throwable t = StackTraceUtil.stripUntilClassContext(e, true, MainWindowController.class.getName());
+			wrapException(t, "generic.err.internal.title", null, "generic.err.internal.header.fxml", null, getMainWindow(), Modality.WINDOW_MODAL).show();
+			return;
+		}
+		
+		// the live session's entity cache is shared while its tab is open
+		controller.protocolProperty().set(source.protocolProperty().get());
+		controller.setEntityCacheContext(entityCacheContext);
+		controller.setOnProtocolPacketHidingConfigurationChange(this::refreshFilters);
+		controller.setRetentionPolicy(PacketRetentionPolicy.getEvictedPacketTabPolicy());
+		
+		tab.setUserData(new PacketLogTabUserData(controller, null));
+		addConnectionTab(tab);
+		source.loadEvictedPackets(controller);
+	}
+	
 	@Override
 	public void onDisconnection(Proxy client, Proxy server)
 	{
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.ui.javafx.packet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Tracks which packets of a {@link PacketStore} pass the filters of a packet log tab.<BR>
+ * <BR>
+ * All filters depend on the packet template only, so a sorted array of packet indices is kept for each template ID. Hiding or showing a template then only
+ * touches packets of that template, regardless of how many packets are stored. As each packet is kept in a single array, the index takes 4 bytes per packet
+ * regardless of how many templates there are.<BR>
+ * <BR>
+ * Bit 0 of the set of visible packets stands for the packet at {@link #getBase()}, so that bits of evicted packets can be discarded. Packets must be added in
+ * ascending index order.
+ * 
+ * @author _dev_
+ */
+public final class PacketFilterIndex
+{
+	private final List<PacketList> _packetsByTemplate;
+	private final BitSet _evaluatedTemplates;
+	private final BitSet _shownTemplates;
+	private BitSet _visible;
+	private int _base;
+	
+	/** Creates an empty index. */
+	public PacketFilterIndex()
+	{
+		_packetsByTemplate = new ArrayList<>();
+		_evaluatedTemplates = new BitSet();
+		_shownTemplates = new BitSet();
+		_visible = new BitSet();
+		_base = 0;
+	}
+	
+	/**
+	 * Adds a packet to this index. If no packet with the given template has been added before, {@code hidden} is used to determine whether such packets are visible.
+	 * 
+	 * @param index packet index
+	 * @param templateID packet template ID
+	 * @param hidden tests whether packets of a template ID should be hidden
+	 * @return whether the added packet is visible
+	 */
+	public boolean add(int index, int templateID, IntPredicate hidden)
+	{
+		if (_packetsByTemplate.isEmpty())
+			_base = index & ~63;
+		getPackets(templateID).add(index);
+		if (!_evaluatedTemplates.get(templateID))
+		{
+			_evaluatedTemplates.set(templateID);
+			_shownTemplates.set(templateID, !hidden.test(templateID));
+		}
+		if (!_shownTemplates.get(templateID))
+			return false;
+		
+		_visible.set(index - _base);
+		return true;
+	}
+	
+	/**
+	 * Re-evaluates all templates and updates the set of visible packets accordingly. Only packets of templates with a changed verdict are affected. Templates
+	 * without any remaining packets are skipped, as their verdict was dropped when their last packet was evicted.
+	 * 
+	 * @param hidden tests whether packets of a template ID should be hidden
+	 */
+	public void update(IntPredicate hidden)
+	{
+		for (int templateID = 0; templateID < _packetsByTemplate.size(); ++templateID)
+		{
+			final PacketList packets = _packetsByTemplate.get(templateID);
+			if (packets == null)
+				continue;
+			
+			_evaluatedTemplates.set(templateID);
+			final boolean shown = !hidden.test(templateID);
+			if (shown == _shownTemplates.get(templateID))
+				continue;
+			
+			_shownTemplates.set(templateID, shown);
+			for (int i = packets._start; i < packets._end; ++i)
+				_visible.set(packets._indices[i] - _base, shown);
+		}
+	}
+	
+	/**
+	 * Returns the set of visible packets. The returned set must not be modified.
+	 * 
+	 * @return visible packet indices, relative to {@link #getBase()}
+	 */
+	public BitSet getVisible()
+	{
+		return _visible;
+	}
+	
+	/**
+	 * Returns the packet index that corresponds to bit 0 of the set of visible packets.
+	 * 
+	 * @return a multiple of 64
+	 */
+	public int getBase()
+	{
+		return _base;
+	}
+	
+	/**
+	 * Removes all packets older than the given one from this index. Templates without any remaining packets are evaluated anew when their next packet is added.
+	 * 
+	 * @param firstIndex index of the oldest packet that remains
+	 */
+	public void evict(int firstIndex)
+	{
+		final int base = firstIndex & ~63;
+		for (int templateID = 0; templateID < _packetsByTemplate.size(); ++templateID)
+		{
+			final PacketList packets = _packetsByTemplate.get(templateID);
+			if (packets != null && !packets.evict(firstIndex))
+			{
+				_packetsByTemplate.set(templateID, null);
+				_evaluatedTemplates.clear(templateID);
+				_shownTemplates.clear(templateID);
+			}
+		}
+		
+		final int words = (base - _base) >>> 6;
+		if (words > 0)
+		{
+			final long[] array = _visible.toLongArray();
+			_visible = BitSet.valueOf(words < array.length ? Arrays.copyOfRange(array, words, array.length) : new long[0]);
+		}
+		_visible.clear(0, firstIndex - base);
+		_base = base;
+	}
+	
+	/**
+	 * Indexes all packets in the given store anew, e.g. after their template IDs have been reassigned. All templates are then considered to be hidden until
+	 * {@link #update(IntPredicate)} is called.
+	 * 
+	 * @param store packet store
+	 */
+	public void rebuild(PacketStore store)
+	{
+		clear();
+		_base = store.getFirstIndex() & ~63;
+		for (int i = store.getFirstIndex(); i < store.getEndIndex(); ++i)
+			getPackets(store.getTemplateID(i)).add(i);
+	}
+	
+	/** Removes all packets from this index. */
+	public void clear()
+	{
+		_packetsByTemplate.clear();
+		_evaluatedTemplates.clear();
+		_shownTemplates.clear();
+		_visible.clear();
+		_base = 0;
+	}
+	
+	private PacketList getPackets(int templateID)
+	{
+		while (_packetsByTemplate.size() <= templateID)
+			_packetsByTemplate.add(null);
+		
+		PacketList packets = _packetsByTemplate.get(templateID);
+		if (packets == null)
+			_packetsByTemplate.set(templateID, packets = new PacketList());
+		return packets;
+	}
+	
+	/** Ascending packet indices of a single template. Evicted indices are skipped over and only dropped when the array has to be reallocated or compacted. */
+	private static final class PacketList
+	{
+		int[] _indices;
+		int _start;
+		int _end;
+		
+		PacketList()
+		{
+			_indices = new int[16];
+			_start = 0;
+			_end = 0;
+		}
+		
+		void add(int index)
+		{
+			if (_end == _indices.length)
+			{
+				final int size = _end - _start;
+				if (_start >= size)
+					System.arraycopy(_indices, _start, _indices, 0, size);
+				else
+					_indices = Arrays.copyOfRange(_indices, _start, _indices.length << 1);
+				_start = 0;
+				_end = size;
+			}
+			_indices[_end++] = index;
+		}
+		
+		boolean evict(int firstIndex)
+		{
+			int low = _start, high = _end;
+			while (low < high)
+			{
+				final int mid = (low + high) >>> 1;
+				if (_indices[mid] < firstIndex)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			_start = low;
+			if (_start == _end)
+				return false;
+			
+			final int size = _end - _start;
+			if (_indices.length > 16 && size < _indices.length >>> 2)
+			{
+				_indices = Arrays.copyOfRange(_indices, _start, _start + Math.max(16, size << 1));
+				_start = 0;
+				_end = size;
+			}
+			return true;
+		}
+	}
+}
@@ -15,18 +15,23 @@
  */
 package net.l2emuproject.proxy.ui.javafx.packet;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import net.l2emuproject.network.protocol.IProtocolVersion;
-import net.l2emuproject.proxy.io.definitions.VersionnedPacketTable;
+import net.l2emuproject.proxy.network.EndpointType;
 import net.l2emuproject.proxy.network.meta.IPacketTemplate;
 import net.l2emuproject.proxy.ui.ReceivedPacket;
-import net.l2emuproject.proxy.ui.i18n.UIStrings;
-import net.l2emuproject.util.HexUtil;
 
 import javafx.beans.property.ReadOnlyStringProperty;
 import javafx.beans.property.ReadOnlyStringWrapper;
 
 /**
- * A packet wrapper for the packet table view.
+ * A packet wrapper for the packet table view.<BR>
+ * <BR>
+ * A wrapper either holds a standalone packet (until it is added to a packet log tab) or refers to a packet in a {@link PacketStore}. Wrappers of the latter kind are
+ * created on demand, only for the rows that are being displayed. Display values are never computed per packet; they are taken from a shared
+ * {@link PacketTemplateDescriptor}.
  * 
  * @author _dev_
  */
@@ -34,10 +39,14 @@ public final class PacketLogEntry
 {
 	private static final ReadOnlyStringProperty SENDER_CLIENT = new ReadOnlyStringWrapper("C").getReadOnlyProperty();
 	private static final ReadOnlyStringProperty SENDER_SERVER = new ReadOnlyStringWrapper("S").getReadOnlyProperty();
+	private static final ReadOnlyStringProperty UNRESOLVED_OPCODE = new ReadOnlyStringWrapper("XX").getReadOnlyProperty();
+	private static final ReadOnlyStringProperty UNRESOLVED_NAME = new ReadOnlyStringWrapper("PacketNameHere").getReadOnlyProperty();
 	
 	private final ReceivedPacket _packet;
-	// precomputed values to avoid constant polling/generation
-	private final ReadOnlyStringWrapper _opcode, _name;
+	private PacketTemplateDescriptor _descriptor;
+	
+	private final PacketStore _store;
+	private final int _index;
 	
 	/**
 	 * Creates a packet wrapper.
@@ -47,19 +56,88 @@ public final class PacketLogEntry
 	public PacketLogEntry(ReceivedPacket packet)
 	{
 		_packet = packet;
+		_descriptor = null;
+		
+		_store = null;
+		_index = -1;
+	}
+	
+	/**
+	 * Creates a wrapper of a stored packet.
+	 * 
+	 * @param store packet store
+	 * @param index packet index
+	 */
+	public PacketLogEntry(PacketStore store, int index)
+	{
+		_packet = null;
+		_descriptor = null;
 		
-		_opcode = new ReadOnlyStringWrapper("XX");
-		_name = new ReadOnlyStringWrapper("PacketNameHere");
+		_store = store;
+		_index = index;
 	}
 	
 	/**
-	 * Returns the associated packet.
+	 * Returns the associated packet.<BR>
+	 * <BR>
+	 * If this wrapper refers to a stored packet, the body is copied from the store on each call.
 	 * 
 	 * @return the packet
 	 */
 	public ReceivedPacket getPacket()
 	{
-		return _packet;
+		return _store != null ? _store.getPacket(_index) : _packet;
+	}
+	
+	/**
+	 * Returns the authoring endpoint type of the associated packet.
+	 * 
+	 * @return client/server
+	 */
+	public EndpointType getEndpoint()
+	{
+		return _store != null ? _store.getEndpoint(_index) : _packet.getEndpoint();
+	}
+	
+	/**
+	 * Returns the template descriptor of the associated packet.
+	 * 
+	 * @return template descriptor or {@code null}, if a standalone packet has not yet been resolved via {@link #updateView(IProtocolVersion)}
+	 */
+	public PacketTemplateDescriptor getDescriptor()
+	{
+		return _store != null ? _store.getDescriptor(_index) : _descriptor;
+	}
+	
+	/**
+	 * Returns the template of the associated packet.
+	 * 
+	 * @return packet template or {@code null}, if a standalone packet has not yet been resolved via {@link #updateView(IProtocolVersion)}
+	 */
+	public IPacketTemplate getTemplate()
+	{
+		final PacketTemplateDescriptor descriptor = getDescriptor();
+		return descriptor != null ? descriptor.getTemplate() : null;
+	}
+	
+	/**
+	 * Returns the store that contains the associated packet.
+	 * 
+	 * @return packet store or {@code null}
+	 */
+	public PacketStore getStore()
+	{
+		return _store;
+	}
+	
+	/**
+	 * Returns the index of the associated packet in its store.
+	 * 
+	 * @return packet index or {@code -1}
+	 */
+	public int getIndex()
+	{
+		return _index;
 	}
 	
 	/**
@@ -79,7 +157,7 @@ public final class PacketLogEntry
 	 */
 	public ReadOnlyStringProperty senderProperty()
 	{
-		return _packet.getEndpoint().isClient() ? SENDER_CLIENT : SENDER_SERVER;
+		return getEndpoint().isClient() ? SENDER_CLIENT : SENDER_SERVER;
 	}
 	
 	/**
@@ -89,7 +167,7 @@ public final class PacketLogEntry
 	 */
 	public String getOpcode()
 	{
-		return _opcode.get();
+		return opcodeProperty().get();
 	}
 	
 	/**
@@ -99,7 +177,8 @@ public final class PacketLogEntry
 	 */
 	public ReadOnlyStringProperty opcodeProperty()
 	{
-		return _opcode.getReadOnlyProperty();
+		final PacketTemplateDescriptor descriptor = getDescriptor();
+		return descriptor != null ? descriptor.opcodeProperty() : UNRESOLVED_OPCODE;
 	}
 	
 	/**
@@ -109,7 +188,7 @@ public final class PacketLogEntry
 	 */
 	public String getName()
 	{
-		return _name.get();
+		return nameProperty().get();
 	}
 	
 	/**
@@ -119,25 +198,46 @@ public final class PacketLogEntry
 	 */
 	public ReadOnlyStringProperty nameProperty()
 	{
-		return _name.getReadOnlyProperty();
+		final PacketTemplateDescriptor descriptor = getDescriptor();
+		return descriptor != null ? descriptor.nameProperty() : UNRESOLVED_NAME;
 	}
 	
 	/**
-	 * (Generates and) caches the user-friendly packet opcode and name values, as defined by {@code version}.
+	 * Resolves the template of a standalone packet, as defined by {@code version}.<BR>
+	 * <BR>
+	 * Stored packets are resolved by the owning packet log tab.
 	 * 
 	 * @param version network protocol version
 	 */
 	public void updateView(IProtocolVersion version)
 	{
-		final IPacketTemplate packetTemplate = VersionnedPacketTable.getInstance().getTemplate(version, _packet.getEndpoint(), _packet.getBody());
+		if (_store != null)
+			return;
+		
+		_descriptor = PacketTemplateDescriptorTable.getInstance(version).resolve(_packet.getEndpoint(), ByteBuffer.wrap(_packet.getBody()).order(ByteOrder.LITTLE_ENDIAN));
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		return _store != null ? System.identityHashCode(_store) * 31 + _index : super.hashCode();
+	}
+	
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (_store == null || !(obj instanceof PacketLogEntry))
+			return false;
 		
-		_opcode.set(HexUtil.bytesToHexString(packetTemplate.getPrefix(), ":").intern());
-		_name.set(packetTemplate.isDefined() ? packetTemplate.getName() : UIStrings.get("packetdc.table.unknownpacket", _opcode.get()).intern());
+		final PacketLogEntry other = (PacketLogEntry)obj;
+		return _store == other._store && _index == other._index;
 	}
 	
 	@Override
 	public String toString()
 	{
-		return "[" + getSender() + "] " + _opcode.get() + " " + _name.get();
+		return "[" + getSender() + "] " + getOpcode() + " " + getName();
 	}
 }
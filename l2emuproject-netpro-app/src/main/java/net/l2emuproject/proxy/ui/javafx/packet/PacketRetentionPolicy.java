@@ -0,0 +1,145 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.ui.javafx.packet;
+
+import java.util.concurrent.TimeUnit;
+
+import net.l2emuproject.proxy.config.ProxyConfig;
+
+/**
+ * Specifies how many packets a packet log tab may keep in its {@link PacketStore}.<BR>
+ * <BR>
+ * Once any limit is exceeded, the oldest packets are evicted until all limits are met with an eighth to spare, so that eviction does not take place for every new packet.
+ * 
+ * @author _dev_
+ */
+public final class PacketRetentionPolicy
+{
+	/** Keeps all packets. */
+	public static final PacketRetentionPolicy UNLIMITED = new PacketRetentionPolicy(0, 0L, 0L, false);
+	
+	private final int _maxPackets;
+	private final long _maxAge;
+	private final long _maxBodyBytes;
+	private final boolean _spilling;
+	
+	/**
+	 * Creates a retention policy. Zero disables a limit.
+	 * 
+	 * @param maxPackets maximum amount of packets
+	 * @param maxAge maximum time (ms) between reception of the oldest and the newest packet
+	 * @param maxBodyBytes maximum total size of packet bodies
+	 * @param spilling whether evicted packets should be kept in a temporary file
+	 */
+	public PacketRetentionPolicy(int maxPackets, long maxAge, long maxBodyBytes, boolean spilling)
+	{
+		_maxPackets = maxPackets;
+		_maxAge = maxAge;
+		_maxBodyBytes = maxBodyBytes;
+		_spilling = spilling;
+	}
+	
+	/**
+	 * Returns whether any packets may be evicted under this policy.
+	 * 
+	 * @return whether there is a limit
+	 */
+	public boolean isLimited()
+	{
+		return _maxPackets > 0 || _maxAge > 0 || _maxBodyBytes > 0;
+	}
+	
+	/**
+	 * Returns the maximum amount of packets.
+	 * 
+	 * @return packet limit or 0
+	 */
+	public int getMaxPackets()
+	{
+		return _maxPackets;
+	}
+	
+	/**
+	 * Returns whether evicted packets should be kept in a temporary file.
+	 * 
+	 * @return whether to spill evicted packets
+	 */
+	public boolean isSpilling()
+	{
+		return _spilling;
+	}
+	
+	/**
+	 * Returns the amount of oldest packets that should be evicted from the given store. The newest packet is never evicted.
+	 * 
+	 * @param store packet store
+	 * @return amount of packets to evict
+	 */
+	public int getEvictionCount(PacketStore store)
+	{
+		final int size = store.size();
+		if (size < 2)
+			return 0;
+		
+		final int first = store.getFirstIndex();
+		final long newest = store.getReceived(store.getEndIndex() - 1);
+		if ((_maxPackets <= 0 || size <= _maxPackets) && (_maxAge <= 0 || store.getReceived(first) >= newest - _maxAge) && (_maxBodyBytes <= 0 || store.getBodyBytes() <= _maxBodyBytes))
+			return 0;
+		
+		int count = 0;
+		if (_maxPackets > 0)
+			count = Math.max(0, Math.min(size - 1, size - (_maxPackets - (_maxPackets >>> 3))));
+		if (_maxAge > 0)
+		{
+			final long oldest = newest - (_maxAge - (_maxAge >>> 3));
+			while (count < size - 1 && store.getReceived(first + count) < oldest)
+				++count;
+		}
+		if (_maxBodyBytes > 0)
+		{
+			final long target = _maxBodyBytes - (_maxBodyBytes >>> 3);
+			long bodyBytes = store.getBodyBytes();
+			for (int i = 0; i < count; ++i)
+				bodyBytes -= store.getBodyLength(first + i);
+			while (count < size - 1 && bodyBytes > target)
+				bodyBytes -= store.getBodyLength(first + count++);
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the retention policy of live connection tabs, as currently configured.
+	 * 
+	 * @return live tab retention policy
+	 */
+	public static PacketRetentionPolicy getLiveTabPolicy()
+	{
+		return new PacketRetentionPolicy(Math.max(0, ProxyConfig.LIVE_TAB_PACKET_LIMIT), TimeUnit.MINUTES.toMillis(Math.max(0, ProxyConfig.LIVE_TAB_TIME_LIMIT)),
+				(long)Math.max(0, ProxyConfig.LIVE_TAB_MEMORY_LIMIT) << 20, ProxyConfig.LIVE_TAB_SPILL_EVICTED_PACKETS);
+	}
+	
+	/**
+	 * Returns the retention policy of tabs that show packets evicted from a live connection tab. Such tabs are subject to the same limits, but do not keep packets
+	 * they evict.
+	 * 
+	 * @return evicted packet tab retention policy
+	 */
+	public static PacketRetentionPolicy getEvictedPacketTabPolicy()
+	{
+		final PacketRetentionPolicy live = getLiveTabPolicy();
+		return new PacketRetentionPolicy(live._maxPackets, live._maxAge, live._maxBodyBytes, false);
+	}
+}
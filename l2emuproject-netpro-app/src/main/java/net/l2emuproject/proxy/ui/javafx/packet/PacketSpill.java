@@ -0,0 +1,217 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.ui.javafx.packet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import net.l2emuproject.io.UnmanagedResource;
+import net.l2emuproject.proxy.network.EndpointType;
+import net.l2emuproject.proxy.network.ServiceType;
+import net.l2emuproject.proxy.ui.ReceivedPacket;
+import net.l2emuproject.util.concurrent.L2ThreadPool;
+import net.l2emuproject.util.logging.L2Logger;
+
+/**
+ * A temporary file that keeps packets evicted from a {@link PacketStore}, so that they can be read back on demand.<BR>
+ * <BR>
+ * Evicted packets are copied out of the store by the thread that evicts them, but are written to the file in the background, one batch at a time, so that
+ * eviction does not wait for disk I/O. Packets that have been written may be read by any thread, while more packets are being written.
+ * 
+ * @author _dev_
+ */
+public final class PacketSpill implements AutoCloseable
+{
+	private static final L2Logger LOG = L2Logger.getLogger(PacketSpill.class);
+	
+	private final Path _file;
+	private final DataOutputStream _out;
+	
+	private final Queue<ReceivedPacket[]> _pending;
+	private final AtomicBoolean _writeScheduled;
+	private volatile int _size;
+	private volatile boolean _failed;
+	private volatile boolean _closed;
+	
+	/**
+	 * Creates an empty spill file.
+	 * 
+	 * @throws IOException if the file could not be created
+	 */
+	public PacketSpill() throws IOException
+	{
+		_file = Files.createTempFile("netpro-evicted", ".tmp");
+		_file.toFile().deleteOnExit();
+		_out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(_file), 1 << 16));
+		
+		_pending = new ConcurrentLinkedQueue<>();
+		_writeScheduled = new AtomicBoolean();
+		_size = 0;
+		_failed = false;
+		_closed = false;
+	}
+	
+	/**
+	 * Copies the given range of stored packets and schedules them to be appended to this spill. Must be called by the thread that owns {@code store}.
+	 * 
+	 * @param store packet store
+	 * @param first index of the first packet to append
+	 * @param end index of the last packet to append + 1
+	 */
+	public void append(PacketStore store, int first, int end)
+	{
+		if (_failed || first >= end)
+			return;
+		
+		final ReceivedPacket[] batch = new ReceivedPacket[end - first];
+		for (int i = 0; i < batch.length; ++i)
+			batch[i] = store.getPacket(first + i);
+		_pending.offer(batch);
+		scheduleWrite();
+	}
+	
+	private void scheduleWrite()
+	{
+		if (_writeScheduled.compareAndSet(false, true))
+			L2ThreadPool.executeLongRunning(this::writePending);
+	}
+	
+	private void writePending()
+	{
+		for (ReceivedPacket[] batch; !_closed && (batch = _pending.poll()) != null;)
+		{
+			if (_failed)
+				continue;
+			
+			try
+			{
+				for (final ReceivedPacket packet : batch)
+				{
+					_out.writeByte(packet.getService().ordinal());
+					_out.writeByte(packet.getEndpoint().ordinal());
+					_out.writeLong(packet.getReceived());
+					_out.writeChar(packet.getBody().length);
+					_out.write(packet.getBody());
+				}
+				_out.flush();
+				_size += batch.length;
+			}
+			catch (final IOException e)
+			{
+				LOG.error("Cannot keep packets evicted from a tab, further evicted packets will be discarded.", e);
+				_failed = true;
+			}
+		}
+		
+		if (_closed)
+		{
+			// a write task remains scheduled forever, so this is only done once
+			_pending.clear();
+			release();
+			return;
+		}
+		
+		_writeScheduled.set(false);
+		// a batch may have been added or this spill closed while we were finishing up
+		if ((!_pending.isEmpty() || _closed) && _writeScheduled.compareAndSet(false, true))
+			L2ThreadPool.executeLongRunning(this::writePending);
+	}
+	
+	/**
+	 * Passes the given range of written packets, in order, to the given handler.
+	 * 
+	 * @param from amount of oldest packets to skip
+	 * @param count amount of packets to read
+	 * @param handler packet handler
+	 * @throws IOException if the packets could not be read
+	 */
+	public void read(int from, int count, Consumer<ReceivedPacket> handler) throws IOException
+	{
+		final ServiceType[] services = ServiceType.values();
+		final EndpointType[] endpoints = EndpointType.values();
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(_file), 1 << 16)))
+		{
+			for (int i = 0; i < from; ++i)
+			{
+				in.readUnsignedShort(); // service and endpoint
+				in.readLong();
+				final int length = in.readUnsignedShort();
+				if (in.skipBytes(length) != length)
+					throw new EOFException();
+			}
+			for (int i = 0; i < count; ++i)
+			{
+				final ServiceType service = services[in.readUnsignedByte()];
+				final EndpointType endpoint = endpoints[in.readUnsignedByte()];
+				final long received = in.readLong();
+				final byte[] body = new byte[in.readUnsignedShort()];
+				in.readFully(body);
+				handler.accept(new ReceivedPacket(service, endpoint, body, received));
+			}
+		}
+	}
+	
+	/**
+	 * Returns the amount of packets that have been written to this spill. Packets that are still being written are not included.
+	 * 
+	 * @return readable packets
+	 */
+	public int size()
+	{
+		return _size;
+	}
+	
+	/**
+	 * Returns whether writing has failed, in which case further packets are discarded.
+	 * 
+	 * @return whether this spill no longer accepts packets
+	 */
+	public boolean isFailed()
+	{
+		return _failed;
+	}
+	
+	/** Discards pending packets and deletes the spill file in the background. */
+	@Override
+	public void close()
+	{
+		_closed = true;
+		scheduleWrite();
+	}
+	
+	private void release()
+	{
+		UnmanagedResource.close(_out);
+		try
+		{
+			Files.deleteIfExists(_file);
+		}
+		catch (final IOException e)
+		{
+			LOG.warn("Cannot delete evicted packet file " + _file, e);
+		}
+	}
+}
@@ -0,0 +1,470 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.ui.javafx.packet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.stream.IntStream;
+
+import net.l2emuproject.io.UnmanagedResource;
+import net.l2emuproject.proxy.network.EndpointType;
+import net.l2emuproject.proxy.network.ServiceType;
+import net.l2emuproject.proxy.ui.ReceivedPacket;
+import net.l2emuproject.util.logging.L2Logger;
+
+/**
+ * A packet store that keeps packet bodies outside of the Java heap.<BR>
+ * <BR>
+ * Bodies are written to memory-mapped segments of a temporary file, so the operating system may page them out as needed. If such a file cannot be created, direct buffers
+ * are used instead. Everything else is kept in primitive columns (about 23 bytes per packet), so that row objects only have to exist for packets that are being displayed.
+ * Packet templates are stored as IDs in a {@link PacketTemplateDescriptorTable} of the current protocol version.<BR>
+ * <BR>
+ * Packets are appended at the end and may be evicted from the beginning, so columns are ring buffers and segments that no longer hold any packet are reused. A packet keeps
+ * its index until it is evicted; valid indices range from {@link #getFirstIndex()} (inclusive) to {@link #getEndIndex()} (exclusive).<BR>
+ * <BR>
+ * This class is not thread-safe and is confined to the JavaFX application thread: columns are replaced as they grow and segments are shifted on eviction without any
+ * synchronization, so packets must not be read by other threads either. {@link #setDescriptors(PacketTemplateDescriptorTable)} reads packets in parallel, but only
+ * while the calling thread waits for it to complete.<BR>
+ * <BR>
+ * Java cannot unmap a segment explicitly; it remains mapped until the garbage collector reclaims it. Once released, a store drops all references to its segments,
+ * but on Windows, the temporary file cannot be deleted while any segment is still mapped. In such case, the file is deleted on exit instead.
+ * 
+ * @author _dev_
+ */
+public final class PacketStore implements AutoCloseable
+{
+	private static final L2Logger LOG = L2Logger.getLogger(PacketStore.class);
+	
+	private static final int SEGMENT_SHIFT = 26;
+	private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+	private static final int INITIAL_CAPACITY = 1 << 10;
+	
+	private Path _file;
+	private FileChannel _channel;
+	private boolean _mappingFailed;
+	private int _mappedSegments;
+	private final Deque<ByteBuffer> _spareSegments;
+	private ByteBuffer[] _segments;
+	private long _firstSegment;
+	private int _segmentCount;
+	private long _writePosition;
+	
+	private long[] _offsets;
+	private char[] _lengths;
+	private long[] _received;
+	private byte[] _types;
+	private int[] _templateIDs;
+	private int _mask;
+	private int _first;
+	private int _size;
+	private long _bodyBytes;
+	
+	private PacketTemplateDescriptorTable _descriptors;
+	
+	/**
+	 * Creates an empty packet store.
+	 * 
+	 * @param descriptors template descriptors of the current protocol version
+	 */
+	public PacketStore(PacketTemplateDescriptorTable descriptors)
+	{
+		_file = null;
+		_channel = null;
+		_mappingFailed = false;
+		_mappedSegments = 0;
+		_spareSegments = new ArrayDeque<>();
+		
+		_descriptors = descriptors;
+		
+		reset();
+	}
+	
+	private void reset()
+	{
+		_segments = new ByteBuffer[4];
+		_firstSegment = 0L;
+		_segmentCount = 0;
+		_writePosition = 0L;
+		
+		_offsets = new long[INITIAL_CAPACITY];
+		_lengths = new char[INITIAL_CAPACITY];
+		_received = new long[INITIAL_CAPACITY];
+		_types = new byte[INITIAL_CAPACITY];
+		_templateIDs = new int[INITIAL_CAPACITY];
+		_mask = INITIAL_CAPACITY - 1;
+		// indices are never reused, so that stale wrappers cannot refer to other packets
+		_first += _size;
+		_size = 0;
+		_bodyBytes = 0L;
+	}
+	
+	/**
+	 * Appends a packet to this store.
+	 * 
+	 * @param packet a packet
+	 * @param templateID ID of a template descriptor in {@link #getDescriptors()}
+	 * @return index of the packet in this store
+	 */
+	public int append(ReceivedPacket packet, int templateID)
+	{
+		final byte[] body = packet.getBody();
+		
+		long segment = _writePosition >>> SEGMENT_SHIFT;
+		if ((int)(_writePosition & (SEGMENT_SIZE - 1)) + body.length > SEGMENT_SIZE)
+			_writePosition = ++segment << SEGMENT_SHIFT;
+		if (segment == _firstSegment + _segmentCount)
+		{
+			if (_segmentCount == _segments.length)
+				_segments = Arrays.copyOf(_segments, _segmentCount << 1);
+			_segments[_segmentCount++] = allocateSegment();
+		}
+		
+		final ByteBuffer buf = _segments[(int)(segment - _firstSegment)];
+		buf.position((int)(_writePosition & (SEGMENT_SIZE - 1)));
+		buf.put(body);
+		
+		if (_size == _mask + 1)
+			grow();
+		
+		final int index = _first + _size;
+		final int slot = index & _mask;
+		_offsets[slot] = _writePosition;
+		_lengths[slot] = (char)body.length;
+		_received[slot] = packet.getReceived();
+		_types[slot] = (byte)ReceivedPacket.getLegacyProxyTypeOrdinal(packet.getService(), packet.getEndpoint());
+		_templateIDs[slot] = templateID;
+		
+		_writePosition += body.length;
+		_bodyBytes += body.length;
+		++_size;
+		return index;
+	}
+	
+	private void grow()
+	{
+		final int capacity = (_mask + 1) << 1;
+		final long[] offsets = new long[capacity], received = new long[capacity];
+		final char[] lengths = new char[capacity];
+		final byte[] types = new byte[capacity];
+		final int[] templateIDs = new int[capacity];
+		for (int i = _first, end = _first + _size; i != end; ++i)
+		{
+			final int from = i & _mask, to = i & (capacity - 1);
+			offsets[to] = _offsets[from];
+			lengths[to] = _lengths[from];
+			received[to] = _received[from];
+			types[to] = _types[from];
+			templateIDs[to] = _templateIDs[from];
+		}
+		_offsets = offsets;
+		_lengths = lengths;
+		_received = received;
+		_types = types;
+		_templateIDs = templateIDs;
+		_mask = capacity - 1;
+	}
+	
+	private ByteBuffer allocateSegment()
+	{
+		final ByteBuffer spare = _spareSegments.pollFirst();
+		if (spare != null)
+		{
+			spare.clear();
+			return spare;
+		}
+		
+		if (!_mappingFailed)
+		{
+			try
+			{
+				if (_channel == null)
+				{
+					_file = Files.createTempFile("netpro-packets", ".tmp");
+					_file.toFile().deleteOnExit();
+					_channel = FileChannel.open(_file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+				}
+				final ByteBuffer buf = _channel.map(MapMode.READ_WRITE, (long)_mappedSegments << SEGMENT_SHIFT, SEGMENT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				++_mappedSegments;
+				return buf;
+			}
+			catch (final IOException e)
+			{
+				LOG.warn("Cannot map a packet store file, packets will be kept in direct memory.", e);
+				_mappingFailed = true;
+			}
+		}
+		return ByteBuffer.allocateDirect(SEGMENT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	/**
+	 * Removes the given amount of oldest packets from this store. Segments that no longer hold any packets will be reused for new packets.
+	 * 
+	 * @param count amount of packets to evict
+	 */
+	public void evict(int count)
+	{
+		if (count <= 0)
+			return;
+		if (count > _size)
+			throw new IndexOutOfBoundsException(count + " / " + _size);
+		
+		for (int i = _first, end = _first + count; i != end; ++i)
+			_bodyBytes -= _lengths[i & _mask];
+		_first += count;
+		_size -= count;
+		
+		final long firstSegment = (_size > 0 ? _offsets[_first & _mask] : _writePosition) >>> SEGMENT_SHIFT;
+		final int released = (int)Math.min(firstSegment - _firstSegment, _segmentCount);
+		if (released <= 0)
+			return;
+		
+		for (int i = 0; i < released; ++i)
+			_spareSegments.addLast(_segments[i]);
+		System.arraycopy(_segments, released, _segments, 0, _segmentCount - released);
+		Arrays.fill(_segments, _segmentCount - released, _segmentCount, null);
+		_segmentCount -= released;
+		_firstSegment += released;
+	}
+	
+	/**
+	 * Returns the amount of packets in this store.
+	 * 
+	 * @return packet count
+	 */
+	public int size()
+	{
+		return _size;
+	}
+	
+	/**
+	 * Returns the index of the oldest packet in this store.
+	 * 
+	 * @return first valid index
+	 */
+	public int getFirstIndex()
+	{
+		return _first;
+	}
+	
+	/**
+	 * Returns the index that will be assigned to the next appended packet.
+	 * 
+	 * @return last valid index + 1
+	 */
+	public int getEndIndex()
+	{
+		return _first + _size;
+	}
+	
+	/**
+	 * Returns the total size of all packet bodies in this store.
+	 * 
+	 * @return size in bytes
+	 */
+	public long getBodyBytes()
+	{
+		return _bodyBytes;
+	}
+	
+	/**
+	 * Returns the service type of a stored packet.
+	 * 
+	 * @param index packet index
+	 * @return login/game
+	 */
+	public ServiceType getService(int index)
+	{
+		return ServiceType.valueOf(_types[checkIndex(index)] < 2);
+	}
+	
+	/**
+	 * Returns the authoring endpoint type of a stored packet.
+	 * 
+	 * @param index packet index
+	 * @return client/server
+	 */
+	public EndpointType getEndpoint(int index)
+	{
+		return EndpointType.valueOf((_types[checkIndex(index)] & 1) == 0);
+	}
+	
+	/**
+	 * Returns the reception time of a stored packet.
+	 * 
+	 * @param index packet index
+	 * @return reception time
+	 */
+	public long getReceived(int index)
+	{
+		return _received[checkIndex(index)];
+	}
+	
+	/**
+	 * Returns the body size of a stored packet.
+	 * 
+	 * @param index packet index
+	 * @return body size
+	 */
+	public int getBodyLength(int index)
+	{
+		return _lengths[checkIndex(index)];
+	}
+	
+	/**
+	 * Returns a read-only buffer that contains the body of a stored packet between its position and limit.
+	 * 
+	 * @param index packet index
+	 * @return packet body
+	 */
+	public ByteBuffer getBodyBuffer(int index)
+	{
+		final int slot = checkIndex(index);
+		final long offset = _offsets[slot];
+		final int position = (int)(offset & (SEGMENT_SIZE - 1));
+		final ByteBuffer buf = _segments[(int)((offset >>> SEGMENT_SHIFT) - _firstSegment)].asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+		buf.limit(position + _lengths[slot]).position(position);
+		return buf;
+	}
+	
+	/**
+	 * Returns a copy of the body of a stored packet.
+	 * 
+	 * @param index packet index
+	 * @return packet body
+	 */
+	public byte[] getBody(int index)
+	{
+		final ByteBuffer buf = getBodyBuffer(index);
+		final byte[] body = new byte[buf.remaining()];
+		buf.get(body);
+		return body;
+	}
+	
+	/**
+	 * Returns a stored packet as a standalone wrapper that does not reference this store.
+	 * 
+	 * @param index packet index
+	 * @return a packet
+	 */
+	public ReceivedPacket getPacket(int index)
+	{
+		return new ReceivedPacket(getService(index), getEndpoint(index), getBody(index), getReceived(index));
+	}
+	
+	/**
+	 * Returns the template ID of a stored packet.
+	 * 
+	 * @param index packet index
+	 * @return ID of a template descriptor in {@link #getDescriptors()}
+	 */
+	public int getTemplateID(int index)
+	{
+		return _templateIDs[checkIndex(index)];
+	}
+	
+	/**
+	 * Returns the template descriptor of a stored packet.
+	 * 
+	 * @param index packet index
+	 * @return template descriptor
+	 */
+	public PacketTemplateDescriptor getDescriptor(int index)
+	{
+		return _descriptors.get(_templateIDs[checkIndex(index)]);
+	}
+	
+	/**
+	 * Returns the template descriptors that stored template IDs refer to.
+	 * 
+	 * @return template descriptor table
+	 */
+	public PacketTemplateDescriptorTable getDescriptors()
+	{
+		return _descriptors;
+	}
+	
+	/**
+	 * Resolves templates of all stored packets with the given descriptor table. Packets are resolved in parallel, so this store must not be modified meanwhile.
+	 * 
+	 * @param descriptors template descriptors of the new protocol version
+	 */
+	public void setDescriptors(PacketTemplateDescriptorTable descriptors)
+	{
+		IntStream.range(_first, _first + _size).parallel().forEach(i -> _templateIDs[i & _mask] = descriptors.resolve(getEndpoint(i), getBodyBuffer(i)).getID());
+		_descriptors = descriptors;
+	}
+	
+	/**
+	 * Removes all packets from this store and releases the memory they occupy. Indices of packets appended afterwards will continue where they left off.<BR>
+	 * <BR>
+	 * Memory-mapped segments are only unmapped once they are garbage collected.
+	 */
+	public void clear()
+	{
+		release();
+		reset();
+	}
+	
+	/** Releases the memory that all packets occupy. Memory-mapped segments are only unmapped once they are garbage collected. */
+	@Override
+	public void close()
+	{
+		release();
+		_segments = new ByteBuffer[0];
+		_size = 0;
+	}
+	
+	private void release()
+	{
+		// there is no way to unmap a segment, so at least allow the garbage collector to do that
+		Arrays.fill(_segments, null);
+		_segmentCount = 0;
+		_spareSegments.clear();
+		_mappedSegments = 0;
+		UnmanagedResource.close(_channel);
+		_channel = null;
+		
+		if (_file == null)
+			return;
+		
+		try
+		{
+			Files.deleteIfExists(_file);
+		}
+		catch (final IOException e)
+		{
+			// a file that is still mapped cannot be deleted on Windows
+			LOG.info("Packet store file " + _file + " will be deleted on exit.");
+		}
+		_file = null;
+	}
+	
+	private int checkIndex(int index)
+	{
+		if (index - _first < 0 || index - _first >= _size)
+			throw new IndexOutOfBoundsException(index + " / [" + _first + ", " + (_first + _size) + ")");
+		return index & _mask;
+	}
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.ui.javafx.packet;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+import javafx.collections.ObservableListBase;
+
+/**
+ * An observable list of packets in a {@link PacketStore}.<BR>
+ * <BR>
+ * Packets in this view are kept as a bit set of store indices, with a cumulative bit count every 4096 bits, so that the n-th packet can be found
+ * without a list of indices. The bit set starts at a multiple of 64, so that bits of evicted packets can be dropped. Such a list only exists while the view is sorted by something other than store order.<BR>
+ * A {@link PacketLogEntry} is created each time an element is requested, so a table view only causes wrappers of visible rows to exist.
+ * This list cannot be modified via the {@link List} interface.
+ * 
+ * @author _dev_
+ */
+public final class PacketStoreView extends ObservableListBase<PacketLogEntry>
+{
+	private static final int RANK_BLOCK_SHIFT = 12;
+	private static final int RANK_BLOCK_WORD_SHIFT = RANK_BLOCK_SHIFT - 6;
+	
+	private final PacketStore _store;
+	private Selection _selection;
+	
+	/**
+	 * Creates an empty view.
+	 * 
+	 * @param store packet store
+	 */
+	public PacketStoreView(PacketStore store)
+	{
+		_store = store;
+		_selection = new Selection(new long[16], store.getFirstIndex() & ~63);
+	}
+	
+	@Override
+	public PacketLogEntry get(int index)
+	{
+		return new PacketLogEntry(_store, _selection.getStoreIndex(index));
+	}
+	
+	@Override
+	public int size()
+	{
+		return _selection._size;
+	}
+	
+	/**
+	 * Returns the store index of a packet in this view.
+	 * 
+	 * @param index view index
+	 * @return store index
+	 */
+	public int getStoreIndex(int index)
+	{
+		return _selection.getStoreIndex(index);
+	}
+	
+	/**
+	 * Appends the given packets to this view. Packets must be newer than any packet in this view.
+	 * 
+	 * @param indices store indices, in ascending order
+	 * @param count amount of indices to append
+	 */
+	public void append(int[] indices, int count)
+	{
+		if (count <= 0)
+			return;
+		
+		final Selection selection = _selection;
+		final int start = selection._size;
+		for (int i = 0; i < count; ++i)
+			selection.add(indices[i]);
+		if (selection._order != null)
+		{
+			selection.ensureOrderCapacity(selection._size);
+			System.arraycopy(indices, 0, selection._order, start, count);
+		}
+		
+		beginChange();
+		nextAdd(start, start + count);
+		endChange();
+	}
+	
+	/**
+	 * Inserts the given packets into this view, keeping it sorted as defined by {@code comparator}. Packets must be newer than any packet in this view.
+	 * 
+	 * @param indices store indices, in ascending order
+	 * @param count amount of indices to insert
+	 * @param comparator order of this view
+	 */
+	public void insert(int[] indices, int count, Comparator<? super PacketLogEntry> comparator)
+	{
+		if (count <= 0)
+			return;
+		
+		final Selection selection = _selection;
+		if (selection._order == null)
+			selection._order = selection.toIndexArray();
+		selection.ensureOrderCapacity(selection._size + count);
+		
+		beginChange();
+		for (int i = 0; i < count; ++i)
+		{
+			final PacketLogEntry entry = new PacketLogEntry(_store, indices[i]);
+			int low = 0, high = selection._size;
+			while (low < high)
+			{
+				final int mid = (low + high) >>> 1;
+				if (comparator.compare(get(mid), entry) <= 0)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			System.arraycopy(selection._order, low, selection._order, low + 1, selection._size - low);
+			selection._order[low] = indices[i];
+			selection.add(indices[i]);
+			nextAdd(low, low + 1);
+		}
+		endChange();
+	}
+	
+	/**
+	 * Replaces all packets in this view. Packets will be ordered as they appear in the store.
+	 * 
+	 * @param packets store indices, relative to {@code base}
+	 * @param base store index that corresponds to bit 0 of {@code packets}, a multiple of 64
+	 */
+	public void setAll(BitSet packets, int base)
+	{
+		final Selection removed = _selection;
+		_selection = new Selection(packets.toLongArray(), base);
+		
+		beginChange();
+		if (removed._size > 0)
+			nextRemove(0, new DetachedView(removed));
+		if (_selection._size > 0)
+			nextAdd(0, _selection._size);
+		endChange();
+	}
+	
+	/**
+	 * Removes all packets from this view. Packets added afterwards must be newer than any packet currently in the store, so the view starts at the end of the
+	 * store, which is also where a cleared store continues.
+	 */
+	@Override
+	public void clear()
+	{
+		setAll(new BitSet(), _store.getEndIndex() & ~63);
+	}
+	
+	/**
+	 * Removes all packets older than the given one from this view. Must be called before these packets are evicted from the store.
+	 * 
+	 * @param firstIndex store index of the oldest packet that remains
+	 */
+	public void evict(int firstIndex)
+	{
+		final Selection selection = _selection;
+		final int base = firstIndex & ~63;
+		final int offset = (base - selection._base) >>> 6;
+		final int bits = firstIndex - base;
+		
+		final long[] words = offset < selection._words.length ? Arrays.copyOfRange(selection._words, offset, selection._words.length) : new long[16];
+		if (bits != 0)
+			words[0] &= -1L << bits;
+		final Selection remaining = new Selection(words, base);
+		if (remaining._size == selection._size)
+			return;
+		
+		beginChange();
+		if (selection._order == null)
+		{
+			// evicted packets are the oldest ones, so they are at the beginning of this view
+			final long[] removedWords = Arrays.copyOf(selection._words, Math.min(selection._words.length, offset + 1));
+			if (removedWords.length > offset)
+				removedWords[offset] &= ~(-1L << bits);
+			nextRemove(0, new DetachedView(new Selection(removedWords, selection._base)));
+		}
+		else
+		{
+			remaining._order = new int[Math.max(remaining._size, 16)];
+			int kept = 0, removed = 0;
+			for (int i = 0; i < selection._size; ++i)
+			{
+				final int storeIndex = selection._order[i];
+				if (storeIndex >= firstIndex)
+					remaining._order[kept++] = storeIndex;
+				else
+					nextRemove(i - removed++, new PacketLogEntry(_store, storeIndex));
+			}
+		}
+		_selection = remaining;
+		endChange();
+	}
+	
+	/**
+	 * Sorts this view as defined by {@code comparator}. If {@code comparator} is {@code null}, packets are ordered as they appear in the store.<BR>
+	 * <BR>
+	 * Wrappers of all packets in this view exist only while sorting.
+	 * 
+	 * @param comparator sort order or {@code null}
+	 */
+	@Override
+	public void sort(Comparator<? super PacketLogEntry> comparator)
+	{
+		final Selection selection = _selection;
+		if (selection._size < 2 || (comparator == null && selection._order == null))
+			return;
+		
+		final int[] oldOrder = selection._order != null ? selection._order : selection.toIndexArray();
+		final int[] newOrder;
+		if (comparator != null)
+		{
+			final PacketLogEntry[] entries = new PacketLogEntry[selection._size];
+			for (int i = 0; i < entries.length; ++i)
+				entries[i] = new PacketLogEntry(_store, oldOrder[i]);
+			Arrays.sort(entries, comparator);
+			
+			newOrder = new int[entries.length];
+			for (int i = 0; i < entries.length; ++i)
+				newOrder[i] = entries[i].getIndex();
+		}
+		else
+			newOrder = selection.toIndexArray();
+		
+		final int first = _store.getFirstIndex();
+		final int[] positions = new int[_store.size()];
+		for (int i = 0; i < selection._size; ++i)
+			positions[newOrder[i] - first] = i;
+		final int[] permutation = new int[selection._size];
+		for (int i = 0; i < permutation.length; ++i)
+			permutation[i] = positions[oldOrder[i] - first];
+		selection._order = comparator != null ? newOrder : null;
+		
+		beginChange();
+		nextPermutation(0, permutation.length, permutation);
+		endChange();
+	}
+	
+	private static final class Selection
+	{
+		long[] _words;
+		final int _base;
+		int[] _ranks;
+		int _blocks;
+		int _size;
+		int[] _order;
+		
+		Selection(long[] words, int base)
+		{
+			_words = words;
+			_base = base;
+			_blocks = (words.length + (1 << RANK_BLOCK_WORD_SHIFT) - 1) >>> RANK_BLOCK_WORD_SHIFT;
+			_ranks = new int[Math.max(4, _blocks)];
+			_size = 0;
+			for (int i = 0; i < words.length; ++i)
+			{
+				if ((i & ((1 << RANK_BLOCK_WORD_SHIFT) - 1)) == 0)
+					_ranks[i >>> RANK_BLOCK_WORD_SHIFT] = _size;
+				_size += Long.bitCount(words[i]);
+			}
+			_order = null;
+		}
+		
+		void add(int storeIndex)
+		{
+			final int bit = storeIndex - _base;
+			final int word = bit >>> 6;
+			if (word >= _words.length)
+				_words = Arrays.copyOf(_words, Math.max(word + 1, _words.length << 1));
+			
+			final int block = bit >>> RANK_BLOCK_SHIFT;
+			if (block >= _ranks.length)
+				_ranks = Arrays.copyOf(_ranks, Math.max(block + 1, _ranks.length << 1));
+			while (_blocks <= block)
+				_ranks[_blocks++] = _size;
+			
+			_words[word] |= 1L << bit;
+			++_size;
+		}
+		
+		int getStoreIndex(int index)
+		{
+			if (index < 0 || index >= _size)
+				throw new IndexOutOfBoundsException(index + " / " + _size);
+			if (_order != null)
+				return _order[index];
+			
+			int low = 0, high = _blocks - 1;
+			while (low < high)
+			{
+				final int mid = (low + high + 1) >>> 1;
+				if (_ranks[mid] <= index)
+					low = mid;
+				else
+					high = mid - 1;
+			}
+			
+			int remaining = index - _ranks[low];
+			for (int word = low << RANK_BLOCK_WORD_SHIFT;; ++word)
+			{
+				long bits = _words[word];
+				final int count = Long.bitCount(bits);
+				if (remaining >= count)
+				{
+					remaining -= count;
+					continue;
+				}
+				
+				for (; remaining > 0; --remaining)
+					bits &= bits - 1;
+				return _base + (word << 6) + Long.numberOfTrailingZeros(bits);
+			}
+		}
+		
+		int[] toIndexArray()
+		{
+			final int[] indices = new int[_size];
+			int count = 0;
+			for (int word = 0; count < _size; ++word)
+				for (long bits = _words[word]; bits != 0; bits &= bits - 1)
+					indices[count++] = _base + (word << 6) + Long.numberOfTrailingZeros(bits);
+			return indices;
+		}
+		
+		void ensureOrderCapacity(int capacity)
+		{
+			if (capacity > _order.length)
+				_order = Arrays.copyOf(_order, Math.max(capacity, _order.length << 1));
+		}
+	}
+	
+	private final class DetachedView extends AbstractList<PacketLogEntry>
+	{
+		private final Selection _detached;
+		
+		DetachedView(Selection detached)
+		{
+			_detached = detached;
+		}
+		
+		@Override
+		public PacketLogEntry get(int index)
+		{
+			return new PacketLogEntry(_store, _detached.getStoreIndex(index));
+		}
+		
+		@Override
+		public int size()
+		{
+			return _detached._size;
+		}
+	}
+}
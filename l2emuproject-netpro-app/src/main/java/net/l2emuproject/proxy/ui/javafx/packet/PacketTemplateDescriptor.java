@@ -0,0 +1,124 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.ui.javafx.packet;
+
+import net.l2emuproject.proxy.network.EndpointType;
+import net.l2emuproject.proxy.network.meta.IPacketTemplate;
+import net.l2emuproject.proxy.ui.i18n.UIStrings;
+import net.l2emuproject.util.HexUtil;
+
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
+/**
+ * Display values of a packet template, shared by all packets of that template in all packet log tabs of a protocol version.
+ * 
+ * @author _dev_
+ */
+public final class PacketTemplateDescriptor
+{
+	private final int _id;
+	private final EndpointType _endpoint;
+	private final IPacketTemplate _template;
+	private final ReadOnlyStringProperty _opcode, _name;
+	
+	PacketTemplateDescriptor(int id, EndpointType endpoint, IPacketTemplate template)
+	{
+		_id = id;
+		_endpoint = endpoint;
+		_template = template;
+		
+		final String opcode = HexUtil.bytesToHexString(template.getPrefix(), ":");
+		_opcode = new ReadOnlyStringWrapper(opcode).getReadOnlyProperty();
+		_name = new ReadOnlyStringWrapper(template.isDefined() ? template.getName() : UIStrings.get("packetdc.table.unknownpacket", opcode)).getReadOnlyProperty();
+	}
+	
+	/**
+	 * Returns the ID of this descriptor within its {@link PacketTemplateDescriptorTable}.
+	 * 
+	 * @return template ID
+	 */
+	public int getID()
+	{
+		return _id;
+	}
+	
+	/**
+	 * Returns the type of packets described by this descriptor.
+	 * 
+	 * @return client/server
+	 */
+	public EndpointType getEndpoint()
+	{
+		return _endpoint;
+	}
+	
+	/**
+	 * Returns the described packet template.
+	 * 
+	 * @return packet template
+	 */
+	public IPacketTemplate getTemplate()
+	{
+		return _template;
+	}
+	
+	/**
+	 * Returns the user-friendly packet opcode(s).
+	 * 
+	 * @return opcode(s)
+	 */
+	public String getOpcode()
+	{
+		return _opcode.get();
+	}
+	
+	/**
+	 * Returns a property of the user-friendly packet opcode(s).
+	 * 
+	 * @return opcode(s)
+	 */
+	public ReadOnlyStringProperty opcodeProperty()
+	{
+		return _opcode;
+	}
+	
+	/**
+	 * Returns the user-friendly packet name.
+	 * 
+	 * @return name
+	 */
+	public String getName()
+	{
+		return _name.get();
+	}
+	
+	/**
+	 * Returns a property of the user-friendly packet name.
+	 * 
+	 * @return name
+	 */
+	public ReadOnlyStringProperty nameProperty()
+	{
+		return _name;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return _id + ": " + _opcode.get() + " " + _name.get();
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.ui.javafx.packet;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.l2emuproject.network.protocol.IProtocolVersion;
+import net.l2emuproject.proxy.io.definitions.VersionnedPacketTable;
+import net.l2emuproject.proxy.network.EndpointType;
+import net.l2emuproject.proxy.network.meta.IPacketTemplate;
+
+/**
+ * Assigns small integer IDs to packet templates of a single protocol version and keeps a {@link PacketTemplateDescriptor} for each of them.<BR>
+ * <BR>
+ * Tables are shared by all packet log tabs, so display values of a template are computed once per protocol version. Template lookups may be performed concurrently.
+ * 
+ * @author _dev_
+ */
+public final class PacketTemplateDescriptorTable
+{
+	private static final Map<IProtocolVersion, PacketTemplateDescriptorTable> TABLES = new ConcurrentHashMap<>();
+	
+	private final IProtocolVersion _protocol;
+	private final Map<IPacketTemplate, PacketTemplateDescriptor> _clientDescriptors, _serverDescriptors;
+	private volatile PacketTemplateDescriptor[] _descriptors;
+	private int _size;
+	
+	private PacketTemplateDescriptorTable(IProtocolVersion protocol)
+	{
+		_protocol = protocol;
+		_clientDescriptors = new ConcurrentHashMap<>();
+		_serverDescriptors = new ConcurrentHashMap<>();
+		_descriptors = new PacketTemplateDescriptor[64];
+		_size = 0;
+	}
+	
+	/**
+	 * Returns the network protocol version associated with this table.
+	 * 
+	 * @return protocol version
+	 */
+	public IProtocolVersion getProtocol()
+	{
+		return _protocol;
+	}
+	
+	/**
+	 * Returns the descriptor of a packet's template.
+	 * 
+	 * @param endpoint packet author
+	 * @param body packet body between the buffer's position and limit
+	 * @return template descriptor
+	 */
+	public PacketTemplateDescriptor resolve(EndpointType endpoint, ByteBuffer body)
+	{
+		return getDescriptor(endpoint, VersionnedPacketTable.getInstance().getTemplate(_protocol, endpoint, body));
+	}
+	
+	/**
+	 * Returns the descriptor of the given template, creating it if necessary.
+	 * 
+	 * @param endpoint packet author
+	 * @param template packet template
+	 * @return template descriptor
+	 */
+	public PacketTemplateDescriptor getDescriptor(EndpointType endpoint, IPacketTemplate template)
+	{
+		final Map<IPacketTemplate, PacketTemplateDescriptor> descriptors = endpoint.isClient() ? _clientDescriptors : _serverDescriptors;
+		final PacketTemplateDescriptor descriptor = descriptors.get(template);
+		return descriptor != null ? descriptor : addDescriptor(descriptors, endpoint, template);
+	}
+	
+	private synchronized PacketTemplateDescriptor addDescriptor(Map<IPacketTemplate, PacketTemplateDescriptor> descriptors, EndpointType endpoint, IPacketTemplate template)
+	{
+		PacketTemplateDescriptor descriptor = descriptors.get(template);
+		if (descriptor != null)
+			return descriptor;
+		
+		PacketTemplateDescriptor[] array = _descriptors;
+		if (_size == array.length)
+			array = Arrays.copyOf(array, _size << 1);
+		array[_size] = descriptor = new PacketTemplateDescriptor(_size, endpoint, template);
+		++_size;
+		_descriptors = array;
+		// IDs are only handed out after the descriptor can be looked up
+		descriptors.put(template, descriptor);
+		return descriptor;
+	}
+	
+	/**
+	 * Returns a descriptor by ID.
+	 * 
+	 * @param id template ID
+	 * @return template descriptor
+	 */
+	public PacketTemplateDescriptor get(int id)
+	{
+		return _descriptors[id];
+	}
+	
+	/**
+	 * Tests whether the given descriptor belongs to this table.
+	 * 
+	 * @param descriptor a template descriptor
+	 * @return whether {@code descriptor} was created by this table
+	 */
+	public boolean contains(PacketTemplateDescriptor descriptor)
+	{
+		final PacketTemplateDescriptor[] descriptors = _descriptors;
+		final int id = descriptor.getID();
+		return id < descriptors.length && descriptors[id] == descriptor;
+	}
+	
+	/**
+	 * Returns a table for the given protocol version.
+	 * 
+	 * @param protocol network protocol version
+	 * @return template descriptor table
+	 */
+	public static PacketTemplateDescriptorTable getInstance(IProtocolVersion protocol)
+	{
+		return TABLES.computeIfAbsent(protocol, PacketTemplateDescriptorTable::new);
+	}
+	
+	/** Discards all tables, e.g. after packet definitions have been reloaded. Tables that are still in use remain valid. */
+	public static void reset()
+	{
+		TABLES.clear();
+	}
+}
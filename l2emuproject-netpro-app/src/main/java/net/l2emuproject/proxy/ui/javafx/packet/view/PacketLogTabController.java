@@ -45,7 +45,6 @@ import net.l2emuproject.network.protocol.IProtocolVersion;
 import net.l2emuproject.network.protocol.ProtocolVersionManager;
 import net.l2emuproject.proxy.io.conversion.ToPlaintextVisitor;
 import net.l2emuproject.proxy.io.conversion.ToXMLVisitor;
-import net.l2emuproject.proxy.io.definitions.VersionnedPacketTable;
 import net.l2emuproject.proxy.network.EndpointType;
 import net.l2emuproject.proxy.network.login.client.packets.RequestServerList;
 import net.l2emuproject.proxy.network.meta.IPacketTemplate;
@@ -64,17 +63,25 @@ import net.l2emuproject.proxy.ui.i18n.UIStrings;
 import net.l2emuproject.proxy.ui.javafx.FXUtils;
 import net.l2emuproject.proxy.ui.javafx.packet.IPacketHidingConfig;
 import net.l2emuproject.proxy.ui.javafx.packet.Packet2Html;
+import net.l2emuproject.proxy.ui.javafx.packet.PacketFilterIndex;
 import net.l2emuproject.proxy.ui.javafx.packet.PacketHidingConfig;
 import net.l2emuproject.proxy.ui.javafx.packet.PacketLogEntry;
+import net.l2emuproject.proxy.ui.javafx.packet.PacketRetentionPolicy;
+import net.l2emuproject.proxy.ui.javafx.packet.PacketSpill;
+import net.l2emuproject.proxy.ui.javafx.packet.PacketStore;
+import net.l2emuproject.proxy.ui.javafx.packet.PacketStoreView;
+import net.l2emuproject.proxy.ui.javafx.packet.PacketTemplateDescriptor;
+import net.l2emuproject.proxy.ui.javafx.packet.PacketTemplateDescriptorTable;
 import net.l2emuproject.proxy.ui.javafx.packet.ProtocolPacketHidingManager;
+import net.l2emuproject.util.concurrent.L2ThreadPool;
+import net.l2emuproject.util.logging.L2Logger;
 
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.BooleanBinding;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
 import javafx.beans.property.SimpleObjectProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-import javafx.collections.transformation.SortedList;
 import javafx.css.PseudoClass;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -103,12 +110,18 @@ public class PacketLogTabController implements Initializable
 	@FXML
 	private Button _btnClearMemory;
 	
+	@FXML
+	private Button _btnOpenEvictedPackets;
+	
 	@FXML
 	private Label _labTablePacketCount;
 	
 	@FXML
 	private Label _labMemoryPacketCount;
 	
+	@FXML
+	private Label _labEvictedPacketCount;
+	
 	@FXML
 	private FilteredTableView<PacketLogEntry> _tvPackets;
 	
@@ -133,9 +146,22 @@ public class PacketLogTabController implements Initializable
 	@FXML
 	private MenuItem _miHidePacketInProtocol;
 	
+	private static final L2Logger LOG = L2Logger.getLogger(PacketLogTabController.class);
+	
 	//private static final int AUTO_SCROLL_THRESHOLD = 250;
+	private static final int EVICTED_PACKET_BATCH_SIZE = 4096;
 	
-	private final ObservableList<PacketLogEntry> _memoryPackets, _tablePackets;
+	private final PacketStore _memoryPackets;
+	private final ReadOnlyIntegerWrapper _memoryPacketCount;
+	private final PacketFilterIndex _filterIndex;
+	private final PacketStoreView _tablePackets;
+	private boolean _disposed;
+	
+	private PacketRetentionPolicy _retentionPolicy;
+	private PacketSpill _evictedPackets;
+	private boolean _spillFailed;
+	private final ReadOnlyIntegerWrapper _evictedPacketCount;
+	private Consumer<PacketLogTabController> _onOpenEvictedPackets;
 	
 	private final ObjectProperty<IProtocolVersion> _protocolProperty;
 	private ICacheServerID _entityCacheContext;
@@ -151,18 +177,30 @@ public class PacketLogTabController implements Initializable
 	/** Creates this controller. */
 	public PacketLogTabController()
 	{
-		_memoryPackets = FXCollections.observableArrayList();
-		_tablePackets = FXCollections.observableArrayList();
+		final IProtocolVersion initialProtocol = ProtocolVersionManager.getInstance().getFallbackProtocolGame();
+		_memoryPackets = new PacketStore(PacketTemplateDescriptorTable.getInstance(initialProtocol));
+		_memoryPacketCount = new ReadOnlyIntegerWrapper(0);
+		_filterIndex = new PacketFilterIndex();
+		_tablePackets = new PacketStoreView(_memoryPackets);
+		_disposed = false;
+		
+		_retentionPolicy = PacketRetentionPolicy.UNLIMITED;
+		_evictedPackets = null;
+		_spillFailed = false;
+		_evictedPacketCount = new ReadOnlyIntegerWrapper(0);
+		_onOpenEvictedPackets = c -> {
+			// Do nothing
+		};
 		
-		_protocolProperty = new SimpleObjectProperty<>(ProtocolVersionManager.getInstance().getFallbackProtocolGame());
+		_protocolProperty = new SimpleObjectProperty<>(initialProtocol);
 		_protocolProperty.addListener(obs -> {
 			final IProtocolVersion neu = _protocolProperty.getValue();
 			if (neu == null)
 				return;
 			
-			for (final PacketLogEntry e : _memoryPackets)
-				e.updateView(neu);
-			_tvPackets.refresh();
+			_memoryPackets.setDescriptors(PacketTemplateDescriptorTable.getInstance(neu));
+			_filterIndex.rebuild(_memoryPackets);
+			applyFilters();
 			
 			refreshSelectedPacketView();
 		});
@@ -180,12 +218,13 @@ public class PacketLogTabController implements Initializable
 	{
 		final NumberFormat format = NumberFormat.getIntegerInstance(UIStrings.CURRENT_LOCALE);
 		_labTablePacketCount.textProperty().bind(UIStrings.getEx("packettab.footer.count.table", Bindings.createStringBinding(() -> format.format(_tablePackets.size()), _tablePackets)));
-		_labMemoryPacketCount.textProperty().bind(UIStrings.getEx("packettab.footer.count.memory", Bindings.createStringBinding(() -> format.format(_memoryPackets.size()), _memoryPackets)));
+		_labMemoryPacketCount.textProperty().bind(UIStrings.getEx("packettab.footer.count.memory", Bindings.createStringBinding(() -> format.format(_memoryPacketCount.get()), _memoryPacketCount)));
+		_labEvictedPacketCount.textProperty().bind(UIStrings.getEx("packettab.footer.count.evicted", Bindings.createStringBinding(() -> format.format(_evictedPacketCount.get()), _evictedPacketCount)));
 		
 		final PseudoClass clientPacketRowClass = PseudoClass.getPseudoClass("client");
 		_tvPackets.setRowFactory(tv -> {
 			final TableRow<PacketLogEntry> row = new TableRow<>();
-			row.itemProperty().addListener((obs, old, neu) -> row.pseudoClassStateChanged(clientPacketRowClass, neu != null ? neu.getPacket().getEndpoint().isClient() : false));
+			row.itemProperty().addListener((obs, old, neu) -> row.pseudoClassStateChanged(clientPacketRowClass, neu != null ? neu.getEndpoint().isClient() : false));
 			return row;
 		});
 		
@@ -207,9 +246,12 @@ public class PacketLogTabController implements Initializable
 			_packetDisplayController.setContent(html.getLeft(), html.getRight());
 		});
 		
-		final SortedList<PacketLogEntry> sortableTablePackets = new SortedList<>(_tablePackets);
-		sortableTablePackets.comparatorProperty().bind(_tvPackets.comparatorProperty());
-		_tvPackets.setItems(sortableTablePackets);
+		// a SortedList would keep a wrapper of every packet in the table
+		_tvPackets.setSortPolicy(tv -> {
+			_tablePackets.sort(tv.getSortOrder().isEmpty() ? null : tv.getComparator());
+			return true;
+		});
+		_tvPackets.setItems(_tablePackets);
 		_tvPackets.addEventHandler(ColumnFilterEvent.FILTER_CHANGED_EVENT, e -> applyFilters());
 		
 		_colSender.setCellValueFactory(new PropertyValueFactory<>("sender"));
@@ -236,8 +278,11 @@ public class PacketLogTabController implements Initializable
 	@FXML
 	private void clearMemory(ActionEvent event)
 	{
+		// the view does not depend on the first index of the store, but wrappers of removed packets must remain readable while the table processes their removal
+		_filterIndex.clear();
 		clearTable(event);
 		_memoryPackets.clear();
+		_memoryPacketCount.set(0);
 	}
 	
 	@FXML
@@ -246,6 +291,13 @@ public class PacketLogTabController implements Initializable
 		_tablePackets.clear();
 	}
 	
+	@FXML
+	private void openEvictedPackets(ActionEvent event)
+	{
+		if (_evictedPackets != null)
+			_onOpenEvictedPackets.accept(this);
+	}
+	
 	/**
 	 * Copies the currently selected packet to clipboard in plaintext form.
 	 * 
@@ -324,31 +376,33 @@ public class PacketLogTabController implements Initializable
 		if (packetEntry == null)
 			return;
 		
-		final ReceivedPacket packet = packetEntry.getPacket();
-		final EndpointType endpoint = packet.getEndpoint();
-		hidingConfig.setHidden(endpoint, VersionnedPacketTable.getInstance().getTemplate(_protocolProperty.get(), endpoint, packet.getBody()), true);
+		hidingConfig.setHidden(packetEntry.getEndpoint(), packetEntry.getTemplate(), true);
 		
 		applyFilters();
 	}
 	
-	private boolean isHiddenByName(PacketLogEntry packetEntry)
+	private boolean isHiddenByName(String name)
 	{
 		for (final StringOperator filter : _colName.getFilters())
-			if (FXUtils.isHidden(packetEntry.getName(), filter))
+			if (FXUtils.isHidden(name, filter))
 				return true;
 			
 		return false;
 	}
 	
-	private boolean isHiddenByDisplayConfig(PacketLogEntry packetEntry)
+	private boolean isHiddenByDisplayConfig(EndpointType endpoint, IPacketTemplate template)
 	{
-		final ReceivedPacket packet = packetEntry.getPacket();
-		final EndpointType endpoint = packet.getEndpoint();
 		final IProtocolVersion protocol = _protocolProperty.get();
-		final IPacketTemplate template = VersionnedPacketTable.getInstance().getTemplate(protocol, endpoint, packet.getBody());
 		return _packetHidingConfigProperty.get().isHidden(endpoint, template) || ProtocolPacketHidingManager.getInstance().getHidingConfiguration(protocol).get().isHidden(endpoint, template);
 	}
 	
+	private boolean isHidden(int templateID)
+	{
+		// every filter depends on the packet template only
+		final PacketTemplateDescriptor descriptor = _memoryPackets.getDescriptors().get(templateID);
+		return isHiddenByDisplayConfig(descriptor.getEndpoint(), descriptor.getTemplate()) || isHiddenByName(descriptor.getName());
+	}
+	
 	private String toPlaintext(List<PacketLogEntry> packets)
 	{
 		final L2TextBuilder sb = new L2TextBuilder();
@@ -421,7 +475,7 @@ public class PacketLogTabController implements Initializable
 	 */
 	public BooleanBinding hasMemoryPackets()
 	{
-		return Bindings.size(_memoryPackets).greaterThan(0);
+		return _memoryPacketCount.greaterThan(0);
 	}
 	
 	/**
@@ -447,17 +501,10 @@ public class PacketLogTabController implements Initializable
 	/** Updates packet table view in response to a change of applied filters. */
 	public void applyFilters()
 	{
-		if (_cmiIgnoreFilters.isSelected())
-		{
-			_tablePackets.setAll(_memoryPackets);
-			return;
-		}
-		
-		final ObservableList<PacketLogEntry> filterMatchingPackets = FXCollections.observableArrayList();
-		for (final PacketLogEntry packetEntry : _memoryPackets)
-			if (!isHiddenByDisplayConfig(packetEntry) && !isHiddenByName(packetEntry))
-				filterMatchingPackets.add(packetEntry);
-		_tablePackets.setAll(filterMatchingPackets);
+		_filterIndex.update(_cmiIgnoreFilters.isSelected() ? templateID -> false : this::isHidden);
+		_tablePackets.setAll(_filterIndex.getVisible(), _filterIndex.getBase());
+		if (!_tvPackets.getSortOrder().isEmpty())
+			_tvPackets.sort();
 	}
 	
 	/**
@@ -474,6 +521,26 @@ public class PacketLogTabController implements Initializable
 		_btnClearTable.setDisable(!live);
 	}
 	
+	/**
+	 * Specifies how many packets this tab may keep. Evicted packets are no longer shown, but may be kept in a temporary file.
+	 * 
+	 * @param retentionPolicy packet retention policy
+	 */
+	public void setRetentionPolicy(PacketRetentionPolicy retentionPolicy)
+	{
+		_retentionPolicy = retentionPolicy;
+	}
+	
+	/**
+	 * Assigns an action to be taken when the user requests to see packets evicted from this tab.
+	 * 
+	 * @param onOpenEvictedPackets an action
+	 */
+	public void setOnOpenEvictedPackets(Consumer<PacketLogTabController> onOpenEvictedPackets)
+	{
+		_onOpenEvictedPackets = onOpenEvictedPackets;
+	}
+	
 	/**
 	 * Assigns an action to be taken when a packet template is set to hidden in the associated protocol's configuration.
 	 * 
@@ -485,15 +552,20 @@ public class PacketLogTabController implements Initializable
 	}
 	
 	/**
-	 * Adds a new packet to the underlying table view.
+	 * Adds a new packet to the underlying table view.<BR>
+	 * <BR>
+	 * Packets are moved into this tab's packet store, so the given wrappers should not be used afterwards.
 	 * 
 	 * @param packets packets to add
 	 */
 	public void addPackets(Collection<PacketLogEntry> packets)
 	{
-		_memoryPackets.addAll(packets);
+		if (_disposed)
+			return;
 		
-		final List<PacketLogEntry> tablePackets = new ArrayList<>(packets.size());
+		final PacketTemplateDescriptorTable descriptors = _memoryPackets.getDescriptors();
+		final int[] tablePackets = new int[packets.size()];
+		int count = 0;
 		for (final PacketLogEntry packet : packets)
 		{
 			// special case to allow PPE (custom definition) as well as a client-requested packet structure
@@ -524,28 +596,108 @@ public class PacketLogTabController implements Initializable
 				}
 			}
 			
-			if (!isHiddenByDisplayConfig(packet) && !isHiddenByName(packet))
-				tablePackets.add(packet);
+			PacketTemplateDescriptor descriptor = packet.getDescriptor();
+			if (descriptor == null || !descriptors.contains(descriptor))
+				descriptor = descriptors.resolve(rp.getEndpoint(), ByteBuffer.wrap(rp.getBody()).order(ByteOrder.LITTLE_ENDIAN));
+			final int index = _memoryPackets.append(rp, descriptor.getID());
+			if (_filterIndex.add(index, descriptor.getID(), this::isHidden))
+				tablePackets[count++] = index;
 		}
+		_memoryPacketCount.set(_memoryPackets.size());
 		
-		if (tablePackets.isEmpty())
-			return;
-		
-		//final int noScrollIndex = _tvPackets.getItems().size() - 1;
-		
-		_tablePackets.addAll(tablePackets);
-		/*
-		if (_scrollLockProperty.get())
+		if (count > 0)
 		{
-			if (noScrollIndex >= 0)
-				_tvPackets.scrollTo(noScrollIndex);
+			if (_tvPackets.getSortOrder().isEmpty())
+				_tablePackets.append(tablePackets, count);
+			else
+				_tablePackets.insert(tablePackets, count, _tvPackets.getComparator());
 		}
-		else
+		
+		if (_retentionPolicy.isLimited())
+			evictPackets();
+	}
+	
+	private void evictPackets()
+	{
+		final int count = _retentionPolicy.getEvictionCount(_memoryPackets);
+		if (count <= 0)
+			return;
+		
+		final int first = _memoryPackets.getFirstIndex(), end = first + count;
+		if (_retentionPolicy.isSpilling() && !_spillFailed)
 		{
-			final int doScrollIndex = _tvPackets.getItems().size() - 1;
-			if (doScrollIndex >= 0)
-				_tvPackets.scrollTo(doScrollIndex);
+			try
+			{
+				if (_evictedPackets == null)
+					_evictedPackets = new PacketSpill();
+				// packets are copied here, but written in the background
+				_evictedPackets.append(_memoryPackets, first, end);
+			}
+			catch (final IOException e)
+			{
+				LOG.error("Cannot keep packets evicted from a tab, further evicted packets will be discarded.", e);
+				_spillFailed = true;
+			}
+			_btnOpenEvictedPackets.setDisable(_evictedPackets == null);
 		}
-		*/
+		
+		// wrappers of evicted packets must remain readable while the table processes their removal
+		_tablePackets.evict(end);
+		_filterIndex.evict(end);
+		_memoryPackets.evict(count);
+		_memoryPacketCount.set(_memoryPackets.size());
+		_evictedPacketCount.set(_evictedPacketCount.get() + count);
+	}
+	
+	/**
+	 * Adds packets evicted from this tab so far to another tab. Packets are read in the background. If the other tab limits the amount of packets it keeps, only as
+	 * many newest evicted packets are read.
+	 * 
+	 * @param target a packet log tab
+	 */
+	public void loadEvictedPackets(PacketLogTabController target)
+	{
+		final PacketSpill evictedPackets = _evictedPackets;
+		if (evictedPackets == null)
+			return;
+		
+		final int count = evictedPackets.size();
+		final int maxPackets = target._retentionPolicy.getMaxPackets();
+		final int from = maxPackets > 0 ? Math.max(0, count - maxPackets) : 0;
+		L2ThreadPool.submitLongRunning(() -> {
+			final List<PacketLogEntry> packets = new ArrayList<>(EVICTED_PACKET_BATCH_SIZE);
+			try
+			{
+				evictedPackets.read(from, count - from, packet -> {
+					packets.add(new PacketLogEntry(packet));
+					if (packets.size() < EVICTED_PACKET_BATCH_SIZE)
+						return;
+					
+					final List<PacketLogEntry> batch = new ArrayList<>(packets);
+					Platform.runLater(() -> target.addPackets(batch));
+					packets.clear();
+				});
+			}
+			catch (final IOException e)
+			{
+				// tab may have been closed meanwhile
+				LOG.error("Cannot read packets evicted from a tab.", e);
+			}
+			if (!packets.isEmpty())
+				Platform.runLater(() -> target.addPackets(packets));
+		});
+	}
+	
+	/** Releases all packets held by this tab. Packets that are added afterwards will be ignored. */
+	public void dispose()
+	{
+		_disposed = true;
+		_tablePackets.clear();
+		_filterIndex.clear();
+		_memoryPackets.close();
+		_memoryPacketCount.set(0);
+		if (_evictedPackets != null)
+			_evictedPackets.close();
+		_evictedPackets = null;
 	}
 }
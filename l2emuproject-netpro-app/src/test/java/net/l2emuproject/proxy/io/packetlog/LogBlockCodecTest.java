@@ -0,0 +1,130 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.io.packetlog;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+
+import org.junit.Test;
+
+import net.l2emuproject.proxy.io.NewIOHelper;
+import net.l2emuproject.proxy.io.packetlog.LogBlockCodec.LogBlockCompressor;
+
+/**
+ * Verifies that blocks compressed by each {@link LogBlockCodec} are decompressed to the original content, even if a single compressor writes several blocks in a
+ * row, as it does for a log file.
+ * 
+ * @author _dev_
+ */
+public class LogBlockCodecTest
+{
+	@Test
+	public void testDeflate() throws Exception
+	{
+		testRoundTrip(DeflateBlockCodec.INSTANCE);
+	}
+	
+	@Test
+	public void testLz() throws Exception
+	{
+		testRoundTrip(LzBlockCodec.INSTANCE);
+	}
+	
+	@Test
+	public void testValueOf()
+	{
+		assertThat(LogBlockCodec.valueOf(DeflateBlockCodec.COMPRESSION_TYPE), is(sameInstance((LogBlockCodec)DeflateBlockCodec.INSTANCE)));
+		assertThat(LogBlockCodec.valueOf(LzBlockCodec.COMPRESSION_TYPE), is(sameInstance((LogBlockCodec)LzBlockCodec.INSTANCE)));
+		assertThat(LogBlockCodec.valueOf(0), is(nullValue()));
+	}
+	
+	@Test(expected = DataFormatException.class)
+	public void testLzBlockSize() throws Exception
+	{
+		// a corrupt block must not cause a huge allocation
+		final byte[] block = new byte[8];
+		LzBlockCodec.writeInt(block, 0, Integer.MAX_VALUE);
+		LzBlockCodec.INSTANCE.decompress(block, block.length, new byte[16]);
+	}
+	
+	private static void testRoundTrip(LogBlockCodec codec) throws Exception
+	{
+		final byte[][] blocks = { new byte[0], { 42 }, { 1, 2, 3, 4, 5 }, incompressible(1 << 16), repetitive(1 << 16), repetitive(LogBlockCodec.MAX_BLOCK_SIZE), incompressible(LogBlockCodec.MAX_BLOCK_SIZE),
+				incompressible(300) };
+		final int[] offsets = new int[blocks.length], lengths = new int[blocks.length];
+		
+		final Path file = Files.createTempFile("netpro-codec", ".tmp");
+		try
+		{
+			final LogBlockCompressor compressor = codec.newCompressor();
+			try (final NewIOHelper out = new NewIOHelper(Files.newByteChannel(file, StandardOpenOption.WRITE)))
+			{
+				int offset = 0;
+				for (int i = 0; i < blocks.length; ++i)
+				{
+					offsets[i] = offset;
+					lengths[i] = compressor.compress(blocks[i], blocks[i].length, out);
+					out.flush();
+					offset += lengths[i];
+					out.setPositionInChannel(offset);
+				}
+			}
+			finally
+			{
+				compressor.end();
+			}
+			
+			final byte[] written = Files.readAllBytes(file);
+			for (int i = 0; i < blocks.length; ++i)
+			{
+				final byte[] compressed = Arrays.copyOfRange(written, offsets[i], offsets[i] + lengths[i]);
+				// a tiny buffer must be replaced as needed
+				final ByteBuffer buf = codec.decompress(compressed, compressed.length, new byte[16]);
+				assertThat("Block " + i, Arrays.copyOfRange(buf.array(), buf.position(), buf.limit()), is(equalTo(blocks[i])));
+			}
+			for (final int length : lengths)
+				assertThat(length <= LogBlockCodec.MAX_COMPRESSED_BLOCK_SIZE, is(true));
+			assertThat(lengths[blocks.length - 3] < LogBlockCodec.MAX_BLOCK_SIZE / 100, is(true));
+		}
+		finally
+		{
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	private static byte[] incompressible(int length)
+	{
+		final byte[] block = new byte[length];
+		new Random(length).nextBytes(block);
+		return block;
+	}
+	
+	private static byte[] repetitive(int length)
+	{
+		final byte[] block = new byte[length];
+		for (int i = 0; i < length; ++i)
+			block[i] = (byte)(i % 7 == 0 ? 0xFF : i % 3);
+		return block;
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.io.packetlog;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Verifies that a {@link LogBlockIndex} finds the block to start reading at, by packet index or by reception time, even if packets within a log are not
+ * ordered by their reception time.
+ * 
+ * @author _dev_
+ */
+public class LogBlockIndexTest
+{
+	@Test
+	public void testFindByPacket()
+	{
+		final LogBlockIndex index = new LogBlockIndex(0);
+		// 100 packets per block, more blocks than the initial capacity
+		for (int i = 0; i < 100; ++i)
+			index.add(1_000L * i, 10 + 100 * i, i, i);
+		
+		assertThat(index.size(), is(100));
+		assertThat(index.findByPacket(0), is(-1));
+		assertThat(index.findByPacket(9), is(-1));
+		for (int i = 0; i < 100; ++i)
+		{
+			assertThat(index.findByPacket(10 + 100 * i), is(i));
+			assertThat(index.findByPacket(10 + 100 * i + 99), is(i));
+			assertThat(index.getOffset(i), is(1_000L * i));
+			assertThat(index.getFirstPacket(i), is(10 + 100 * i));
+		}
+		assertThat(index.findByPacket(Integer.MAX_VALUE), is(99));
+	}
+	
+	@Test
+	public void testFindByTime()
+	{
+		final LogBlockIndex index = new LogBlockIndex(16);
+		// block minimum / latest time; block 2 holds a packet received before any packet of block 1
+		index.add(0L, 0, 100L, 200L);
+		index.add(10L, 10, 150L, 300L);
+		index.add(20L, 20, 120L, 250L);
+		index.add(30L, 30, 400L, 500L);
+		
+		// the latest time is cumulative
+		assertThat(index.getLastTime(2), is(300L));
+		assertThat(index.findByTime(0L), is(0));
+		assertThat(index.findByTime(200L), is(0));
+		assertThat(index.findByTime(201L), is(1));
+		assertThat(index.findByTime(260L), is(1));
+		assertThat(index.findByTime(300L), is(1));
+		assertThat(index.findByTime(301L), is(3));
+		assertThat(index.findByTime(500L), is(3));
+		assertThat(index.findByTime(501L), is(-1));
+		
+		assertThat(new LogBlockIndex(16).findByTime(0L), is(-1));
+	}
+	
+	@Test
+	public void testRemainingMinTime()
+	{
+		final LogBlockIndex index = new LogBlockIndex(16);
+		index.add(0L, 0, 100L, 200L);
+		index.add(10L, 10, 150L, 300L);
+		index.add(20L, 20, 120L, 250L);
+		
+		assertThat(index.getMinTime(1), is(150L));
+		assertThat(index.getRemainingMinTime(0), is(100L));
+		assertThat(index.getRemainingMinTime(1), is(120L));
+		assertThat(index.getRemainingMinTime(2), is(120L));
+		
+		// a new block invalidates earlier results
+		index.add(30L, 30, 50L, 400L);
+		assertThat(index.getRemainingMinTime(0), is(50L));
+		assertThat(index.getRemainingMinTime(3), is(50L));
+	}
+}
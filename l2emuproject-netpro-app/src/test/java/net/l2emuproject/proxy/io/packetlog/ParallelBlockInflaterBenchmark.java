@@ -0,0 +1,170 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.io.packetlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import net.l2emuproject.proxy.io.NewIOHelper;
+import net.l2emuproject.proxy.io.packetlog.LogBlockCodec.LogBlockCompressor;
+
+/**
+ * Measures how fast a {@link ParallelBlockInflater} reads a large synthetic packet log, depending on how many blocks it may keep in flight.<BR>
+ * <BR>
+ * A read-ahead of a single block inflates one block at a time, which is how a sequential reader works; the default read-ahead keeps all fork-join workers busy.
+ * This is not a unit test. Run it with the test classpath:
+ * 
+ * <PRE>
+ * java -cp ... net.l2emuproject.proxy.io.packetlog.ParallelBlockInflaterBenchmark [uncompressed MiB] [codec] [rounds]
+ * </PRE>
+ * 
+ * The defaults are 2048 MiB of packet data, deflate (1) and 3 rounds. The log is written to a temporary file, which is deleted afterwards.
+ * 
+ * @author _dev_
+ */
+public class ParallelBlockInflaterBenchmark
+{
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args uncompressed size in MiB, compression type and amount of measured rounds
+	 * @throws IOException if the temporary log cannot be written or read
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		final long size = (args.length > 0 ? Long.parseLong(args[0]) : 2_048L) << 20;
+		final LogBlockCodec codec = LogBlockCodec.valueOf(args.length > 1 ? Integer.parseInt(args[1]) : DeflateBlockCodec.COMPRESSION_TYPE);
+		final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		
+		final Path file = Files.createTempFile("netpro-benchmark", ".tmp");
+		try
+		{
+			long start = System.nanoTime();
+			final long compressed = writeLog(file, codec, size);
+			System.out.printf("Wrote %d MiB of packets as %d MiB in %d ms, %d CPUs, fork-join parallelism %d%n", size >> 20, compressed >> 20,
+					(System.nanoTime() - start) / 1_000_000, Runtime.getRuntime().availableProcessors(), ForkJoinPool.commonPool().getParallelism());
+			
+			final int defaultReadAhead = ParallelBlockInflater.getDefaultReadAhead();
+			final int[] readAheads = IntStream.of(1, 2, defaultReadAhead >> 1, defaultReadAhead, defaultReadAhead << 1).filter(i -> i > 0).distinct().sorted().toArray();
+			// the first pass warms up the JIT and the page cache
+			for (final int readAhead : readAheads)
+				readLog(file, codec, readAhead);
+			for (int round = 0; round < rounds; ++round)
+			{
+				for (final int readAhead : readAheads)
+				{
+					start = System.nanoTime();
+					final long packets = readLog(file, codec, readAhead);
+					final long elapsed = System.nanoTime() - start;
+					System.out.printf("Round %d, read-ahead %2d%s: %d packets in %d ms, %.1f MiB/s%n", round + 1, readAhead, readAhead == defaultReadAhead ? " (default)" : "",
+							packets, elapsed / 1_000_000, (size / (double)(1 << 20)) / (elapsed / 1e9));
+				}
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	private static long writeLog(Path file, LogBlockCodec codec, long size) throws IOException
+	{
+		final Random rnd = new Random(0);
+		final ByteBuffer block = ByteBuffer.allocate(LogBlockCodec.MAX_BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		final LogBlockCompressor compressor = codec.newCompressor();
+		try (final NewIOHelper out = new NewIOHelper(Files.newByteChannel(file, StandardOpenOption.WRITE)))
+		{
+			long time = 1_400_000_000_000L, written = 0, position = 0;
+			while (written < size)
+			{
+				final byte[] body = packet(rnd);
+				time += rnd.nextInt(20);
+				block.put((byte)(rnd.nextInt(3) == 0 ? 1 : 0)).putChar((char)body.length).put(body).putLong(time).put((byte)0);
+				written += body.length;
+				if (block.position() <= (block.capacity() >> 1) && written < size)
+					continue;
+				
+				// same layout as written by HistoricalLogIOThread
+				out.writeInt(0);
+				final int length = compressor.compress(block.array(), block.position(), out);
+				block.clear();
+				out.flush();
+				out.setPositionInChannel(position);
+				out.writeInt(length).flush();
+				position += 4 + length;
+				out.setPositionInChannel(position);
+			}
+			out.writeInt(-1).flush();
+			return position;
+		}
+		finally
+		{
+			compressor.end();
+		}
+	}
+	
+	private static byte[] packet(Random rnd)
+	{
+		// mostly small packets with an opcode, small integers, object IDs, coordinates and the occasional name
+		final int kind = rnd.nextInt(100);
+		final int length = kind < 70 ? 3 + rnd.nextInt(40) : kind < 95 ? 40 + rnd.nextInt(400) : 400 + rnd.nextInt(8_000);
+		final ByteBuffer buf = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		buf.put((byte)(kind < 70 ? rnd.nextInt(16) : rnd.nextInt(256)));
+		while (buf.remaining() >= 4)
+		{
+			switch (rnd.nextInt(5))
+			{
+				case 0:
+					buf.putInt(rnd.nextInt(16));
+					break;
+				case 1:
+					buf.putInt(0x10000000 + rnd.nextInt(1 << 12));
+					break;
+				case 2:
+					buf.putInt(80_000 + rnd.nextInt(2_000));
+					break;
+				case 3:
+					final byte[] name = ("Player" + rnd.nextInt(100)).getBytes(StandardCharsets.UTF_16LE);
+					if (buf.remaining() >= name.length + 2)
+						buf.put(name).putChar('\0');
+					break;
+				default:
+					buf.putInt(rnd.nextInt());
+					break;
+			}
+		}
+		return buf.array();
+	}
+	
+	private static long readLog(Path file, LogBlockCodec codec, int readAhead) throws IOException
+	{
+		long packets = 0;
+		try (final NewIOHelper in = new NewIOHelper(Files.newByteChannel(file, StandardOpenOption.READ)); final ParallelBlockInflater inflater = new ParallelBlockInflater(in, codec, file.toString(), readAhead))
+		{
+			for (LogFilePacket[] block; (block = inflater.nextBlock()) != null;)
+				packets += block.length;
+		}
+		return packets;
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.ui.javafx.packet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import org.junit.Test;
+
+import net.l2emuproject.proxy.network.EndpointType;
+import net.l2emuproject.proxy.network.ServiceType;
+import net.l2emuproject.proxy.ui.ReceivedPacket;
+
+/**
+ * Verifies that a {@link PacketFilterIndex} reports exactly the visible packets that remain after packets are added, filters change and oldest packets are
+ * evicted.
+ * 
+ * @author _dev_
+ */
+public class PacketFilterIndexTest
+{
+	private static final int TEMPLATES = 7;
+	
+	@Test
+	public void testAdd()
+	{
+		final PacketFilterIndex index = new PacketFilterIndex();
+		final IntPredicate hidden = t -> t == 3;
+		for (int i = 0; i < 1_000; ++i)
+			assertThat(index.add(i, i % TEMPLATES, hidden), is(i % TEMPLATES != 3));
+		
+		assertVisible(index, 0, 1_000, hidden);
+	}
+	
+	@Test
+	public void testUpdate()
+	{
+		final PacketFilterIndex index = new PacketFilterIndex();
+		for (int i = 0; i < 1_000; ++i)
+			index.add(i, i % TEMPLATES, t -> t == 3);
+		
+		final IntPredicate hidden = t -> t == 4 || t == 5;
+		index.update(hidden);
+		assertVisible(index, 0, 1_000, hidden);
+	}
+	
+	@Test
+	public void testEvict()
+	{
+		final Random rnd = new Random(1);
+		final PacketFilterIndex index = new PacketFilterIndex();
+		final IntPredicate hidden = t -> t == 3;
+		int first = 0;
+		for (int i = 0; i < 10_000; ++i)
+		{
+			index.add(i, i % TEMPLATES, hidden);
+			if (rnd.nextInt(50) == 0)
+			{
+				first += rnd.nextInt((i + 1 - first) / 4 + 1);
+				index.evict(first);
+			}
+			assertVisible(index, first, i + 1, hidden);
+		}
+		
+		final IntPredicate updated = t -> t == 0;
+		index.update(updated);
+		assertVisible(index, first, 10_000, updated);
+	}
+	
+	@Test
+	public void testEvictAll()
+	{
+		final PacketFilterIndex index = new PacketFilterIndex();
+		final IntPredicate hidden = t -> t == 3;
+		for (int i = 0; i < 1_000; ++i)
+			index.add(i, i % TEMPLATES, hidden);
+		
+		index.evict(1_000);
+		assertThat(index.getVisible().isEmpty(), is(true));
+		
+		// templates without packets are evaluated anew
+		final IntPredicate updated = t -> t == 5;
+		for (int i = 1_000; i < 2_000; ++i)
+			assertThat(index.add(i, i % TEMPLATES, updated), is(i % TEMPLATES != 5));
+		assertVisible(index, 1_000, 2_000, updated);
+	}
+	
+	@Test
+	public void testEvictAllThenUpdate()
+	{
+		final PacketFilterIndex index = new PacketFilterIndex();
+		for (int i = 0; i < 1_000; ++i)
+			index.add(i, i % TEMPLATES, t -> t == 3);
+		
+		// the changed filter must apply to templates that had no packets when it changed
+		index.evict(1_000);
+		final IntPredicate hidden = t -> t == 1;
+		index.update(hidden);
+		assertThat(index.getVisible().isEmpty(), is(true));
+		
+		for (int i = 1_000; i < 2_000; ++i)
+			assertThat(index.add(i, i % TEMPLATES, hidden), is(i % TEMPLATES != 1));
+		assertVisible(index, 1_000, 2_000, hidden);
+	}
+	
+	@Test
+	public void testRebuild()
+	{
+		final PacketStore store = new PacketStore(null);
+		try
+		{
+			for (int i = 0; i < 500; ++i)
+				store.append(new ReceivedPacket(ServiceType.GAME, EndpointType.SERVER, new byte[] { (byte)i }, i), i % TEMPLATES);
+			store.evict(100);
+			
+			final PacketFilterIndex index = new PacketFilterIndex();
+			index.add(0, 0, t -> false);
+			index.rebuild(store);
+			assertThat(index.getVisible().isEmpty(), is(true));
+			
+			final IntPredicate hidden = t -> t == 6;
+			index.update(hidden);
+			assertVisible(index, 100, 500, hidden);
+		}
+		finally
+		{
+			store.close();
+		}
+	}
+	
+	@Test
+	public void testClear()
+	{
+		final PacketFilterIndex index = new PacketFilterIndex();
+		for (int i = 0; i < 100; ++i)
+			index.add(i, i % TEMPLATES, t -> true);
+		
+		index.clear();
+		assertThat(index.getVisible().isEmpty(), is(true));
+		// templates are evaluated anew and the set starts at the next added packet
+		assertThat(index.add(1_000, 0, t -> false), is(true));
+		assertThat(index.getBase(), is(1_000 & ~63));
+		assertVisible(index, 1_000, 1_001, t -> false);
+	}
+	
+	private static void assertVisible(PacketFilterIndex index, int first, int end, IntPredicate hidden)
+	{
+		final int base = index.getBase();
+		assertThat(base & 63, is(0));
+		assertThat(base <= first, is(true));
+		
+		final BitSet expected = new BitSet();
+		for (int i = first; i < end; ++i)
+			if (!hidden.test(i % TEMPLATES))
+				expected.set(i - base);
+		assertThat(index.getVisible(), is(equalTo(expected)));
+	}
+}
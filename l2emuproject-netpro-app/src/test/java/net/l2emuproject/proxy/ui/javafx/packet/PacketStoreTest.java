@@ -0,0 +1,189 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.ui.javafx.packet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.l2emuproject.proxy.network.EndpointType;
+import net.l2emuproject.proxy.network.ServiceType;
+import net.l2emuproject.proxy.ui.ReceivedPacket;
+
+/**
+ * Verifies that a {@link PacketStore} keeps packets intact while its index ring grows and wraps around, and while oldest packets are evicted.
+ * 
+ * @author _dev_
+ */
+public class PacketStoreTest
+{
+	private PacketStore _store;
+	
+	@Before
+	public void setUp()
+	{
+		_store = new PacketStore(null);
+	}
+	
+	@After
+	public void tearDown()
+	{
+		_store.close();
+	}
+	
+	@Test
+	public void testAppend()
+	{
+		for (int i = 0; i < 5_000; ++i)
+			assertThat(_store.append(packet(i, 1 + i % 100), i % 3), is(i));
+		
+		assertThat(_store.size(), is(5_000));
+		assertThat(_store.getFirstIndex(), is(0));
+		assertThat(_store.getEndIndex(), is(5_000));
+		long bodyBytes = 0;
+		for (int i = 0; i < 5_000; ++i)
+		{
+			assertPacket(i, 1 + i % 100);
+			assertThat(_store.getTemplateID(i), is(i % 3));
+			bodyBytes += 1 + i % 100;
+		}
+		assertThat(_store.getBodyBytes(), is(bodyBytes));
+	}
+	
+	@Test
+	public void testEvict()
+	{
+		for (int i = 0; i < 100; ++i)
+			_store.append(packet(i, 10), 0);
+		
+		_store.evict(30);
+		assertThat(_store.size(), is(70));
+		assertThat(_store.getFirstIndex(), is(30));
+		assertThat(_store.getEndIndex(), is(100));
+		assertThat(_store.getBodyBytes(), is(700L));
+		assertPacket(30, 10);
+		assertPacket(99, 10);
+		try
+		{
+			_store.getBody(29);
+			fail("An evicted packet is still readable");
+		}
+		catch (final IndexOutOfBoundsException e)
+		{
+			// expected
+		}
+		
+		_store.evict(70);
+		assertThat(_store.size(), is(0));
+		assertThat(_store.getBodyBytes(), is(0L));
+		assertThat(_store.append(packet(100, 10), 0), is(100));
+	}
+	
+	@Test
+	public void testRingWrapAround()
+	{
+		// the ring is never full, so appends and evictions keep wrapping around the same capacity
+		final Random rnd = new Random(1);
+		final Deque<Integer> lengths = new ArrayDeque<>();
+		for (int i = 0; i < 20_000; ++i)
+		{
+			final int length = 1 + rnd.nextInt(200);
+			_store.append(packet(i, length), 0);
+			lengths.addLast(length);
+			if (_store.size() > 700)
+			{
+				final int count = rnd.nextInt(200);
+				_store.evict(count);
+				for (int j = 0; j < count; ++j)
+					lengths.removeFirst();
+			}
+		}
+		
+		int index = _store.getFirstIndex();
+		for (final int length : lengths)
+			assertPacket(index++, length);
+		assertThat(index, is(_store.getEndIndex()));
+	}
+	
+	@Test
+	public void testSegmentReuse()
+	{
+		// bodies span several segments, so segments that only hold evicted packets are reused
+		final Deque<Integer> lengths = new ArrayDeque<>();
+		for (int i = 0; i < 3_000; ++i)
+		{
+			final int length = 40_000 + i % 20_000;
+			_store.append(packet(i, length), 0);
+			lengths.addLast(length);
+			if (_store.size() > 1_000)
+			{
+				_store.evict(100);
+				for (int j = 0; j < 100; ++j)
+					lengths.removeFirst();
+			}
+		}
+		
+		long bodyBytes = 0;
+		int index = _store.getFirstIndex();
+		for (final int length : lengths)
+		{
+			assertPacket(index++, length);
+			bodyBytes += length;
+		}
+		assertThat(_store.getBodyBytes(), is(bodyBytes));
+	}
+	
+	@Test
+	public void testClear()
+	{
+		for (int i = 0; i < 100; ++i)
+			_store.append(packet(i, 10), 0);
+		
+		_store.clear();
+		assertThat(_store.size(), is(0));
+		assertThat(_store.getBodyBytes(), is(0L));
+		// indices are never reused
+		assertThat(_store.getFirstIndex(), is(100));
+		assertThat(_store.append(packet(100, 10), 0), is(100));
+		assertPacket(100, 10);
+	}
+	
+	private void assertPacket(int index, int length)
+	{
+		final ReceivedPacket expected = packet(index, length);
+		final ReceivedPacket actual = _store.getPacket(index);
+		assertThat(actual.getService(), is(expected.getService()));
+		assertThat(actual.getEndpoint(), is(expected.getEndpoint()));
+		assertThat(actual.getReceived(), is(expected.getReceived()));
+		assertThat(_store.getBodyLength(index), is(length));
+		assertThat(actual.getBody(), is(equalTo(expected.getBody())));
+	}
+	
+	private static ReceivedPacket packet(int index, int length)
+	{
+		final byte[] body = new byte[length];
+		for (int i = 0; i < length; ++i)
+			body[i] = (byte)(index + i);
+		return new ReceivedPacket(index % 4 < 2 ? ServiceType.LOGIN : ServiceType.GAME, (index & 1) == 0 ? EndpointType.CLIENT : EndpointType.SERVER, body, 1_000L + index);
+	}
+}
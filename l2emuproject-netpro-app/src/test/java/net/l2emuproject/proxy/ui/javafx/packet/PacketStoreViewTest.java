@@ -0,0 +1,252 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.ui.javafx.packet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javafx.collections.ListChangeListener;
+
+import net.l2emuproject.proxy.network.EndpointType;
+import net.l2emuproject.proxy.network.ServiceType;
+import net.l2emuproject.proxy.ui.ReceivedPacket;
+
+/**
+ * Verifies that a {@link PacketStoreView} finds the n-th selected packet across rank blocks, keeps its sort order and reports exactly the evicted packets as
+ * removed.
+ * 
+ * @author _dev_
+ */
+public class PacketStoreViewTest
+{
+	private static final Comparator<PacketLogEntry> DESCENDING = (e1, e2) -> Integer.compare(e2.getIndex(), e1.getIndex());
+	
+	private PacketStore _store;
+	private PacketStoreView _view;
+	private List<Integer> _removed;
+	private int _added;
+	
+	@Before
+	public void setUp()
+	{
+		_store = new PacketStore(null);
+		_view = new PacketStoreView(_store);
+		_removed = new ArrayList<>();
+		_added = 0;
+		_view.addListener((ListChangeListener<PacketLogEntry>)c ->
+		{
+			while (c.next())
+			{
+				for (final PacketLogEntry entry : c.getRemoved())
+					_removed.add(entry.getIndex());
+				if (c.wasAdded())
+					_added += c.getAddedSize();
+			}
+		});
+	}
+	
+	@After
+	public void tearDown()
+	{
+		_store.close();
+	}
+	
+	@Test
+	public void testAppend()
+	{
+		// a sparse part, a dense part and a gap wider than a rank block
+		final List<Integer> expected = new ArrayList<>();
+		final Random rnd = new Random(1);
+		appendPackets(30_000);
+		for (int i = 0; i < 30_000; ++i)
+			if (i < 10_000 ? rnd.nextInt(3) == 0 : i < 20_000 || i >= 25_000)
+				expected.add(i);
+		appendToView(expected, 1_000);
+		
+		assertView(expected);
+		assertThat(_added, is(expected.size()));
+		assertThat(_removed.isEmpty(), is(true));
+	}
+	
+	@Test
+	public void testSetAll()
+	{
+		appendPackets(10_000);
+		final BitSet packets = new BitSet();
+		final List<Integer> expected = new ArrayList<>();
+		for (int i = 128; i < 10_000; i += 5)
+		{
+			packets.set(i - 128);
+			expected.add(i);
+		}
+		_view.setAll(packets, 128);
+		assertView(expected);
+		
+		// packets are appended after the given ones
+		appendPackets(100);
+		final List<Integer> appended = new ArrayList<>();
+		for (int i = 10_000; i < 10_100; i += 2)
+			appended.add(i);
+		appendToView(appended, appended.size());
+		expected.addAll(appended);
+		assertView(expected);
+	}
+	
+	@Test
+	public void testEvict()
+	{
+		final Random rnd = new Random(1);
+		final List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 20_000; ++i)
+		{
+			appendPackets(1);
+			if (i % 3 != 0)
+			{
+				appendToView(i);
+				expected.add(i);
+			}
+			
+			if (rnd.nextInt(200) == 0)
+			{
+				final int first = _store.getFirstIndex() + rnd.nextInt(_store.size() / 2 + 1);
+				evict(first, expected);
+			}
+		}
+		assertView(expected);
+	}
+	
+	@Test
+	public void testEvictSorted()
+	{
+		final Random rnd = new Random(1);
+		final List<Integer> expected = new ArrayList<>();
+		appendPackets(10_000);
+		for (int i = 0; i < 10_000; i += 2)
+			expected.add(i);
+		appendToView(expected, expected.size());
+		_view.sort(DESCENDING);
+		
+		for (int i = 10_000; i < 20_000; ++i)
+		{
+			appendPackets(1);
+			if (i % 2 == 0)
+			{
+				_view.insert(new int[] { i }, 1, DESCENDING);
+				expected.add(i);
+			}
+			
+			if (rnd.nextInt(200) == 0)
+			{
+				final int first = _store.getFirstIndex() + rnd.nextInt(_store.size() / 2 + 1);
+				evict(first, expected);
+			}
+		}
+		
+		final List<Integer> descending = new ArrayList<>(expected);
+		descending.sort(Comparator.reverseOrder());
+		assertView(descending);
+		
+		_view.sort(null);
+		assertView(expected);
+	}
+	
+	@Test
+	public void testClear()
+	{
+		appendPackets(1_000);
+		final List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 1_000; ++i)
+			expected.add(i);
+		appendToView(expected, expected.size());
+		
+		_view.clear();
+		assertThat(_view.size(), is(0));
+		assertThat(_removed.size(), is(1_000));
+		
+		// the view continues where the store does, long after its first packet
+		_store.evict(900);
+		appendPackets(5_000);
+		expected.clear();
+		for (int i = 1_000; i < 6_000; ++i)
+			expected.add(i);
+		appendToView(expected, expected.size());
+		assertView(expected);
+	}
+	
+	private void appendPackets(int count)
+	{
+		for (int i = 0; i < count; ++i)
+		{
+			final int index = _store.getEndIndex();
+			_store.append(new ReceivedPacket(ServiceType.GAME, (index & 1) == 0 ? EndpointType.CLIENT : EndpointType.SERVER, new byte[] { (byte)index }, index), 0);
+		}
+	}
+	
+	private void appendToView(int index)
+	{
+		_view.append(new int[] { index }, 1);
+	}
+	
+	private void appendToView(List<Integer> indices, int chunk)
+	{
+		final int[] buffer = new int[chunk];
+		int count = 0;
+		for (final int index : indices)
+		{
+			buffer[count++] = index;
+			if (count == chunk)
+			{
+				_view.append(buffer, count);
+				count = 0;
+			}
+		}
+		_view.append(buffer, count);
+	}
+	
+	private void evict(int first, List<Integer> expected)
+	{
+		_removed.clear();
+		_view.evict(first);
+		_store.evict(first - _store.getFirstIndex());
+		
+		final List<Integer> evicted = new ArrayList<>();
+		while (!expected.isEmpty() && expected.get(0) < first)
+			evicted.add(expected.remove(0));
+		_removed.sort(null);
+		assertThat(_removed, is(equalTo(evicted)));
+		assertThat(_view.size(), is(expected.size()));
+	}
+	
+	private void assertView(List<Integer> expected)
+	{
+		assertThat(_view.size(), is(expected.size()));
+		for (int i = 0; i < expected.size(); ++i)
+		{
+			assertThat(_view.getStoreIndex(i), is(expected.get(i)));
+			assertThat(_view.get(i).getIndex(), is(expected.get(i)));
+		}
+	}
+}
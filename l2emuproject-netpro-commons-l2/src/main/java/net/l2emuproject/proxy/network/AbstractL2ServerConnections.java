@@ -34,9 +34,16 @@ import javolution.util.FastMap;
  */
 public abstract class AbstractL2ServerConnections extends ProxyConnections
 {
+	/** System propery used to set the maximal amount of simultaneously pending outgoing connections */
+	public static final String PROPERTY_MAX_PENDING_CONNECTIONS = "MaxPendingConnections";
+	/** System propery used to set the outgoing connection timeout (in milliseconds) */
+	public static final String PROPERTY_CONNECT_TIMEOUT = "ConnectTimeout";
+	
 	static final byte[] SILENT_FAIL = { 0x01, 23 };
 	// linked to retain priority
 	private final FastMap<AbstractL2ClientProxy, ThreadWrapper> _clients;
+	private final int _maxPendingConnections;
+	private final int _connectTimeout;
 	
 	/**
 	 * Creates a L2 connection manager.
@@ -50,6 +57,9 @@ public abstract class AbstractL2ServerConnections extends ProxyConnections
 		super(config, packetHandler);
 		
 		_clients = new FastMap<AbstractL2ClientProxy, ThreadWrapper>().setShared(true);
+		_maxPendingConnections = Math.max(1, Integer.getInteger(getClass().getName() + "#" + PROPERTY_MAX_PENDING_CONNECTIONS, 10));
+		// five seconds, otherwise the server will most likely be unplayable anyway
+		_connectTimeout = Math.max(1, Integer.getInteger(getClass().getName() + "#" + PROPERTY_CONNECT_TIMEOUT, 5_000));
 	}
 	
 	/**
@@ -79,11 +89,10 @@ public abstract class AbstractL2ServerConnections extends ProxyConnections
 	 */
 	protected final <T extends AbstractL2ClientProxy> void connectProxy(final T client, InetSocketAddress address) throws TooManyPendingConnectionsException
 	{
-		if (getClients().size() > 9)
+		if (getClients().size() >= _maxPendingConnections)
 			throw new TooManyPendingConnectionsException(client);
 		
-		// five seconds, otherwise the server will most likely be unplayable anyway
-		final ThreadWrapper connector = connect(address, 5_000, () -> {
+		final ThreadWrapper connector = connect(address, _connectTimeout, () -> {
 			// force to throw exception to detect defects early
 			getClients().remove(client);
 			client.close(new ProxyRepeatedPacket(SILENT_FAIL));
@@ -16,30 +16,33 @@
 package net.l2emuproject.proxy.network.game;
 
 import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import net.l2emuproject.util.concurrent.L2ThreadPool;
 import net.l2emuproject.util.logging.L2Logger;
 
 /**
- * Tracks what game servers have been selected by which addresses to properly redirect newly connecting game clients.
+ * Tracks what game servers have been selected by which addresses to properly redirect newly connecting game clients.<BR>
+ * <BR>
+ * A single authorized session may be pending for each client address, so hand-offs of clients connecting from different addresses
+ * do not wait for each other.
  * 
  * @author savormix
  */
 public class L2SessionManager
 {
-	private final Lock _authorizedSessionLock;
-	private NewGameServerConnection _authorizedSession;
-	private ScheduledFuture<?> _sessionExpiryTask;
+	private static final L2Logger LOG = L2Logger.getLogger(L2SessionManager.class);
+	
+	private static final long SESSION_EXPIRY_SECONDS = 6;
+	
+	private final ConcurrentMap<InetAddress, PendingSession> _authorizedSessions;
 	
 	L2SessionManager()
 	{
-		_authorizedSessionLock = new ReentrantLock();
-		_authorizedSession = null;
-		_sessionExpiryTask = null;
+		_authorizedSessions = new ConcurrentHashMap<>();
 	}
 	
 	/**
@@ -50,68 +53,45 @@ public class L2SessionManager
 	 */
 	public NewGameServerConnection getAuthorizedSession(InetAddress clientAddress)
 	{
-		_authorizedSessionLock.lock();
-		try
-		{
-			if (_authorizedSession == null)
-				return null;
-			
-			if (!_authorizedSession.getAuthorizedClientAddress().equals(clientAddress))
-				return null;
-			
-			final NewGameServerConnection result = _authorizedSession;
-			_authorizedSession = null;
-			_sessionExpiryTask.cancel(true);
-			_sessionExpiryTask = null;
-			return result;
-		}
-		finally
-		{
-			_authorizedSessionLock.unlock();
-		}
+		final PendingSession pending = _authorizedSessions.remove(clientAddress);
+		if (pending == null)
+			return null;
+		
+		final ScheduledFuture<?> expiryTask = pending._expiryTask;
+		if (expiryTask != null)
+			expiryTask.cancel(false);
+		return pending._session;
 	}
 	
 	/**
 	 * Registers an authorized session for the taking.
 	 * 
 	 * @param authorizedSession authorized session details
-	 * @return {@code true} if registered, {@code false} if there is a pending authorized session
+	 * @return {@code true} if registered, {@code false} if there is a pending authorized session for the same client address
 	 */
 	public boolean setAuthorizedSession(NewGameServerConnection authorizedSession)
 	{
-		_authorizedSessionLock.lock();
-		try
-		{
-			if (_authorizedSession != null)
-				return false;
-			
-			_authorizedSession = authorizedSession;
-			_sessionExpiryTask = L2ThreadPool.schedule(() -> {
-				try
-				{
-					_authorizedSessionLock.lockInterruptibly();
-					try
-					{
-						L2Logger.getLogger(getClass()).info("Expired session: " + _authorizedSession);
-						_authorizedSession = null;
-						_sessionExpiryTask = null;
-					}
-					finally
-					{
-						_authorizedSessionLock.unlock();
-					}
-				}
-				catch (final InterruptedException e)
-				{
-					// cancelled while waiting to discard active session
-				}
-			}, 6, TimeUnit.SECONDS);
-			return true;
-		}
-		finally
-		{
-			_authorizedSessionLock.unlock();
-		}
+		final InetAddress clientAddress = authorizedSession.getAuthorizedClientAddress();
+		final PendingSession pending = new PendingSession(authorizedSession);
+		if (_authorizedSessions.putIfAbsent(clientAddress, pending) != null)
+			return false;
+		
+		// if the session is taken before this is assigned, the expiry task will simply find nothing to remove
+		pending._expiryTask = L2ThreadPool.schedule(() -> {
+			if (_authorizedSessions.remove(clientAddress, pending))
+				LOG.info("Expired session: " + authorizedSession);
+		}, SESSION_EXPIRY_SECONDS, TimeUnit.SECONDS);
+		return true;
+	}
+	
+	/**
+	 * Returns the amount of authorized sessions that have not yet been taken.
+	 * 
+	 * @return pending session count
+	 */
+	public int getPendingSessionCount()
+	{
+		return _authorizedSessions.size();
 	}
 	
 	/**
@@ -124,6 +104,17 @@ public class L2SessionManager
 		return SingletonHolder.INSTANCE;
 	}
 	
+	private static final class PendingSession
+	{
+		final NewGameServerConnection _session;
+		volatile ScheduledFuture<?> _expiryTask;
+		
+		PendingSession(NewGameServerConnection session)
+		{
+			_session = session;
+		}
+	}
+	
 	private static final class SingletonHolder
 	{
 		static final L2SessionManager INSTANCE = new L2SessionManager();
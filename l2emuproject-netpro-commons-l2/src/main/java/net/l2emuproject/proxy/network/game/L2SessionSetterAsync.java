@@ -25,7 +25,9 @@ import net.l2emuproject.util.concurrent.L2ThreadPool;
 import net.l2emuproject.util.logging.L2Logger;
 
 /**
- * If multiple clients are about to be handed over to game server(s), this ensures they are only allowed to initiate connection to NP once NP is ready to hand each of them over.
+ * If multiple clients are about to be handed over to game server(s), this ensures they are only allowed to initiate connection to NP once NP is ready to hand each of them over.<BR>
+ * <BR>
+ * Only clients connecting from the same address have to wait for each other.
  * 
  * @author _dev_
  */
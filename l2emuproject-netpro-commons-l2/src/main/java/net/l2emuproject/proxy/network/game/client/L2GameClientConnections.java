@@ -40,7 +40,7 @@ public final class L2GameClientConnections extends AbstractL2ClientConnections i
 			cfg.setAcceptPriority(ACCEPTOR_GAME);
 			cfg.setIOInterval(Integer.getInteger(L2GameClientConnections.class.getName() + "#" + PROPERTY_RW_INTERVAL, 3));
 			cfg.setIOPriority(NETWORK_IO_GAME);
-			cfg.setIOThreadCount(1);
+			cfg.setIOThreadCount(Math.max(1, Integer.getInteger(L2GameClientConnections.class.getName() + "#" + PROPERTY_RW_THREADS, 1)));
 			
 			try
 			{
@@ -25,7 +25,6 @@ import net.l2emuproject.proxy.network.AbstractL2ServerConnections;
 import net.l2emuproject.proxy.network.game.L2SessionManager;
 import net.l2emuproject.proxy.network.game.NewGameServerConnection;
 import net.l2emuproject.proxy.network.game.client.L2GameClient;
-import net.l2emuproject.proxy.network.game.client.L2GameClientConnections;
 
 /**
  * Manages outgoing connections to game servers initiated when a L2 client connects to this proxy on
@@ -42,9 +41,9 @@ public final class L2GameServerConnections extends AbstractL2ServerConnections i
 			final MMOConfig cfg = new MMOConfig("Server[L2]");
 			cfg.setConnectCompletionInterval(50);
 			cfg.setConnectPriority(CONNECTOR_GAME);
-			cfg.setIOInterval(Integer.getInteger(L2GameClientConnections.class.getName() + "#" + PROPERTY_RW_INTERVAL, 3));
+			cfg.setIOInterval(Integer.getInteger(L2GameServerConnections.class.getName() + "#" + PROPERTY_RW_INTERVAL, 3));
 			cfg.setIOPriority(NETWORK_IO_GAME);
-			cfg.setIOThreadCount(1);
+			cfg.setIOThreadCount(Math.max(1, Integer.getInteger(L2GameServerConnections.class.getName() + "#" + PROPERTY_RW_THREADS, 1)));
 			
 			try
 			{
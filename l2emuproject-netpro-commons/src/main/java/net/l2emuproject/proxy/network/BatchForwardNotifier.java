@@ -0,0 +1,118 @@
+/*
+ * Copyright 2011-2018 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.network;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+import net.l2emuproject.network.mmocore.MMOLogger;
+import net.l2emuproject.proxy.network.listener.PacketListener;
+import net.l2emuproject.proxy.network.listener.PacketManipulator;
+import net.l2emuproject.util.concurrent.RunnableStatsManager;
+
+/**
+ * Notifies all packet manipulators and then all packet listeners about a single forwarded packet.<BR>
+ * <BR>
+ * Listener sets are iterated when this task is executed, so a single task is submitted per packet, regardless of how many listeners are registered. Each listener
+ * is isolated from failures of others, just as if it was notified by a dedicated task.
+ * 
+ * @author _dev_
+ */
+public class BatchForwardNotifier extends ForwardNotifier
+{
+	private static final MMOLogger LOG = new MMOLogger(BatchForwardNotifier.class, 1000);
+	
+	private final Proxy _recipient;
+	private final ByteBuffer _received;
+	private final SharedPacketBody _shared;
+	private final long _time;
+	private final Set<PacketListener> _listeners;
+	private final Iterable<PacketManipulator> _manipulators;
+	
+	/**
+	 * Constructs the notification task.
+	 * 
+	 * @param sender packet sender
+	 * @param recipient packet recipient
+	 * @param received received packet body [complete buffer] (can be {@code null}, if proxy injected this packet)
+	 * @param sent sent packet body (can be {@code null}, if proxy withheld this packet)
+	 * @param time packet arrival timestamp
+	 * @param listeners packet listeners to be notified
+	 * @param manipulators packet manipulators to be notified
+	 */
+	public BatchForwardNotifier(Proxy sender, Proxy recipient, ByteBuffer received, SharedPacketBody sent, long time, Set<PacketListener> listeners, Iterable<PacketManipulator> manipulators)
+	{
+		super(sender, sent != null ? sent.getBuffer() : null);
+		
+		_recipient = recipient;
+		_received = received;
+		_shared = sent;
+		_time = time;
+		_listeners = listeners;
+		_manipulators = manipulators;
+	}
+	
+	@Override
+	public void run()
+	{
+		final Proxy sender = getSender();
+		final ByteBuffer sent = getSent();
+		for (final PacketManipulator pm : _manipulators)
+		{
+			if (_received != null)
+				_received.clear();
+			if (sent != null)
+				sent.clear();
+			
+			try
+			{
+				final long start = System.nanoTime();
+				pm.packetForwarded(sender, _recipient, _received, sent);
+				final long end = System.nanoTime();
+				RunnableStatsManager.handleStats(pm.getClass(), "packetForwarded(Proxy, Proxy, ByteBuffer, ByteBuffer)", end - start,
+						ForwardedNotificationExecutor.SINGLE_SEQUENTIAL_LISTENER_WARNING_THRESHOLD);
+			}
+			catch (RuntimeException e)
+			{
+				LOG.error("Problematic packet manipulator: " + pm.getName(), e);
+			}
+		}
+		
+		if (_shared == null)
+			return;
+		
+		final boolean client = sender.getType().isClient();
+		for (final PacketListener pl : _listeners)
+		{
+			sent.clear();
+			
+			try
+			{
+				final long start = System.nanoTime();
+				if (client)
+					pl.onClientPacket(sender, sender.getTarget(), _shared, _time);
+				else
+					pl.onServerPacket(sender, sender.getTarget(), _shared, _time);
+				final long end = System.nanoTime();
+				RunnableStatsManager.handleStats(pl.getClass(), "onPacket(Proxy, Proxy, ByteBuffer, long)", end - start, ForwardedNotificationExecutor.SINGLE_SEQUENTIAL_LISTENER_WARNING_THRESHOLD);
+			}
+			catch (RuntimeException e)
+			{
+				LOG.error("Problematic packet listener: " + pl.getClass().getName(), e);
+			}
+		}
+	}
+}
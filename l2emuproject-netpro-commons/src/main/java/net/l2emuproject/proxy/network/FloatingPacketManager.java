@@ -110,7 +110,9 @@ public class FloatingPacketManager
 		if (!pack.isLossForced()) // check whether to forward or not
 		{
 			ByteBuffer body = pack.getForwardedBody(); // retrieve possibly changed body
-			recipient.sendPacket(new ProxyRepeatedPacket(body));
+			final byte[] unmodified = pack.getUnmodifiedBody();
+			final ProxyRepeatedPacket forwarded = unmodified != null ? new ProxyRepeatedPacket(unmodified) : new ProxyRepeatedPacket(body); // do not copy an untouched body
+			recipient.sendPacket(forwarded.setReceptionNanoTime(pack.getReceptionNanoTime()));
 			// make checksum visible to notifications
 			if (key.___supportsAheadOfTimeIntervention() && protocol instanceof ILoginProtocolVersion && (body.capacity() & 3) == 0) // except legacy unenciphered
 			{
@@ -119,7 +121,7 @@ public class FloatingPacketManager
 				LoginCipher.injectChecksum(body, recipient.getType().isClient() || protocol.isOlderThan(MODERN) ? 8 : 16);
 				body = ByteBufferUtils.asReadOnly(body);
 			}
-			key.notifyPacketForwarded(pack.getReceivedBody(), body, pack.getReceptionTime()); // immutable buffers
+			key.notifyPacketForwarded(pack.getReceivedBody(), body, body == pack.getForwardedBody() ? unmodified : null, pack.getReceptionTime()); // immutable buffers
 		}
 		else
 			// not forwarded
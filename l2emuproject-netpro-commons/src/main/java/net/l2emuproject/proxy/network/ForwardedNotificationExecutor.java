@@ -19,33 +19,46 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RunnableScheduledFuture;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
 import net.l2emuproject.lang.NetProThreadPriority;
 import net.l2emuproject.proxy.network.Proxy.AsyncDisconnectionNotifier;
-import net.l2emuproject.proxy.network.listener.PacketManipulator;
-import net.l2emuproject.util.concurrent.RunnableStatsManager;
 import net.l2emuproject.util.logging.L2Logger;
 
 /**
  * This executor is designed to execute asynchronous packet arrival/departure notifications to packet listeners/manipulators, while retaining their order.<BR>
- * Built-in performance monitoring ensures that any anomalies can be quickly detected and taken care of.
+ * Built-in performance monitoring ensures that any anomalies can be quickly detected and taken care of.<BR>
+ * <BR>
+ * Tasks passed to {@link #execute(Runnable)} do not enter the delay queue of the underlying scheduled executor. Instead, they are appended to a lock-free mailbox,
+ * which is drained in batches by a single task that is only submitted when the mailbox becomes non-empty. Session-bound tasks for immediate execution are
+ * appended to the same mailbox, so that they are executed in order with the session's notifications. The delay queue is left to deal with timed
+ * (session-bound) tasks.<BR>
+ * <BR>
+ * A notification is admitted by a single atomic update of the executor state, which holds both the shutdown flag and the pending notification count. Once
+ * shut down, notifications admitted before that are still executed (after {@link #shutdown()}) or returned (from {@link #shutdownNow()}).
  * 
  * @author savormix
  */
@@ -53,13 +66,28 @@ public class ForwardedNotificationExecutor extends ScheduledThreadPoolExecutor i
 {
 	private static final L2Logger LOG = L2Logger.getLogger(ForwardedNotificationExecutor.class);
 	
-	private static final int SINGLE_SEQUENTIAL_LISTENER_WARNING_THRESHOLD = 5;
+	static final int SINGLE_SEQUENTIAL_LISTENER_WARNING_THRESHOLD = 5;
+	/** Allows timed tasks to interleave with a continuous stream of notifications. */
+	private static final int MAX_NOTIFICATIONS_PER_DRAIN = 512;
+	private static final long UTILIZATION_WINDOW = TimeUnit.SECONDS.toNanos(1);
+	/** State flag that is set once this executor is shut down; the remaining bits hold the pending notification count. */
+	private static final int SHUTDOWN = Integer.MIN_VALUE;
+	
+	private final int _id;
 	
 	private final Map<Proxy, Map<Object, Object>> _sessionStateMap;
 	
+	private final Queue<Runnable> _mailbox;
+	private final AtomicInteger _state;
+	private final AtomicBoolean _drainScheduled;
+	private final Runnable _drainer;
+	
+	private final AtomicInteger _sessionCount;
+	private volatile long _windowStart;
+	private long _windowBusy;
+	private volatile int _utilization;
+	
 	private Thread _activeThread;
-	// perfectly possible due to 1 thread
-	private long _start, _end;
 	
 
 	/**
@@ -71,6 +99,7 @@ public class ForwardedNotificationExecutor extends ScheduledThreadPoolExecutor i
 	{
 		super(0);
 		
+		_id = id;
 		setThreadFactory(r -> {
 			_activeThread = new Thread(r, "AsyncPacketHandlerHub-" + id);
 			_activeThread.setPriority(ASYNC_PACKET_NOTIFIER);
@@ -80,6 +109,197 @@ public class ForwardedNotificationExecutor extends ScheduledThreadPoolExecutor i
 		setKeepAliveTime(1, TimeUnit.MINUTES);
 		
 		_sessionStateMap = new IdentityHashMap<>();
+		
+		_mailbox = new ConcurrentLinkedQueue<>();
+		_state = new AtomicInteger();
+		_drainScheduled = new AtomicBoolean();
+		_drainer = this::drainMailbox;
+		
+		_sessionCount = new AtomicInteger();
+		_windowStart = System.nanoTime();
+	}
+	
+	@Override
+	public void execute(Runnable command)
+	{
+		if (command == null)
+			throw new NullPointerException();
+		
+		// counted before it is offered, so that the count never goes negative and a shutdown waits for it
+		for (int state;;)
+		{
+			state = _state.get();
+			if ((state & SHUTDOWN) != 0)
+			{
+				// let the rejection policy deal with it
+				super.execute(command);
+				return;
+			}
+			if (_state.compareAndSet(state, state + 1))
+				break;
+		}
+		
+		_mailbox.offer(command);
+		if (_drainScheduled.compareAndSet(false, true))
+			scheduleDrain();
+	}
+	
+	private void scheduleDrain()
+	{
+		try
+		{
+			super.execute(_drainer);
+		}
+		catch (final RejectedExecutionException e)
+		{
+			// notifications admitted before shutdown are taken care of by shutdown() or shutdownNow()
+			if (!isShutdown())
+				throw e;
+		}
+	}
+	
+	@Override
+	public void shutdown()
+	{
+		if ((_state.getAndUpdate(state -> state | SHUTDOWN) & SHUTDOWN) == 0)
+			super.execute(this::drainRemaining);
+		super.shutdown();
+	}
+	
+	@Override
+	public List<Runnable> shutdownNow()
+	{
+		_state.getAndUpdate(state -> state | SHUTDOWN);
+		final List<Runnable> unfinished = super.shutdownNow();
+		// admitted notifications that are not in the mailbox yet are about to be offered
+		while ((_state.get() & ~SHUTDOWN) != 0)
+		{
+			final Runnable r = _mailbox.poll();
+			if (r == null)
+			{
+				Thread.yield();
+				continue;
+			}
+			
+			_state.decrementAndGet();
+			unfinished.add(r);
+		}
+		return unfinished;
+	}
+	
+	/**
+	 * Returns the number of notifications that have been submitted, but not yet executed.
+	 * 
+	 * @return pending notification count
+	 */
+	public int getPendingNotificationCount()
+	{
+		return _state.get() & ~SHUTDOWN;
+	}
+	
+	/**
+	 * Returns the individual identifier of this executor.
+	 * 
+	 * @return executor ID
+	 */
+	public int getId()
+	{
+		return _id;
+	}
+	
+	/**
+	 * Returns the number of sessions currently assigned to this executor.
+	 * 
+	 * @return session count
+	 */
+	public int getSessionCount()
+	{
+		return _sessionCount.get();
+	}
+	
+	/**
+	 * Returns the fraction of time this executor spent executing notifications during the last measurement window.
+	 * 
+	 * @return utilization in permille
+	 */
+	public int getUtilization()
+	{
+		// an idle executor does not roll the window on its own
+		return System.nanoTime() - _windowStart > UTILIZATION_WINDOW << 1 ? 0 : _utilization;
+	}
+	
+	void onSessionAssigned()
+	{
+		_sessionCount.incrementAndGet();
+	}
+	
+	void onSessionReleased()
+	{
+		_sessionCount.decrementAndGet();
+	}
+	
+	private void drainMailbox()
+	{
+		final long start = System.nanoTime();
+		for (int i = 0; i < MAX_NOTIFICATIONS_PER_DRAIN; ++i)
+		{
+			final Runnable r = _mailbox.poll();
+			if (r == null)
+				break;
+			
+			_state.decrementAndGet();
+			runNotification(r);
+		}
+		
+		final long end = System.nanoTime();
+		_windowBusy += end - start;
+		final long windowLength = end - _windowStart;
+		if (windowLength >= UTILIZATION_WINDOW)
+		{
+			_utilization = (int)Math.min(1_000, _windowBusy * 1_000 / windowLength);
+			_windowBusy = 0;
+			_windowStart = end;
+		}
+		
+		_drainScheduled.set(false);
+		// a producer may have failed to schedule a drain while we were finishing up
+		if (!_mailbox.isEmpty() && _drainScheduled.compareAndSet(false, true))
+			scheduleDrain();
+	}
+	
+	private void drainRemaining()
+	{
+		// admitted notifications that are not in the mailbox yet are about to be offered
+		while ((_state.get() & ~SHUTDOWN) != 0)
+		{
+			final Runnable r = _mailbox.poll();
+			if (r == null)
+			{
+				Thread.yield();
+				continue;
+			}
+			
+			_state.decrementAndGet();
+			runNotification(r);
+		}
+	}
+	
+	private void runNotification(Runnable r)
+	{
+		Throwable t = null;
+		try
+		{
+			r.run();
+		}
+		catch (final Throwable e)
+		{
+			t = e;
+		}
+		
+		if (r instanceof AsyncDisconnectionNotifier)
+			discardSessionState(((AsyncDisconnectionNotifier)r).getClient());
+		else if (t != null)
+			LOG.error("Uncaught", t);
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -254,20 +474,10 @@ public class ForwardedNotificationExecutor extends ScheduledThreadPoolExecutor i
 		final Object oldValue = removeSessionStateFor(client, key);
 		if (oldValue instanceof Future<?>)
 			((Future<?>)oldValue).cancel(true);
-		final BlockingQueue<Future<?>> expectedValue = new ArrayBlockingQueue<>(1);
-		final Future<?> newValue = submit(new SessionBoundTask(r, client, key, () -> {
-			try
-			{
-				return expectedValue.take();
-			}
-			catch (final InterruptedException e)
-			{
-				// application is shutting down, so whatever, really
-				return null;
-			}
-		}));
+		// not submitted to the delay queue, as that would let notifications already in the mailbox overtake this task
+		final QueuedSessionBoundTask newValue = new QueuedSessionBoundTask(r, client, key);
+		execute(newValue);
 		setSessionStateFor(client, key, newValue);
-		expectedValue.add(newValue);
 		return newValue;
 	}
 	
@@ -390,12 +600,8 @@ public class ForwardedNotificationExecutor extends ScheduledThreadPoolExecutor i
 	@Override
 	protected void afterExecute(Runnable r, Throwable t)
 	{
-		// defy proper nesting
-		_end = System.nanoTime();
-		
 		super.afterExecute(r, t);
 		
-		// but still adhere to it
 		if (r instanceof LegacyPostExecSupport)
 		{
 			final Consumer<Throwable> postExec = ((LegacyPostExecSupport<?>)r).getLegacyPostExec();
@@ -410,49 +616,11 @@ public class ForwardedNotificationExecutor extends ScheduledThreadPoolExecutor i
 			LOG.error("Uncaught", t);
 	}
 	
-	@Override
-	protected void beforeExecute(Thread t, Runnable r)
-	{
-		super.beforeExecute(t, r);
-		
-		// and we defy proper nesting
-		_start = System.nanoTime();
-	}
-	
 	@Override
 	protected <V> RunnableScheduledFuture<V> decorateTask(Runnable r, RunnableScheduledFuture<V> task)
 	{
-		if (r instanceof ManipForwardNotifier)
-		{
-			final ManipForwardNotifier fn = (ManipForwardNotifier)r;
-			final PacketManipulator pm = fn.getManip();
-			
-			return new LegacyPostExecSupport<>(task, t -> {
-				if (t != null)
-				{
-					LOG.error(pm, t);
-					return;
-				}
-				
-				RunnableStatsManager.handleStats(pm.getClass(), "packetForwarded(Proxy, Proxy, ByteBuffer, ByteBuffer)", _end - _start, SINGLE_SEQUENTIAL_LISTENER_WARNING_THRESHOLD);
-			});
-		}
-		else if (r instanceof ListenerForwardNotifier)
-		{
-			final ListenerForwardNotifier fn = (ListenerForwardNotifier)r;
-			return new LegacyPostExecSupport<>(task, t -> {
-				if (t != null)
-				{
-					LOG.error("", t);
-					return;
-				}
-				
-				RunnableStatsManager.handleStats(fn.getListener().getClass(), "onPacket(Proxy, Proxy, ByteBuffer, long)", _end - _start, SINGLE_SEQUENTIAL_LISTENER_WARNING_THRESHOLD);
-			});
-		}
-		else if (r instanceof AsyncDisconnectionNotifier)
-			return new LegacyPostExecSupport<>(task, t -> discardSessionState(((AsyncDisconnectionNotifier)r).getClient()));
-		else if (r instanceof SessionBoundTask)
+		// notifications are executed via the mailbox, see runNotification(Runnable)
+		if (r instanceof SessionBoundTask)
 		{
 			final SessionBoundTask scriptTask = (SessionBoundTask)r;
 			return new LegacyPostExecSupport<>(task, t -> {
@@ -471,6 +639,40 @@ public class ForwardedNotificationExecutor extends ScheduledThreadPoolExecutor i
 	}
 	*/
 	
+	private final class QueuedSessionBoundTask extends FutureTask<Void>
+	{
+		private final Proxy _client;
+		private final Object _key;
+		
+		QueuedSessionBoundTask(Runnable task, Proxy client, Object key)
+		{
+			super(task, null);
+			
+			_client = client;
+			_key = key;
+		}
+		
+		@Override
+		public void run()
+		{
+			super.run();
+			removeSessionStateFor(_client, _key, this);
+		}
+		
+		@Override
+		protected void setException(Throwable t)
+		{
+			super.setException(t);
+			LOG.error(String.valueOf(_key), t);
+		}
+		
+		@Override
+		public String toString()
+		{
+			return String.valueOf(_key);
+		}
+	}
+	
 	private static final class LegacyPostExecSupport<V> implements RunnableScheduledFuture<V>
 	{
 		private final RunnableScheduledFuture<V> _task;
@@ -21,11 +21,11 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 
+import net.l2emuproject.lang.L2TextBuilder;
 import net.l2emuproject.proxy.network.Proxy.AsyncDisconnectionNotifier;
 import net.l2emuproject.proxy.network.ProxyConnections.AsyncConnectionNotifier;
 import net.l2emuproject.proxy.network.listener.PacketListener;
 import net.l2emuproject.proxy.network.listener.PacketManipulator;
-import net.l2emuproject.util.Rnd;
 import net.l2emuproject.util.logging.L2Logger;
 
 /**
@@ -69,14 +69,34 @@ public class ForwardedNotificationManager
 	public void addConnectionNotification(AsyncConnectionNotifier notification)
 	{
 		// since this proxy connects on behalf of its clients, a client connection will always exist for any proxy connection
-		final ForwardedNotificationExecutor exec = Rnd.get(_executors);
+		final ForwardedNotificationExecutor exec = getLeastLoadedExecutor();
 		ForwardedNotificationExecutor designatedExec = _client2Executor.putIfAbsent(notification.getEndpoint().getClient(), exec);
 		if (designatedExec == null)
+		{
 			designatedExec = exec;
+			exec.onSessionAssigned();
+		}
 		
 		designatedExec.execute(notification);
 	}
 	
+	private ForwardedNotificationExecutor getLeastLoadedExecutor()
+	{
+		ForwardedNotificationExecutor result = null;
+		long minLoad = Long.MAX_VALUE;
+		for (final ForwardedNotificationExecutor exec : _executors)
+		{
+			// recent busy time (permille) and backlog are primary, session count only breaks ties among idle executors
+			final long load = ((long)exec.getUtilization() + exec.getPendingNotificationCount()) * _executors.length * 4 + exec.getSessionCount();
+			if (load < minLoad)
+			{
+				minLoad = load;
+				result = exec;
+			}
+		}
+		return result;
+	}
+	
 	/**
 	 * Called when both endpoints have terminated the connection (regardless of which disconnected first).
 	 * 
@@ -90,6 +110,7 @@ public class ForwardedNotificationManager
 			LOG.warn("Disconnection notification on an inactive connection?!");
 			return;
 		}
+		exec.onSessionReleased();
 		exec.execute(notification);
 	}
 	
@@ -104,20 +125,33 @@ public class ForwardedNotificationManager
 	 * @param listeners packet listeners to be notified
 	 * @param manipulators packet manipulators to be notified
 	 */
-	public void addPacketNotification(Proxy sender, Proxy recipient, ByteBuffer received, ByteBuffer sent, long time, Set<PacketListener> listeners, Set<PacketManipulator> manipulators)
+	public void addPacketNotification(Proxy sender, Proxy recipient, ByteBuffer received, ByteBuffer sent, long time, Set<PacketListener> listeners, Iterable<PacketManipulator> manipulators)
+	{
+		addPacketNotification(sender, recipient, received, sent, null, time, listeners, manipulators);
+	}
+	
+	/**
+	 * Notifies packet listeners and manipulators about a received/sent packet asynchronously.
+	 * 
+	 * @param sender packet sender
+	 * @param recipient packet recipient
+	 * @param received received packet body [complete buffer] or {@code null}
+	 * @param sent sent packet body [complete buffer] or {@code null}
+	 * @param sentArray array that backs {@code sent} or {@code null}, if unknown
+	 * @param time packet arrival timestamp
+	 * @param listeners packet listeners to be notified
+	 * @param manipulators packet manipulators to be notified
+	 */
+	public void addPacketNotification(Proxy sender, Proxy recipient, ByteBuffer received, ByteBuffer sent, byte[] sentArray, long time, Set<PacketListener> listeners,
+			Iterable<PacketManipulator> manipulators)
 	{
 		final ForwardedNotificationExecutor exec = _client2Executor.get(sender.getClient());
 		if (exec == null) // early quit
 			return;
 		
-		for (final PacketManipulator pm : manipulators)
-			exec.execute(new ManipForwardNotifier(sender, recipient, received, sent, pm));
-		
-		if (sent == null)
-			return;
-		
-		for (final PacketListener pl : listeners)
-			exec.execute(new ListenerForwardNotifier(sender, sent, pl, time));
+		// a single task per packet; the sets are iterated when it runs, so listeners (un)registered meanwhile will (not) be notified about this packet
+		// listener sets are copy-on-write and manipulator dispatch slots are immutable, so iterating them on another thread is safe
+		exec.execute(new BatchForwardNotifier(sender, recipient, received, sent != null ? new SharedPacketBody(sent, sentArray) : null, time, listeners, manipulators));
 	}
 	
 	/**
@@ -131,6 +165,22 @@ public class ForwardedNotificationManager
 		return _client2Executor.get(proxy.getClient());
 	}
 	
+	/**
+	 * Returns a summary of the current load of each packet notification executor.
+	 * 
+	 * @return executor statistics
+	 */
+	public String getExecutorStats()
+	{
+		final L2TextBuilder sb = new L2TextBuilder();
+		for (final ForwardedNotificationExecutor exec : _executors)
+		{
+			sb.append("AsyncPacketHandlerHub-").append(exec.getId()).append(": ").append(exec.getSessionCount()).append(" session(s), ");
+			sb.append(exec.getPendingNotificationCount()).append(" pending notification(s), ").append(exec.getUtilization() / 10D).appendNewline("% busy");
+		}
+		return sb.moveToString();
+	}
+	
 	/**
 	 * Discards session state values assigned to all keys that match the given predicate.
 	 * 
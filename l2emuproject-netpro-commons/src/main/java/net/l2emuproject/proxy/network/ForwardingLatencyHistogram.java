@@ -0,0 +1,133 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.network;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.l2emuproject.lang.L2TextBuilder;
+
+/**
+ * Tracks how long it takes for a received packet to be written to the other endpoint.<BR>
+ * <BR>
+ * Latencies are counted in power-of-two microsecond buckets, so that the effect of I/O thread sleep intervals can be compared between configurations.
+ * 
+ * @author _dev_
+ */
+public final class ForwardingLatencyHistogram
+{
+	/** Bucket {@code i} counts latencies in {@code [2^i, 2^(i+1))} microseconds; the first bucket also includes anything faster and the last one anything slower. */
+	public static final int BUCKET_COUNT = 24;
+	/** Returned by {@link #getPercentile(double)} if the percentile falls into the last bucket, which has no upper bound. */
+	public static final long UNBOUNDED = Long.MAX_VALUE;
+	
+	private final AtomicLongArray _buckets;
+	
+	/** Creates an empty histogram. */
+	public ForwardingLatencyHistogram()
+	{
+		_buckets = new AtomicLongArray(BUCKET_COUNT);
+	}
+	
+	/**
+	 * Records a single packet's forwarding latency.
+	 * 
+	 * @param nanos latency in nanoseconds
+	 */
+	public void record(long nanos)
+	{
+		final long micros = nanos / 1_000L;
+		final int bucket = micros < 2 ? 0 : Math.min(63 - Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1);
+		_buckets.incrementAndGet(bucket);
+	}
+	
+	/**
+	 * Returns the amount of recorded latencies.
+	 * 
+	 * @return sample count
+	 */
+	public long getCount()
+	{
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; ++i)
+			count += _buckets.get(i);
+		return count;
+	}
+	
+	/**
+	 * Returns the upper bound (exclusive) of the bucket that contains the given percentile.
+	 * 
+	 * @param percentile a value between 0 and 100
+	 * @return latency upper bound in microseconds, {@link #UNBOUNDED} if the percentile is at least {@code 2^(BUCKET_COUNT-1)} microseconds or {@code 0}, if nothing
+	 *         was recorded
+	 */
+	public long getPercentile(double percentile)
+	{
+		final long count = getCount();
+		if (count == 0)
+			return 0;
+		
+		final long target = Math.max(1, (long)Math.ceil(count * percentile / 100D));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT - 1; ++i)
+		{
+			seen += _buckets.get(i);
+			if (seen >= target)
+				return 1L << (i + 1);
+		}
+		return UNBOUNDED;
+	}
+	
+	/** Discards all recorded latencies. */
+	public void reset()
+	{
+		for (int i = 0; i < BUCKET_COUNT; ++i)
+			_buckets.set(i, 0);
+	}
+	
+	@Override
+	public String toString()
+	{
+		final L2TextBuilder tb = new L2TextBuilder();
+		tb.append(getCount()).append(" packet(s)");
+		appendPercentile(tb.append(", p50 "), 50);
+		appendPercentile(tb.append(", p90 "), 90);
+		appendPercentile(tb.append(", p99 "), 99);
+		for (int i = 0; i < BUCKET_COUNT; ++i)
+		{
+			final long count = _buckets.get(i);
+			if (count == 0)
+				continue;
+			
+			tb.appendNewline();
+			if (i == BUCKET_COUNT - 1)
+				tb.append("  >= ").append(1L << i);
+			else
+				tb.append("  < ").append(1L << (i + 1));
+			tb.append(" us: ").append(count);
+		}
+		return tb.moveToString();
+	}
+	
+	private void appendPercentile(L2TextBuilder tb, double percentile)
+	{
+		final long bound = getPercentile(percentile);
+		if (bound == UNBOUNDED)
+			tb.append(">= ").append(1L << (BUCKET_COUNT - 1));
+		else
+			tb.append("< ").append(bound);
+		tb.append(" us");
+	}
+}
@@ -16,6 +16,7 @@
 package net.l2emuproject.proxy.network;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import org.apache.commons.lang3.ArrayUtils;
 
@@ -39,6 +40,8 @@ public final class Packet
 	private static final ByteBuffer[] EMPTY_BYTE_BUFFER_ARRAY = new ByteBuffer[0];
 	
 	private final long _receptionTime;
+	private final long _receptionNanoTime;
+	private final byte[] _receivedArray;
 	private final ByteBuffer _receivedBody;
 	private ByteBuffer _forwardedBody;
 	private PacketManipulator[] _demandSend = EMPTY_PACKET_MANIPULATOR_ARRAY;
@@ -55,11 +58,32 @@ public final class Packet
 	public Packet(ByteBuffer receivedBody)
 	{
 		_receptionTime = System.currentTimeMillis();
+		_receptionNanoTime = System.nanoTime();
+		_receivedArray = null;
 		ByteBuffer backed = ByteBufferUtils.asReadOnly(ByteBufferUtils.asBacked(receivedBody));
 		_receivedBody = backed;
 		_forwardedBody = backed;
 	}
 	
+	/**
+	 * Creates a wrapper for a received packet.<BR>
+	 * <BR>
+	 * The given array is taken over by this wrapper and must not be modified afterwards. As long as no manipulator alters the
+	 * forwarded body, the very same array will be handed over for transmission, without any intermediate copies.
+	 * 
+	 * @param receivedBody
+	 *            packet's body
+	 */
+	public Packet(byte[] receivedBody)
+	{
+		_receptionTime = System.currentTimeMillis();
+		_receptionNanoTime = System.nanoTime();
+		_receivedArray = receivedBody;
+		final ByteBuffer immutable = ByteBuffer.wrap(receivedBody).asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+		_receivedBody = immutable;
+		_forwardedBody = immutable;
+	}
+	
 	/**
 	 * Returns a buffer for inline modifications.<BR>
 	 * <BR>
@@ -298,6 +322,28 @@ public final class Packet
 		return _receptionTime;
 	}
 	
+	/**
+	 * Returns this packet's arrival time, as given by {@link System#nanoTime()}.
+	 * 
+	 * @return reception time for latency measurements
+	 */
+	public long getReceptionNanoTime()
+	{
+		return _receptionNanoTime;
+	}
+	
+	/**
+	 * Returns the received packet body array, if it can be forwarded as-is.<BR>
+	 * <BR>
+	 * The returned array must not be modified.
+	 * 
+	 * @return original packet's body or {@code null}, if the body was altered or is not array-backed
+	 */
+	byte[] getUnmodifiedBody()
+	{
+		return _forwardedBody == _receivedBody ? _receivedArray : null;
+	}
+	
 	private static void warnManipulatorConflict(PacketManipulator manipulator, PacketManipulator... pms) throws IllegalStateException
 	{
 		if (ArrayUtils.isEmpty(pms))
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.network;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.l2emuproject.proxy.network.listener.OpcodeFilteredManipulator;
+import net.l2emuproject.proxy.network.listener.PacketManipulator;
+
+/**
+ * An immutable table that maps main opcodes to packet manipulators interested in them.<BR>
+ * <BR>
+ * There is a table for each endpoint type, with a slot for every possible main opcode and an additional slot for packets without a body. Manipulators that do not
+ * declare handled opcodes are placed in every slot. Within each slot, manipulators retain their registration order.
+ * 
+ * @author _dev_
+ */
+final class PacketManipulatorDispatchTable
+{
+	/** A table without any manipulators. */
+	static final PacketManipulatorDispatchTable EMPTY = new PacketManipulatorDispatchTable(Collections.emptyList());
+	
+	private static final int EMPTY_PACKET_SLOT = 256;
+	
+	private final List<PacketManipulator>[] _client;
+	private final List<PacketManipulator>[] _server;
+	
+	/**
+	 * Builds a dispatch table.
+	 * 
+	 * @param manipulators all registered manipulators, in registration order
+	 */
+	PacketManipulatorDispatchTable(Iterable<PacketManipulator> manipulators)
+	{
+		_client = build(manipulators, true);
+		_server = build(manipulators, false);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static List<PacketManipulator>[] build(Iterable<PacketManipulator> manipulators, boolean client)
+	{
+		final List<PacketManipulator>[] slots = new List[EMPTY_PACKET_SLOT + 1];
+		for (int i = 0; i < slots.length; ++i)
+			slots[i] = new ArrayList<>();
+		
+		for (final PacketManipulator pm : manipulators)
+		{
+			int[] opcodes = null;
+			if (pm instanceof OpcodeFilteredManipulator)
+			{
+				final OpcodeFilteredManipulator ofm = (OpcodeFilteredManipulator)pm;
+				if (!ofm.isEnabled())
+					continue;
+				
+				opcodes = ofm.getHandledOpcodes(client);
+			}
+			
+			if (opcodes == null)
+			{
+				for (final List<PacketManipulator> slot : slots)
+					slot.add(pm);
+				continue;
+			}
+			
+			for (final int opcode : opcodes)
+			{
+				final List<PacketManipulator> slot = slots[opcode == OpcodeFilteredManipulator.EMPTY_PACKET_OPCODE ? EMPTY_PACKET_SLOT : opcode & 0xFF];
+				if (!slot.contains(pm))
+					slot.add(pm);
+			}
+		}
+		
+		// slots are shared by all packets with the same opcode, so make them compact and read-only
+		for (int i = 0; i < slots.length; ++i)
+		{
+			final List<PacketManipulator> slot = slots[i];
+			slots[i] = slot.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(slot));
+		}
+		return slots;
+	}
+	
+	/**
+	 * Returns manipulators that should be notified about the given packet.
+	 * 
+	 * @param client whether the packet was sent by a client
+	 * @param body packet body [complete buffer] or {@code null}
+	 * @return interested manipulators
+	 */
+	List<PacketManipulator> get(boolean client, ByteBuffer body)
+	{
+		final int slot = body == null || body.capacity() < 1 ? EMPTY_PACKET_SLOT : body.get(0) & 0xFF;
+		return (client ? _client : _server)[slot];
+	}
+}
@@ -21,6 +21,7 @@ import static net.l2emuproject.proxy.network.EndpointType.SERVER;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SocketChannel;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
@@ -254,7 +255,7 @@ public abstract class Proxy extends MMOConnection<Proxy, ProxyReceivedPacket, Pr
 	 */
 	public final void notifyPacketArrived(final Packet packet)
 	{
-		for (final PacketManipulator pm : getPacketManipulators())
+		for (final PacketManipulator pm : getPacketManipulators(packet.getReceivedBody()))
 		{
 			try
 			{
@@ -286,7 +287,21 @@ public abstract class Proxy extends MMOConnection<Proxy, ProxyReceivedPacket, Pr
 	 */
 	public final void notifyPacketForwarded(final ByteBuffer received, final ByteBuffer sent, long time)
 	{
-		ForwardedNotificationManager.getInstance().addPacketNotification(this, getTarget(), received, sent, time, getPacketListeners(), getPacketManipulators());
+		notifyPacketForwarded(received, sent, null, time);
+	}
+	
+	/**
+	 * Notifies packet listeners about a forwarded packet in a separate thread.
+	 * 
+	 * @param received received body
+	 * @param sent sent body
+	 * @param sentArray array that backs {@code sent} or {@code null}, if unknown
+	 * @param time reception time
+	 */
+	public final void notifyPacketForwarded(final ByteBuffer received, final ByteBuffer sent, final byte[] sentArray, long time)
+	{
+		ForwardedNotificationManager.getInstance().addPacketNotification(this, getTarget(), received, sent, sentArray, time, getPacketListeners(),
+				getPacketManipulators(sent != null ? sent : received));
 	}
 	
 	// Allows NP to deal with servers that don't know how to send packets. Trust me, YOU DON'T WANT TO KNOW.
@@ -329,11 +344,27 @@ public abstract class Proxy extends MMOConnection<Proxy, ProxyReceivedPacket, Pr
 		return getMmoController().getPacketManipulators();
 	}
 	
+	private List<PacketManipulator> getPacketManipulators(ByteBuffer body)
+	{
+		return getMmoController().getPacketManipulators(getType().isClient(), body);
+	}
+	
 	private ProxyConnections getMmoController()
 	{
 		return _mmoController;
 	}
 	
+	/**
+	 * Records the time it took to write a forwarded packet to this endpoint after it was received from the other one.
+	 * 
+	 * @param nanos forwarding latency in nanoseconds
+	 */
+	public final void recordForwardingLatency(long nanos)
+	{
+		if (_mmoController != null)
+			_mmoController.onForwardedPacketWritten(nanos);
+	}
+	
 	/** Notifies listeners about a complete disconnection (after both client and server have terminated the connection). */
 	public static final class AsyncDisconnectionNotifier implements Runnable
 	{
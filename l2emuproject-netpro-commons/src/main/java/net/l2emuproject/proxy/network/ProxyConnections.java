@@ -16,11 +16,18 @@
 package net.l2emuproject.proxy.network;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.LongAdder;
 
+import net.l2emuproject.lang.L2TextBuilder;
 import net.l2emuproject.network.mmocore.FloodManager;
 import net.l2emuproject.network.mmocore.MMOConfig;
 import net.l2emuproject.network.mmocore.MMOController;
@@ -40,10 +47,15 @@ public abstract class ProxyConnections extends MMOController<Proxy, ProxyReceive
 {
 	/** System propery used to set the I/O interval */
 	public static final String PROPERTY_RW_INTERVAL = "ReadWriteSelectorSleepTime";
+	/** System propery used to set the amount of I/O threads (each with its own selector) */
+	public static final String PROPERTY_RW_THREADS = "ReadWriteSelectorThreadCount";
 	
 	private final Set<ConnectionListener> _connectionListeners = new CopyOnWriteArraySet<>();
 	private final Set<PacketListener> _packetListeners = new CopyOnWriteArraySet<>();
 	private final Set<PacketManipulator> _packetManipulators = new CopyOnWriteArraySet<>();
+	private volatile PacketManipulatorDispatchTable _manipulatorDispatch = PacketManipulatorDispatchTable.EMPTY;
+	private final ForwardingLatencyHistogram _forwardingLatency = new ForwardingLatencyHistogram();
+	private final Map<Thread, LongAdder> _writtenPerIOThread = new ConcurrentHashMap<>();
 	
 	/**
 	 * Creates a proxy connection manager.
@@ -153,6 +165,7 @@ public abstract class ProxyConnections extends MMOController<Proxy, ProxyReceive
 	public final void addPacketListener(PacketManipulator listener)
 	{
 		_packetManipulators.add(listener);
+		refreshPacketManipulators();
 	}
 	
 	/**
@@ -164,6 +177,21 @@ public abstract class ProxyConnections extends MMOController<Proxy, ProxyReceive
 	public final void removePacketListener(PacketManipulator listener)
 	{
 		_packetManipulators.remove(listener);
+		refreshPacketManipulators();
+	}
+	
+	/**
+	 * Rebuilds the opcode dispatch table of registered packet manipulators.<BR>
+	 * <BR>
+	 * Must be called whenever an {@link net.l2emuproject.proxy.network.listener.OpcodeFilteredManipulator} registered with this manager is enabled, disabled or
+	 * changes its handled opcodes.
+	 */
+	public final void refreshPacketManipulators()
+	{
+		synchronized (_packetManipulators)
+		{
+			_manipulatorDispatch = new PacketManipulatorDispatchTable(_packetManipulators);
+		}
 	}
 	
 	/**
@@ -196,6 +224,58 @@ public abstract class ProxyConnections extends MMOController<Proxy, ProxyReceive
 		return _packetManipulators;
 	}
 	
+	/**
+	 * Returns registered packet manipulating listeners interested in the given packet.
+	 * 
+	 * @param client whether the packet was sent by a client
+	 * @param body packet body [complete buffer] or {@code null}
+	 * @return packet manipulators
+	 */
+	final List<PacketManipulator> getPacketManipulators(boolean client, ByteBuffer body)
+	{
+		return _manipulatorDispatch.get(client, body);
+	}
+	
+	/**
+	 * Returns the time it takes for packets forwarded to endpoints managed by this instance to be written after they were received.
+	 * As this includes waiting for the I/O thread, it reflects the configured read/write interval.
+	 * 
+	 * @return forwarding latency histogram
+	 */
+	public final ForwardingLatencyHistogram getForwardingLatency()
+	{
+		return _forwardingLatency;
+	}
+	
+	/**
+	 * Called by an I/O thread after a forwarded packet has been written to an endpoint managed by this instance.
+	 * 
+	 * @param latency forwarding latency in nanoseconds
+	 */
+	final void onForwardedPacketWritten(long latency)
+	{
+		_forwardingLatency.record(latency);
+		
+		final Thread ioThread = Thread.currentThread();
+		LongAdder written = _writtenPerIOThread.get(ioThread);
+		if (written == null)
+			written = _writtenPerIOThread.computeIfAbsent(ioThread, k -> new LongAdder());
+		written.increment();
+	}
+	
+	/**
+	 * Returns the amount of forwarded packets written by each I/O thread (selector) of this instance.
+	 * 
+	 * @return per selector throughput
+	 */
+	public final String getIOThreadStats()
+	{
+		final L2TextBuilder tb = new L2TextBuilder();
+		for (final Entry<Thread, LongAdder> e : _writtenPerIOThread.entrySet())
+			tb.append(e.getKey().getName()).append(": ").append(e.getValue().sum()).appendNewline(" forwarded packet(s)");
+		return tb.moveToString();
+	}
+	
 	@Override
 	protected FloodManager initAcceptsFloodManager()
 	{
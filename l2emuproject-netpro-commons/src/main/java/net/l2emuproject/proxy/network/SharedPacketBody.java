@@ -0,0 +1,100 @@
+/*
+ * Copyright 2011-2018 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.network;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A forwarded packet body that is shared by all packet listeners of a single notification.<BR>
+ * <BR>
+ * Listeners that need to retain a packet (historical log, packet tabs) should call {@link #toArray()} instead of copying the buffer themselves. If the packet was forwarded without modifications,
+ * the array that was received (and transmitted) is returned as-is, otherwise a single copy is made and shared by every subsequent caller.<BR>
+ * <BR>
+ * The returned array must never be modified. This class is not thread safe; all listeners of a session are notified on the same thread.
+ * 
+ * @author _dev_
+ */
+public final class SharedPacketBody
+{
+	private static final LongAdder SHARED = new LongAdder(), COPIED = new LongAdder();
+	
+	private final ByteBuffer _buffer;
+	private byte[] _array;
+	
+	/**
+	 * Wraps a forwarded packet body.
+	 * 
+	 * @param buffer packet body [complete read-only buffer]
+	 * @param array array that backs {@code buffer} or {@code null}, if unknown
+	 */
+	public SharedPacketBody(ByteBuffer buffer, byte[] array)
+	{
+		_buffer = buffer;
+		_array = array;
+	}
+	
+	/**
+	 * Returns the packet body as a buffer. The body fills the entire read-only buffer with a backing array. The mark, position and limit are unspecified.
+	 * 
+	 * @return packet body
+	 */
+	public ByteBuffer getBuffer()
+	{
+		return _buffer;
+	}
+	
+	/**
+	 * Returns the packet body as an array that is shared with other listeners.
+	 * 
+	 * @return packet body [must not be modified]
+	 */
+	public byte[] toArray()
+	{
+		if (_array != null)
+		{
+			SHARED.increment();
+			return _array;
+		}
+		
+		final ByteBuffer buf = _buffer.duplicate();
+		buf.clear();
+		final byte[] array = new byte[buf.remaining()];
+		buf.get(array);
+		COPIED.increment();
+		return _array = array;
+	}
+	
+	/**
+	 * Returns how many times a listener was given an already existing array.
+	 * 
+	 * @return array reuse count
+	 */
+	public static long getSharedCount()
+	{
+		return SHARED.sum();
+	}
+	
+	/**
+	 * Returns how many times a packet body had to be copied for listeners.
+	 * 
+	 * @return array allocation count
+	 */
+	public static long getCopiedCount()
+	{
+		return COPIED.sum();
+	}
+}
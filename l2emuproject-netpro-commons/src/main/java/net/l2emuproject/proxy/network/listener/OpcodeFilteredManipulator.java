@@ -0,0 +1,45 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.network.listener;
+
+/**
+ * A packet manipulator that is only interested in packets with specific main opcodes.<BR>
+ * <BR>
+ * Connection managers use the declared opcodes to notify such a manipulator only about packets it handles, instead of invoking it for every packet. Whenever the
+ * values returned by this interface change, the manipulator must ask each connection manager it is registered with to refresh its dispatch table.
+ * 
+ * @author _dev_
+ */
+public interface OpcodeFilteredManipulator extends PacketManipulator
+{
+	/** Main opcode used to identify packets without a body. */
+	int EMPTY_PACKET_OPCODE = -1;
+	
+	/**
+	 * Returns whether this manipulator should currently receive any notifications.
+	 * 
+	 * @return {@code true} if packets should be dispatched to this manipulator, {@code false} otherwise
+	 */
+	boolean isEnabled();
+	
+	/**
+	 * Returns main opcodes of packets this manipulator should be notified about.
+	 * 
+	 * @param client whether the packets are sent by a client
+	 * @return handled opcodes (may include {@link #EMPTY_PACKET_OPCODE}) or {@code null}, if all packets should be handled
+	 */
+	int[] getHandledOpcodes(boolean client);
+}
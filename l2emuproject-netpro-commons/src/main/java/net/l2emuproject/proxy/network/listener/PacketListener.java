@@ -19,6 +19,7 @@ import java.nio.ByteBuffer;
 
 import net.l2emuproject.network.protocol.IProtocolVersion;
 import net.l2emuproject.proxy.network.Proxy;
+import net.l2emuproject.proxy.network.SharedPacketBody;
 
 /**
  * Interface for entities willing to be notified about transferred packets. <BR>
@@ -74,6 +75,50 @@ public interface PacketListener
 	 */
 	void onServerPacket(Proxy sender, Proxy recipient, ByteBuffer packet, long time) throws RuntimeException;
 	
+	/**
+	 * Notifies about a <B>client</B> packet sent to a <B>server</B>.<BR>
+	 * <BR>
+	 * Listeners that retain packet bodies should override this method and use {@link SharedPacketBody#toArray()}, so that
+	 * the body is not copied by each of them. By default, {@link #onClientPacket(Proxy, Proxy, ByteBuffer, long)} is called.
+	 * 
+	 * @param sender
+	 *            internal object that represents the client
+	 * @param recipient
+	 *            internal object that represents the server
+	 * @param packet
+	 *            packet data shared by all listeners
+	 * @param time
+	 *            time of arrival at proxy server
+	 * @throws RuntimeException
+	 *             if something went wrong
+	 */
+	default void onClientPacket(Proxy sender, Proxy recipient, SharedPacketBody packet, long time) throws RuntimeException
+	{
+		onClientPacket(sender, recipient, packet.getBuffer(), time);
+	}
+	
+	/**
+	 * Notifies about a <B>server</B> packet sent to a <B>client</B>.<BR>
+	 * <BR>
+	 * Listeners that retain packet bodies should override this method and use {@link SharedPacketBody#toArray()}, so that
+	 * the body is not copied by each of them. By default, {@link #onServerPacket(Proxy, Proxy, ByteBuffer, long)} is called.
+	 * 
+	 * @param sender
+	 *            internal object that represents the server
+	 * @param recipient
+	 *            internal object that represents the client
+	 * @param packet
+	 *            packet data shared by all listeners
+	 * @param time
+	 *            time of arrival at proxy server
+	 * @throws RuntimeException
+	 *             if something went wrong
+	 */
+	default void onServerPacket(Proxy sender, Proxy recipient, SharedPacketBody packet, long time) throws RuntimeException
+	{
+		onServerPacket(sender, recipient, packet.getBuffer(), time);
+	}
+	
 	/**
 	 * Notifies about a protocol version change.<BR>
 	 * <BR>
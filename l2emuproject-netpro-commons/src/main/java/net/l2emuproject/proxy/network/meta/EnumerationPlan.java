@@ -0,0 +1,78 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.network.meta;
+
+import net.l2emuproject.proxy.network.meta.structure.PacketStructureElement;
+
+/**
+ * Specifies how much of a packet's payload has to be enumerated.
+ * 
+ * @author _dev_
+ */
+public final class EnumerationPlan
+{
+	/** The payload does not have to be enumerated at all. */
+	public static final EnumerationPlan SKIP = new EnumerationPlan(false, null);
+	/** The whole payload must be enumerated. */
+	public static final EnumerationPlan COMPLETE = new EnumerationPlan(true, null);
+	
+	private final boolean _required;
+	private final PacketStructureElement _lastElement;
+	
+	private EnumerationPlan(boolean required, PacketStructureElement lastElement)
+	{
+		_required = required;
+		_lastElement = lastElement;
+	}
+	
+	/**
+	 * Creates a plan that ends enumeration as soon as the given element has been fully visited.
+	 * The element must occur exactly once within the packet's structure.
+	 * 
+	 * @param lastElement last element of interest
+	 * @return enumeration plan
+	 */
+	public static EnumerationPlan until(PacketStructureElement lastElement)
+	{
+		return new EnumerationPlan(true, lastElement);
+	}
+	
+	/**
+	 * Returns whether the payload should be enumerated.
+	 * 
+	 * @return {@code true} if enumeration is required, {@code false} otherwise
+	 */
+	public boolean isRequired()
+	{
+		return _required;
+	}
+	
+	/**
+	 * Returns the element after which enumeration may be ended, or {@code null} if the whole payload must be enumerated.
+	 * 
+	 * @return last element of interest or {@code null}
+	 */
+	public PacketStructureElement getLastElement()
+	{
+		return _lastElement;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return !_required ? "SKIP" : _lastElement == null ? "COMPLETE" : "UNTIL " + _lastElement;
+	}
+}
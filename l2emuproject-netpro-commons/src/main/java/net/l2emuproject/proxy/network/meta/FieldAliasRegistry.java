@@ -0,0 +1,121 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.network.meta;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns script field aliases as small, dense integer IDs.<BR>
+ * <BR>
+ * IDs are never reused or released, so they remain valid across packet definition reloads.
+ * 
+ * @author _dev_
+ */
+public final class FieldAliasRegistry
+{
+	/** An ID that is never assigned to any alias. */
+	public static final int UNKNOWN_ALIAS = -1;
+	
+	private final Map<String, Integer> _ids;
+	private volatile String[] _aliases;
+	private int _size;
+	
+	FieldAliasRegistry()
+	{
+		_ids = new ConcurrentHashMap<>();
+		_aliases = new String[64];
+		_size = 0;
+	}
+	
+	/**
+	 * Returns the ID of the given alias, assigning a new one if necessary.
+	 * 
+	 * @param alias field alias
+	 * @return alias ID
+	 */
+	public int intern(String alias)
+	{
+		final Integer id = _ids.get(alias);
+		if (id != null)
+			return id;
+		
+		synchronized (this)
+		{
+			final Integer existing = _ids.get(alias);
+			if (existing != null)
+				return existing;
+			
+			String[] aliases = _aliases;
+			if (_size == aliases.length)
+				aliases = Arrays.copyOf(aliases, aliases.length << 1);
+			final int newId = _size++;
+			aliases[newId] = alias;
+			_aliases = aliases;
+			_ids.put(alias, newId);
+			return newId;
+		}
+	}
+	
+	/**
+	 * Returns the ID of the given alias without assigning a new one.
+	 * 
+	 * @param alias field alias
+	 * @return alias ID or {@link #UNKNOWN_ALIAS}
+	 */
+	public int getId(String alias)
+	{
+		final Integer id = _ids.get(alias);
+		return id != null ? id : UNKNOWN_ALIAS;
+	}
+	
+	/**
+	 * Returns the alias associated with the given ID.
+	 * 
+	 * @param id alias ID
+	 * @return field alias
+	 */
+	public String getAlias(int id)
+	{
+		return _aliases[id];
+	}
+	
+	/**
+	 * Returns an upper bound (exclusive) of all IDs assigned so far.
+	 * 
+	 * @return amount of interned aliases
+	 */
+	public int size()
+	{
+		return _ids.size();
+	}
+	
+	/**
+	 * Returns a singleton instance of this type.
+	 * 
+	 * @return an instance of this class
+	 */
+	public static final FieldAliasRegistry getInstance()
+	{
+		return SingletonHolder.INSTANCE;
+	}
+	
+	private static final class SingletonHolder
+	{
+		static final FieldAliasRegistry INSTANCE = new FieldAliasRegistry();
+	}
+}
@@ -15,6 +15,8 @@
  */
 package net.l2emuproject.proxy.network.meta;
 
+import java.util.function.Function;
+
 import net.l2emuproject.network.mmocore.MMOBuffer;
 import net.l2emuproject.network.protocol.IProtocolVersion;
 import net.l2emuproject.proxy.network.meta.exception.InvalidPacketOpcodeSchemeException;
@@ -43,4 +45,26 @@ public interface PacketPayloadEnumerator
 	 * @throws PartialPayloadEnumerationException if a packet cannot be enumerated completely
 	 */
 	RandomAccessMMOBuffer enumeratePacketPayload(IProtocolVersion protocol, MMOBuffer buf, IPacketSource author) throws InvalidPacketOpcodeSchemeException, PartialPayloadEnumerationException;
+	
+	/**
+	 * Enumerates fields as requested by {@code planner} for the packet's template. Upon termination, {@code buf}'s position will be unchanged.<BR>
+	 * <BR>
+	 * If the plan is {@link EnumerationPlan#SKIP}, no enumeration is performed and {@code null} is returned. If the plan specifies a last element,
+	 * the returned buffer will only contain fields enumerated up to (and including) that element.<BR>
+	 * <BR>
+	 * The default implementation ignores the plan and enumerates the whole payload.
+	 * 
+	 * @param protocol protocol version
+	 * @param buf packet content wrapper
+	 * @param author packet provider
+	 * @param planner selects an enumeration plan for a packet template
+	 * @return a buffer to access enumerated fields or {@code null}
+	 * @throws InvalidPacketOpcodeSchemeException if a packet opcode is incompatible with the packet template provider
+	 * @throws PartialPayloadEnumerationException if a packet cannot be enumerated as far as requested
+	 */
+	default RandomAccessMMOBuffer enumeratePacketPayload(IProtocolVersion protocol, MMOBuffer buf, IPacketSource author, Function<IPacketTemplate, EnumerationPlan> planner)
+			throws InvalidPacketOpcodeSchemeException, PartialPayloadEnumerationException
+	{
+		return enumeratePacketPayload(protocol, buf, author);
+	}
 }
@@ -65,12 +65,17 @@ import net.l2emuproject.util.HexUtil;
  */
 public final class PacketTemplate implements IPacketTemplate, Comparable<OpcodeOwner>
 {
+	private static final FieldValue[] NO_FIELD_VALUES = new FieldValue[0];
+	private static final CompiledElement[] NO_ELEMENTS = new CompiledElement[0];
+	
 	private final byte[] _prefix;
 	private final String _name;
 	private final List<PacketStructureElement> _structure;
 	private final boolean _hasScriptAliases;
 	private final IProtocolVersion _definitionVersion;
 	
+	private volatile CompiledStructure _compiledStructure;
+	
 	/**
 	 * Creates a packet template.
 	 * 
@@ -142,13 +147,14 @@ public final class PacketTemplate implements IPacketTemplate, Comparable<OpcodeO
 	@Override
 	public void visitStructureElements(PacketStructureElementVisitor visitor, ByteBuffer body, Map<FieldValueReadOption, ?> options)
 	{
+		final CompiledStructure structure = getCompiledStructure();
 		final MMOBuffer buffer = new MMOBuffer().setByteBuffer(body);
 		try
 		{
 			visitor.onStart(buffer.getAvailableBytes());
-			final Map<String, FieldValue> fieldID2Value = new HashMap<>();
-			for (final PacketStructureElement elem : _structure)
-				visitSingleElement(elem, visitor, body, buffer, options, fieldID2Value);
+			final FieldValue[] fieldValues = structure._fieldCount > 0 ? new FieldValue[structure._fieldCount] : NO_FIELD_VALUES;
+			for (final CompiledElement elem : structure._elements)
+				visitSingleElement(elem, visitor, body, buffer, options, fieldValues);
 			visitor.onCompletion(buffer.getAvailableBytes());
 		}
 		catch (BufferUnderflowException e)
@@ -196,51 +202,60 @@ public final class PacketTemplate implements IPacketTemplate, Comparable<OpcodeO
 		return HexUtil.bytesToHexString(_prefix, ":") + (_name != null ? " " + _name : "");
 	}
 	
+	private CompiledStructure getCompiledStructure()
+	{
+		CompiledStructure structure = _compiledStructure;
+		if (structure == null) // racy, but the result is always equivalent
+			_compiledStructure = structure = new CompiledStructure(_structure);
+		return structure;
+	}
+	
 	@SuppressWarnings("unchecked")
-	private static final <V extends FieldValue> void visitSingleElement(PacketStructureElement element, PacketStructureElementVisitor visitor, ByteBuffer body, MMOBuffer buffer,
-			Map<FieldValueReadOption, ?> options, Map<String, FieldValue> fieldID2Value)
+	private static final <V extends FieldValue> void visitSingleElement(CompiledElement node, PacketStructureElementVisitor visitor, ByteBuffer body, MMOBuffer buffer,
+			Map<FieldValueReadOption, ?> options, FieldValue[] fieldValues)
 	{
-		if (element instanceof BranchElement)
+		final PacketStructureElement element = node._element;
+		if (node._type == CompiledElement.BRANCH)
 		{
 			final BranchElement branch = (BranchElement)element;
-			final String id = branch.getId();
 			Boolean conditionMet = null;
-			if (id != null)
+			if (node._slot >= 0)
 			{
-				final FieldValue valueToTest = fieldID2Value.get(branch.getId());
+				final FieldValue valueToTest = fieldValues[node._slot];
 				if (valueToTest == null)
 					throw new NullPointerException("Missing test value for " + branch);
 				
 				Throwable cause = null;
 				try
 				{
+					final FieldValueCondition anyCondition = node.getCondition();
 					if (valueToTest instanceof ByteArrayFieldValue)
 					{
-						final ByteArrayCondition condition = MetaclassRegistry.getInstance().getCondition(branch.getCondition(), ByteArrayCondition.class);
+						final ByteArrayCondition condition = expectCondition(anyCondition, branch, ByteArrayCondition.class);
 						final ByteArrayFieldValue value = (ByteArrayFieldValue)valueToTest;
 						conditionMet = condition.test(value.value());
 					}
 					else if (valueToTest instanceof DecimalFieldValue)
 					{
-						final DecimalCondition condition = MetaclassRegistry.getInstance().getCondition(branch.getCondition(), DecimalCondition.class);
+						final DecimalCondition condition = expectCondition(anyCondition, branch, DecimalCondition.class);
 						final DecimalFieldValue value = (DecimalFieldValue)valueToTest;
 						conditionMet = condition.test(value.value());
 					}
 					else if (valueToTest instanceof IntegerFieldValue)
 					{
-						final IntegerCondition condition = MetaclassRegistry.getInstance().getCondition(branch.getCondition(), IntegerCondition.class);
+						final IntegerCondition condition = expectCondition(anyCondition, branch, IntegerCondition.class);
 						final IntegerFieldValue value = (IntegerFieldValue)valueToTest;
 						conditionMet = condition.test(value.value());
 					}
 					else if (valueToTest instanceof StringFieldValue)
 					{
-						final StringCondition condition = MetaclassRegistry.getInstance().getCondition(branch.getCondition(), StringCondition.class);
+						final StringCondition condition = expectCondition(anyCondition, branch, StringCondition.class);
 						final StringFieldValue value = (StringFieldValue)valueToTest;
 						conditionMet = condition.test(value.value());
 					}
 					else
 					{
-						final FieldValueCondition condition = MetaclassRegistry.getInstance().getCondition(branch.getCondition(), FieldValueCondition.class);
+						final FieldValueCondition condition = expectCondition(anyCondition, branch, FieldValueCondition.class);
 						conditionMet = visitor.onCustomCondition(branch, condition, valueToTest);
 					}
 				}
@@ -259,15 +274,15 @@ public final class PacketTemplate implements IPacketTemplate, Comparable<OpcodeO
 			visitor.onBranch(branch, conditionMet);
 			
 			if (conditionMet == Boolean.TRUE)
-				for (final PacketStructureElement subElement : branch.getNodes())
-					visitSingleElement(subElement, visitor, body, buffer, options, fieldID2Value);
+				for (final CompiledElement subElement : node._nodes)
+					visitSingleElement(subElement, visitor, body, buffer, options, fieldValues);
 			
 			visitor.onBranchEnd(branch);
 		}
-		else if (element instanceof LoopElement)
+		else if (node._type == CompiledElement.LOOP)
 		{
 			final LoopElement loop = (LoopElement)element;
-			final FieldValue size = fieldID2Value.get(loop.getId());
+			final FieldValue size = node._slot >= 0 ? fieldValues[node._slot] : null;
 			if (size == null)
 				throw new NullPointerException("Missing size for " + loop);
 			
@@ -280,14 +295,14 @@ public final class PacketTemplate implements IPacketTemplate, Comparable<OpcodeO
 			for (int i = 0; i < iterationCount; ++i)
 			{
 				visitor.onLoopIterationStart(loop);
-				for (final PacketStructureElement subElement : loop.getNodes())
-					visitSingleElement(subElement, visitor, body, buffer, options, fieldID2Value);
+				for (final CompiledElement subElement : node._nodes)
+					visitSingleElement(subElement, visitor, body, buffer, options, fieldValues);
 				visitor.onLoopIterationEnd(loop);
 			}
 			
 			visitor.onLoopEnd(loop);
 		}
-		else if (element instanceof FieldElement)
+		else if (node._type == CompiledElement.FIELD)
 		{
 			final FieldElement<V> field = (FieldElement<V>)element;
 			
@@ -301,7 +316,7 @@ public final class PacketTemplate implements IPacketTemplate, Comparable<OpcodeO
 				{
 					if (field instanceof DynamicSizeByteArrayFieldElement)
 					{
-						final FieldValue size = fieldID2Value.get("bytesize");
+						final FieldValue size = node._sizeSlot >= 0 ? fieldValues[node._sizeSlot] : null;
 						if (size == null)
 							throw new NullPointerException("Missing size for " + field);
 						
@@ -404,11 +419,8 @@ public final class PacketTemplate implements IPacketTemplate, Comparable<OpcodeO
 					}
 				}
 			}
-			{
-				final String id = field.getID();
-				if (id != null)
-					fieldID2Value.put(id, value);
-			}
+			if (node._slot >= 0)
+				fieldValues[node._slot] = value;
 		}
 		else
 		{
@@ -416,6 +428,14 @@ public final class PacketTemplate implements IPacketTemplate, Comparable<OpcodeO
 		}
 	}
 	
+	private static final <T extends FieldValueCondition> T expectCondition(FieldValueCondition condition, BranchElement branch, Class<T> expectedClass) throws InvalidFieldValueConditionException
+	{
+		if (expectedClass.isInstance(condition))
+			return expectedClass.cast(condition);
+		
+		throw new InvalidFieldValueConditionException(condition, branch.getCondition(), expectedClass.getName());
+	}
+	
 	private static final void prepareForContextualReview(ByteBuffer body, Map<FieldValueReadOption, ?> options)
 	{
 		final Object ctx = options.get(FieldValueReadOption.COMPUTE_INTERPRETATION);
@@ -426,6 +446,104 @@ public final class PacketTemplate implements IPacketTemplate, Comparable<OpcodeO
 		context.getWireframe()._buffer.position(body.position());
 	}
 	
+	/** Packet structure with field IDs resolved to array slots, so that no map is needed while visiting. */
+	private static final class CompiledStructure
+	{
+		final CompiledElement[] _elements;
+		final int _fieldCount;
+		
+		CompiledStructure(List<PacketStructureElement> structure)
+		{
+			final Map<String, Integer> id2Slot = new HashMap<>();
+			_elements = compile(structure, id2Slot);
+			_fieldCount = id2Slot.size();
+		}
+		
+		private static CompiledElement[] compile(List<PacketStructureElement> elements, Map<String, Integer> id2Slot)
+		{
+			final CompiledElement[] result = new CompiledElement[elements.size()];
+			for (int i = 0; i < result.length; ++i)
+			{
+				final PacketStructureElement element = elements.get(i);
+				if (element instanceof BranchElement)
+				{
+					final BranchElement branch = (BranchElement)element;
+					result[i] = new CompiledElement(branch, CompiledElement.BRANCH, slotOf(branch.getId(), id2Slot), -1, compile(branch.getNodes(), id2Slot));
+				}
+				else if (element instanceof LoopElement)
+				{
+					final LoopElement loop = (LoopElement)element;
+					result[i] = new CompiledElement(loop, CompiledElement.LOOP, slotOf(loop.getId(), id2Slot), -1, compile(loop.getNodes(), id2Slot));
+				}
+				else if (element instanceof FieldElement)
+				{
+					final FieldElement<?> field = (FieldElement<?>)element;
+					final int sizeSlot = field instanceof DynamicSizeByteArrayFieldElement ? slotOf("bytesize", id2Slot) : -1;
+					result[i] = new CompiledElement(field, CompiledElement.FIELD, slotOf(field.getID(), id2Slot), sizeSlot, NO_ELEMENTS);
+				}
+				else
+					result[i] = new CompiledElement(element, CompiledElement.CUSTOM, -1, -1, NO_ELEMENTS);
+			}
+			return result;
+		}
+		
+		private static int slotOf(String id, Map<String, Integer> id2Slot)
+		{
+			if (id == null)
+				return -1;
+			
+			Integer slot = id2Slot.get(id);
+			if (slot == null)
+				id2Slot.put(id, slot = id2Slot.size());
+			return slot;
+		}
+	}
+	
+	/** A structure element with a pre-resolved type, field slots and branch condition. */
+	private static final class CompiledElement
+	{
+		static final int BRANCH = 0, LOOP = 1, FIELD = 2, CUSTOM = 3;
+		
+		final PacketStructureElement _element;
+		final int _type;
+		final int _slot, _sizeSlot;
+		final CompiledElement[] _nodes;
+		
+		private volatile BoundCondition _condition;
+		
+		CompiledElement(PacketStructureElement element, int type, int slot, int sizeSlot, CompiledElement[] nodes)
+		{
+			_element = element;
+			_type = type;
+			_slot = slot;
+			_sizeSlot = sizeSlot;
+			_nodes = nodes;
+		}
+		
+		FieldValueCondition getCondition()
+		{
+			// conditions can be (un)registered by scripts at any time
+			final MetaclassRegistry registry = MetaclassRegistry.getInstance();
+			final int version = registry.getConditionVersion();
+			BoundCondition bound = _condition;
+			if (bound == null || bound._version != version)
+				_condition = bound = new BoundCondition(version, registry.getCondition(((BranchElement)_element).getCondition()));
+			return bound._condition;
+		}
+	}
+	
+	private static final class BoundCondition
+	{
+		final int _version;
+		final FieldValueCondition _condition;
+		
+		BoundCondition(int version, FieldValueCondition condition)
+		{
+			_version = version;
+			_condition = condition;
+		}
+	}
+	
 	private static final boolean hasScriptAliases(PacketStructureElement element)
 	{
 		if (element instanceof StructureElementListElement)
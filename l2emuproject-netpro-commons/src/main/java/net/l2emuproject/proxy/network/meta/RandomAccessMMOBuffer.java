@@ -17,11 +17,16 @@ package net.l2emuproject.proxy.network.meta;
 
 import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
+import java.util.AbstractList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.RandomAccess;
 import java.util.Set;
 
+import net.l2emuproject.lang.L2TextBuilder;
 import net.l2emuproject.network.mmocore.MMOBuffer;
 import net.l2emuproject.network.protocol.IProtocolVersion;
 import net.l2emuproject.proxy.network.Proxy;
@@ -42,9 +47,40 @@ import net.l2emuproject.proxy.network.packets.IPacketSource;
  */
 public class RandomAccessMMOBuffer
 {
+	private static final int[] NO_ALIASES = new int[0];
+	private static final int[] NO_FIELD_STARTS = { 0 };
+	private static final int[] NO_OFFSETS = new int[0];
+	private static final FieldElement<?>[] NO_ELEMENTS = new FieldElement<?>[0];
+	
+	// we do not want MMOBuffer to depend on this class
+	private static final Field BUFFER_FIELD;
+	private static final NoSuchFieldException BUFFER_FIELD_FAILURE;
+	
+	static
+	{
+		Field field = null;
+		NoSuchFieldException failure = null;
+		try
+		{
+			field = MMOBuffer.class.getDeclaredField("_buffer");
+			field.setAccessible(true);
+		}
+		catch (NoSuchFieldException e)
+		{
+			failure = e;
+		}
+		BUFFER_FIELD = field;
+		BUFFER_FIELD_FAILURE = failure;
+	}
+	
 	final ByteBuffer _buffer;
 	private final MMOBuffer _buf;
-	private Map<String, List<EnumeratedPayloadField>> _fields;
+	// enumerated fields, grouped by alias in order of first occurrence
+	private int[] _aliasIDs;
+	private int[] _fieldStarts;
+	private int[] _offsets;
+	private FieldElement<?>[] _elements;
+	private Set<String> _allFields;
 	private String _packetName;
 	
 	// extension fields
@@ -62,20 +98,42 @@ public class RandomAccessMMOBuffer
 	 */
 	public RandomAccessMMOBuffer(final MMOBuffer buffer, IProtocolVersion protocol, IPacketSource packetAuthor)
 			throws IllegalAccessException, NoSuchFieldException
+	{
+		this(buffer, unwrap(buffer), protocol, packetAuthor);
+	}
+	
+	RandomAccessMMOBuffer(final MMOBuffer buffer, final ByteBuffer byteBuffer, IProtocolVersion protocol, IPacketSource packetAuthor)
 	{
 		_buf = buffer;
-		_fields = Collections.emptyMap();
+		_aliasIDs = NO_ALIASES;
+		_fieldStarts = NO_FIELD_STARTS;
+		_offsets = NO_OFFSETS;
+		_elements = NO_ELEMENTS;
+		_allFields = null;
 		_packetName = null;
 		
-		// we do not want MMOBuffer to depend on this class
-		final Field buf = MMOBuffer.class.getDeclaredField("_buffer");
-		buf.setAccessible(true);
-		_buffer = (ByteBuffer)buf.get(buffer);
+		_buffer = byteBuffer;
 		
 		_protocol = protocol;
 		_packetSource = packetAuthor;
 	}
 	
+	/**
+	 * Returns the byte buffer wrapped by the given buffer wrapper.
+	 * 
+	 * @param buffer a buffer wrapper
+	 * @return wrapped byte buffer
+	 * @throws IllegalAccessException if {@link MMOBuffer} API changes
+	 * @throws NoSuchFieldException if {@link MMOBuffer} API changes
+	 */
+	static ByteBuffer unwrap(MMOBuffer buffer) throws IllegalAccessException, NoSuchFieldException
+	{
+		if (BUFFER_FIELD == null)
+			throw (NoSuchFieldException)new NoSuchFieldException(BUFFER_FIELD_FAILURE.getMessage()).initCause(BUFFER_FIELD_FAILURE);
+		
+		return (ByteBuffer)BUFFER_FIELD.get(buffer);
+	}
+	
 	/**
 	 * Returns whether a specific field alias has an offset mapping (at least one).
 	 * 
@@ -84,7 +142,31 @@ public class RandomAccessMMOBuffer
 	 */
 	public boolean isEnumerated(String field)
 	{
-		return _fields.containsKey(field);
+		return indexOf(FieldAliasRegistry.getInstance().getId(field)) != -1;
+	}
+	
+	/**
+	 * Returns whether a specific field alias has an offset mapping (at least one).
+	 * 
+	 * @param aliasID interned field alias
+	 * @return whether a field can be seeked in this buffer
+	 * @see FieldAliasRegistry
+	 */
+	public boolean isEnumerated(int aliasID)
+	{
+		return indexOf(aliasID) != -1;
+	}
+	
+	private int indexOf(int aliasID)
+	{
+		if (aliasID == FieldAliasRegistry.UNKNOWN_ALIAS)
+			return -1;
+		
+		final int[] aliasIDs = _aliasIDs;
+		for (int i = 0; i < aliasIDs.length; ++i)
+			if (aliasIDs[i] == aliasID)
+				return i;
+		return -1;
 	}
 	
 	/**
@@ -286,9 +368,9 @@ public class RandomAccessMMOBuffer
 	 */
 	public List<EnumeratedPayloadField> getFieldIndices(String field)
 	{
-		final List<EnumeratedPayloadField> list = _fields.get(field);
-		if (list != null)
-			return list;
+		final int idx = indexOf(FieldAliasRegistry.getInstance().getId(field));
+		if (idx != -1)
+			return new FieldIndexList(_fieldStarts[idx], _fieldStarts[idx + 1]);
 		
 		return Collections.emptyList();
 	}
@@ -302,9 +384,12 @@ public class RandomAccessMMOBuffer
 	 */
 	public EnumeratedPayloadField getSingleFieldIndex(String field)
 	{
-		final List<EnumeratedPayloadField> list = getFieldIndices(field);
-		if (!list.isEmpty())
-			return list.get(0);
+		final int idx = indexOf(FieldAliasRegistry.getInstance().getId(field));
+		if (idx != -1)
+		{
+			final int start = _fieldStarts[idx];
+			return new EnumeratedPayloadField(_elements[start], _offsets[start]);
+		}
 		
 		return null;
 	}
@@ -359,12 +444,17 @@ public class RandomAccessMMOBuffer
 	 */
 	public Set<String> getAllFields()
 	{
-		return _fields.keySet();
-	}
-	
-	Map<String, List<EnumeratedPayloadField>> getEnumeratedFields()
-	{
-		return _fields;
+		Set<String> allFields = _allFields;
+		if (allFields != null)
+			return allFields;
+		
+		if (_aliasIDs.length == 0)
+			return _allFields = Collections.emptySet();
+		
+		allFields = new LinkedHashSet<>();
+		for (final int aliasID : _aliasIDs)
+			allFields.add(FieldAliasRegistry.getInstance().getAlias(aliasID));
+		return _allFields = Collections.unmodifiableSet(allFields);
 	}
 	
 	/**
@@ -374,7 +464,47 @@ public class RandomAccessMMOBuffer
 	 */
 	public void setEnumeratedFields(Map<String, List<EnumeratedPayloadField>> fields)
 	{
-		_fields = fields;
+		int total = 0;
+		for (final List<EnumeratedPayloadField> list : fields.values())
+			total += list.size();
+		
+		final int[] aliasIDs = new int[fields.size()];
+		final int[] fieldStarts = new int[aliasIDs.length + 1];
+		final int[] offsets = new int[total];
+		final FieldElement<?>[] elements = new FieldElement<?>[total];
+		int alias = 0, field = 0;
+		for (final Entry<String, List<EnumeratedPayloadField>> e : fields.entrySet())
+		{
+			aliasIDs[alias] = FieldAliasRegistry.getInstance().intern(e.getKey());
+			fieldStarts[alias++] = field;
+			for (final EnumeratedPayloadField epf : e.getValue())
+			{
+				offsets[field] = epf.getOffset();
+				elements[field++] = epf.getElement();
+			}
+		}
+		fieldStarts[alias] = field;
+		setEnumeratedFields(aliasIDs, fieldStarts, offsets, elements);
+	}
+	
+	/**
+	 * Stores the enumeration result in this buffer wrapper.<BR>
+	 * <BR>
+	 * Fields of the alias at {@code aliasIDs[i]} are stored in {@code offsets} and {@code elements} from {@code fieldStarts[i]} (inclusive) to
+	 * {@code fieldStarts[i + 1]} (exclusive). Arrays are taken over by this buffer wrapper.
+	 * 
+	 * @param aliasIDs distinct interned field aliases
+	 * @param fieldStarts field ranges of each alias
+	 * @param offsets field offsets
+	 * @param elements field elements
+	 */
+	void setEnumeratedFields(int[] aliasIDs, int[] fieldStarts, int[] offsets, FieldElement<?>[] elements)
+	{
+		_aliasIDs = aliasIDs;
+		_fieldStarts = fieldStarts;
+		_offsets = offsets;
+		_elements = elements;
+		_allFields = null;
 	}
 	
 	/**
@@ -424,6 +554,41 @@ public class RandomAccessMMOBuffer
 	@Override
 	public String toString()
 	{
-		return _buf + " " + _fields;
+		final L2TextBuilder tb = new L2TextBuilder().append(_buf).append(" {");
+		for (int i = 0; i < _aliasIDs.length; ++i)
+		{
+			if (i > 0)
+				tb.append(", ");
+			tb.append(FieldAliasRegistry.getInstance().getAlias(_aliasIDs[i])).append("=").append(new FieldIndexList(_fieldStarts[i], _fieldStarts[i + 1]));
+		}
+		return tb.append("}").moveToString();
+	}
+	
+	private final class FieldIndexList extends AbstractList<EnumeratedPayloadField> implements RandomAccess
+	{
+		private final int _start;
+		private final int _end;
+		
+		FieldIndexList(int start, int end)
+		{
+			_start = start;
+			_end = end;
+		}
+		
+		@Override
+		public EnumeratedPayloadField get(int index)
+		{
+			if (index < 0 || index >= _end - _start)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			
+			final int idx = _start + index;
+			return new EnumeratedPayloadField(_elements[idx], _offsets[idx]);
+		}
+		
+		@Override
+		public int size()
+		{
+			return _end - _start;
+		}
 	}
 }
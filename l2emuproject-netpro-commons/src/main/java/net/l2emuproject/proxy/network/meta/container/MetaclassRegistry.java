@@ -17,6 +17,7 @@ package net.l2emuproject.proxy.network.meta.container;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import net.l2emuproject.proxy.network.meta.FieldValueCondition;
@@ -54,10 +55,12 @@ public class MetaclassRegistry
 	private final Map<String, FieldValueCondition> _conditions;
 	private final Map<String, FieldValueTranslator> _interpreters;
 	private final Map<String, FieldValueModifier> _modifiers;
+	private final AtomicInteger _conditionVersion;
 	
 	MetaclassRegistry()
 	{
 		_conditions = new ConcurrentHashMap<>();
+		_conditionVersion = new AtomicInteger();
 		_interpreters = new ConcurrentHashMap<>();
 		_modifiers = new ConcurrentHashMap<>();
 		
@@ -116,6 +119,7 @@ public class MetaclassRegistry
 	public void register(String alias, FieldValueCondition condition)
 	{
 		_conditions.put(alias, condition);
+		_conditionVersion.incrementAndGet();
 	}
 	
 	/**
@@ -126,7 +130,29 @@ public class MetaclassRegistry
 	 */
 	public void remove(String alias, FieldValueCondition condition)
 	{
-		_conditions.remove(alias, condition);
+		if (_conditions.remove(alias, condition))
+			_conditionVersion.incrementAndGet();
+	}
+	
+	/**
+	 * Returns a value that changes every time a condition is registered or removed. Allows callers to cache the results of {@link #getCondition(String)}.
+	 * 
+	 * @return condition set version
+	 */
+	public int getConditionVersion()
+	{
+		return _conditionVersion.get();
+	}
+	
+	/**
+	 * Returns a condition of any type.
+	 * 
+	 * @param alias condition alias
+	 * @return condition or {@code null}
+	 */
+	public FieldValueCondition getCondition(String alias)
+	{
+		return _conditions.get(alias);
 	}
 	
 	/**
@@ -19,18 +19,21 @@ import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Map;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import net.l2emuproject.lang.L2TextBuilder;
 import net.l2emuproject.proxy.network.meta.IPacketTemplate;
 import net.l2emuproject.proxy.network.meta.PacketTemplate;
-import net.l2emuproject.util.concurrent.MapUtils;
 import net.l2emuproject.util.logging.L2Logger;
 
 /**
- * A generic resolver that determines the packet type based on predefined prefixes.
+ * A generic resolver that determines the packet type based on predefined prefixes.<BR>
+ * <BR>
+ * Prefixes are stored in a table of 256-wide arrays, one level per opcode byte, which is built once and never modified afterwards.
+ * Templates for unknown prefixes are created on demand and kept aside from the table.
  * 
  * @author _dev_
  */
@@ -38,8 +41,9 @@ public final class PacketPrefixResolver implements IPacketResolver
 {
 	private static final L2Logger LOG = L2Logger.getLogger(PacketPrefixResolver.class);
 	
-	private final Map<Byte, Object> _trie;
-	private final Set<IPacketTemplate> _allTemplates;
+	private final PrefixNode _root;
+	private final Set<IPacketTemplate> _definedTemplates;
+	private final Set<IPacketTemplate> _unknownTemplates;
 	
 	/**
 	 * Constructs a resolver for the given templates.
@@ -49,113 +53,181 @@ public final class PacketPrefixResolver implements IPacketResolver
 	 */
 	public PacketPrefixResolver(Collection<IPacketTemplate> templates) throws IllegalArgumentException
 	{
-		_trie = new ConcurrentHashMap<>();
-		_allTemplates = new CopyOnWriteArraySet<>();
+		_root = new PrefixNode();
+		final Set<IPacketTemplate> definedTemplates = new HashSet<>();
 		for (final IPacketTemplate template : templates)
 		{
-			final Object conflictingObject = registerPrefix(_trie, template, 0);
+			final Object conflictingObject = registerPrefix(template);
 			if (conflictingObject == null)
 			{
-				_allTemplates.add(template);
+				definedTemplates.add(template);
 				continue;
 			}
 			
-			if (conflictingObject instanceof IPacketTemplate)
-				LOG.warn("Cannot add resolution for " + template + " as it conflicts with " + conflictingObject);
-			else
-				LOG.warn("Cannot add resolution for " + template + " as it conflicts with " + ((Map<?, ?>)conflictingObject).values());
+			LOG.warn("Cannot add resolution for " + template + " as it conflicts with " + conflictingObject);
 		}
+		_definedTemplates = Collections.unmodifiableSet(definedTemplates);
+		_unknownTemplates = ConcurrentHashMap.newKeySet();
 	}
 	
-	@SuppressWarnings("unchecked")
-	private Object registerPrefix(Map<Byte, Object> trie, IPacketTemplate template, int prefixOffset) throws IllegalArgumentException
+	private Object registerPrefix(IPacketTemplate template) throws IllegalArgumentException
 	{
 		final byte[] prefix = template.getPrefix();
-		final int remaining = prefix.length - prefixOffset;
-		if (remaining < 1)
+		if (prefix.length < 1)
 			throw new IllegalArgumentException();
 		
-		final Byte key = Byte.valueOf(prefix[prefixOffset]);
-		if (remaining == 1)
-			return trie.putIfAbsent(key, template);
+		PrefixNode node = _root;
+		for (int i = 0; i < prefix.length - 1; ++i)
+		{
+			final int key = prefix[i] & 0xFF;
+			final Object nextLevelObject = node._next[key];
+			if (nextLevelObject instanceof IPacketTemplate)
+				return nextLevelObject;
+			
+			if (nextLevelObject == null)
+				node._next[key] = node = new PrefixNode();
+			else
+				node = (PrefixNode)nextLevelObject;
+		}
+		
+		final int key = prefix[prefix.length - 1] & 0xFF;
+		final Object existing = node._next[key];
+		if (existing != null)
+			return existing;
 		
-		Object nextLevelObject = trie.get(key);
-		if (nextLevelObject == null)
-			nextLevelObject = MapUtils.putIfAbsent(trie, key, new ConcurrentHashMap<>());
-		return nextLevelObject instanceof IPacketTemplate ? nextLevelObject : registerPrefix((Map<Byte, Object>)nextLevelObject, template, prefixOffset + 1);
+		node._next[key] = template;
+		return null;
 	}
 	
 	@Override
 	public IPacketTemplate resolve(byte[] packet, int offset, int length)
 	{
-		return resolve(_trie, packet, offset, offset, length);
-	}
-	
-	@SuppressWarnings("unchecked")
-	private IPacketTemplate resolve(Map<Byte, Object> trie, byte[] packet, int originalOffset, int offset, int length)
-	{
-		if (length < 1)
-			return null;
-		
-		final Byte key = Byte.valueOf(packet[offset]);
-		final Object nextLevelObject = trie.get(key);
-		
-		if (nextLevelObject == null)
+		PrefixNode node = _root;
+		for (int i = offset, end = offset + length; i < end; ++i)
 		{
-			final IPacketTemplate fakeTemplate = new PacketTemplate(Arrays.copyOfRange(packet, originalOffset, offset + 1));
-			final IPacketTemplate result = (IPacketTemplate)MapUtils.putIfAbsent(trie, key, fakeTemplate);
-			if (result == fakeTemplate)
-				_allTemplates.add(result);
-			return result;
+			final int key = packet[i] & 0xFF;
+			final Object nextLevelObject = node._next[key];
+			if (nextLevelObject instanceof IPacketTemplate)
+				return (IPacketTemplate)nextLevelObject;
+			
+			if (nextLevelObject == null)
+			{
+				final IPacketTemplate known = node.getUnknown(key);
+				return known != null ? known : registerUnknown(node, key, Arrays.copyOfRange(packet, offset, i + 1));
+			}
+			
+			node = (PrefixNode)nextLevelObject;
 		}
-		
-		if (nextLevelObject instanceof IPacketTemplate)
-			return (IPacketTemplate)nextLevelObject;
-		
-		return resolve((Map<Byte, Object>)nextLevelObject, packet, originalOffset, offset + 1, length - 1);
+		return null;
 	}
 	
 	@Override
 	public IPacketTemplate resolve(ByteBuffer packet)
 	{
-		return resolve(_trie, packet, packet.position());
+		final int originalPosition = packet.position();
+		PrefixNode node = _root;
+		while (packet.hasRemaining())
+		{
+			final int key = packet.get() & 0xFF;
+			final Object nextLevelObject = node._next[key];
+			if (nextLevelObject instanceof IPacketTemplate)
+				return (IPacketTemplate)nextLevelObject;
+			
+			if (nextLevelObject == null)
+			{
+				final IPacketTemplate known = node.getUnknown(key);
+				if (known != null)
+					return known;
+				
+				final byte[] prefix = new byte[packet.position() - originalPosition];
+				packet.position(originalPosition);
+				packet.get(prefix);
+				return registerUnknown(node, key, prefix);
+			}
+			
+			node = (PrefixNode)nextLevelObject;
+		}
+		return null;
 	}
 	
-	@SuppressWarnings("unchecked")
-	private IPacketTemplate resolve(Map<Byte, Object> trie, ByteBuffer packet, int originalPosition)
+	private IPacketTemplate registerUnknown(PrefixNode node, int key, byte[] prefix)
 	{
-		if (packet.remaining() < 1)
-			return null;
-		
-		final Byte key = Byte.valueOf(packet.get());
-		final Object nextLevelObject = trie.get(key);
-		
-		if (nextLevelObject == null)
-		{
-			final byte[] prefix = new byte[packet.position() - originalPosition];
-			packet.position(originalPosition);
-			packet.get(prefix);
-			final IPacketTemplate fakeTemplate = new PacketTemplate(prefix);
-			final IPacketTemplate result = (IPacketTemplate)MapUtils.putIfAbsent(trie, key, fakeTemplate);
-			if (result == fakeTemplate)
-				_allTemplates.add(result);
-			return result;
-		}
-		
-		if (nextLevelObject instanceof IPacketTemplate)
-			return (IPacketTemplate)nextLevelObject;
-		
-		return resolve((Map<Byte, Object>)nextLevelObject, packet, originalPosition);
+		final IPacketTemplate fakeTemplate = new PacketTemplate(prefix);
+		final IPacketTemplate result = node.putUnknownIfAbsent(key, fakeTemplate);
+		if (result == fakeTemplate)
+			_unknownTemplates.add(result);
+		return result;
 	}
 	
 	Set<IPacketTemplate> getAllTemplates()
 	{
-		return Collections.unmodifiableSet(_allTemplates);
+		if (_unknownTemplates.isEmpty())
+			return _definedTemplates;
+		
+		final Set<IPacketTemplate> result = new HashSet<>(_definedTemplates);
+		result.addAll(_unknownTemplates);
+		return Collections.unmodifiableSet(result);
 	}
 	
 	@Override
 	public String toString()
 	{
-		return _allTemplates.toString();
+		return getAllTemplates().toString();
+	}
+	
+	/** A single opcode byte level of the prefix table. */
+	private static final class PrefixNode
+	{
+		/** Either a {@link IPacketTemplate}, a nested {@link PrefixNode} or {@code null} for each possible byte value. Not modified after construction. */
+		final Object[] _next;
+		/** Templates created for unknown byte values on this level. */
+		private volatile AtomicReferenceArray<IPacketTemplate> _unknown;
+		
+		PrefixNode()
+		{
+			_next = new Object[256];
+		}
+		
+		IPacketTemplate getUnknown(int key)
+		{
+			final AtomicReferenceArray<IPacketTemplate> unknown = _unknown;
+			return unknown != null ? unknown.get(key) : null;
+		}
+		
+		IPacketTemplate putUnknownIfAbsent(int key, IPacketTemplate template)
+		{
+			AtomicReferenceArray<IPacketTemplate> unknown = _unknown;
+			if (unknown == null)
+			{
+				synchronized (this)
+				{
+					unknown = _unknown;
+					if (unknown == null)
+						_unknown = unknown = new AtomicReferenceArray<>(_next.length);
+				}
+			}
+			
+			if (unknown.compareAndSet(key, null, template))
+				return template;
+			return unknown.get(key);
+		}
+		
+		@Override
+		public String toString()
+		{
+			final L2TextBuilder tb = new L2TextBuilder("[");
+			boolean first = true;
+			for (final Object o : _next)
+			{
+				if (o == null)
+					continue;
+				
+				if (!first)
+					tb.append(", ");
+				tb.append(o);
+				first = false;
+			}
+			return tb.append("]").moveToString();
+		}
 	}
 }
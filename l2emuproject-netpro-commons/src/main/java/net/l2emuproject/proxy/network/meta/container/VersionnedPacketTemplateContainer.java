@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 import net.l2emuproject.network.protocol.IProtocolVersion;
@@ -31,7 +32,10 @@ import net.l2emuproject.proxy.network.EndpointType;
 import net.l2emuproject.proxy.network.meta.IPacketTemplate;
 
 /**
- * A packet template container that maps packet opcodes to packet templates based on protocol version in use.
+ * A packet template container that maps packet opcodes to packet templates based on protocol version in use.<BR>
+ * <BR>
+ * The resolver to be used for a protocol version and endpoint type (including any alternative mode fallbacks) is determined once and memorized.
+ * As a new container is created whenever packet definitions are reloaded, memorized resolvers never outlive the definitions they were taken from.
  * 
  * @author _dev_
  * @param <T> protocol type
@@ -40,6 +44,7 @@ public class VersionnedPacketTemplateContainer<T extends IProtocolVersion>
 {
 	private final Map<T, Map<EndpointType, PacketPrefixResolver>> _containers;
 	private final Map<Set<String>, T> _fallbacks;
+	private final Map<T, PacketPrefixResolver[]> _resolvers;
 	
 	/**
 	 * Creates a versionned packet template container.
@@ -49,6 +54,7 @@ public class VersionnedPacketTemplateContainer<T extends IProtocolVersion>
 	public VersionnedPacketTemplateContainer(Map<T, Map<EndpointType, PacketPrefixResolver>> containers)
 	{
 		_containers = containers;
+		_resolvers = new ConcurrentHashMap<>();
 		
 		_fallbacks = new HashMap<>();
 		for (final Entry<T, Map<EndpointType, PacketPrefixResolver>> e : containers.entrySet()) {
@@ -85,15 +91,7 @@ public class VersionnedPacketTemplateContainer<T extends IProtocolVersion>
 	 */
 	public IPacketTemplate getTemplate(T version, EndpointType endpoint, byte[] packet, int offset, int length)
 	{
-		final Map<EndpointType, PacketPrefixResolver> map = _containers.get(version);
-		if (map == null)
-			return getTemplate(getFallback(version.getAltModes()), endpoint, packet, offset, length);
-		
-		final PacketPrefixResolver container = map.get(endpoint);
-		if (container == null)
-			return getTemplate(getFallback(version.getAltModes()), endpoint, packet, offset, length);
-		
-		return container.resolve(packet);
+		return getResolver(version, endpoint).resolve(packet, offset, length);
 	}
 	
 	/**
@@ -108,15 +106,7 @@ public class VersionnedPacketTemplateContainer<T extends IProtocolVersion>
 	 */
 	public IPacketTemplate getTemplate(T version, EndpointType endpoint, ByteBuffer packet)
 	{
-		final Map<EndpointType, PacketPrefixResolver> map = _containers.get(version);
-		if (map == null)
-			return getTemplate(getFallback(version.getAltModes()), endpoint, packet);
-		
-		final PacketPrefixResolver container = map.get(endpoint);
-		if (container == null)
-			return getTemplate(getFallback(version.getAltModes()), endpoint, packet);
-		
-		return container.resolve(packet);
+		return getResolver(version, endpoint).resolve(packet);
 	}
 	
 	/**
@@ -128,15 +118,51 @@ public class VersionnedPacketTemplateContainer<T extends IProtocolVersion>
 	 */
 	public Stream<IPacketTemplate> getTemplates(T version, EndpointType endpoint)
 	{
-		final Map<EndpointType, PacketPrefixResolver> map = _containers.get(version);
-		if (map == null)
-			return getTemplates(getFallback(version.getAltModes()), endpoint);
-		
-		final PacketPrefixResolver container = map.get(endpoint);
-		if (container == null)
-			return getTemplates(getFallback(version.getAltModes()), endpoint);
+		return getResolver(version, endpoint).getAllTemplates().stream();
+	}
+	
+	/**
+	 * Returns the packet resolver to be used for client/server packets in the specified protocol version.
+	 * If there are no packet definitions for the given version, the resolver of its fallback version is returned.
+	 * 
+	 * @param version protocol version
+	 * @param endpoint endpoint type
+	 * @return packet resolver
+	 * @throws IllegalArgumentException if no packet definitions (including fallbacks) are available
+	 */
+	public PacketPrefixResolver getResolver(T version, EndpointType endpoint) throws IllegalArgumentException
+	{
+		PacketPrefixResolver[] resolvers = _resolvers.get(version);
+		if (resolvers == null)
+		{
+			final EndpointType[] endpoints = EndpointType.values();
+			resolvers = new PacketPrefixResolver[endpoints.length];
+			for (final EndpointType type : endpoints)
+				resolvers[type.ordinal()] = findResolver(version, type);
+			_resolvers.put(version, resolvers);
+		}
 		
-		return container.getAllTemplates().stream();
+		final PacketPrefixResolver resolver = resolvers[endpoint.ordinal()];
+		if (resolver == null)
+			throw new IllegalArgumentException("No " + endpoint + " packet definitions for " + version);
+		return resolver;
+	}
+	
+	private PacketPrefixResolver findResolver(T version, EndpointType endpoint)
+	{
+		for (T current = version; current != null;)
+		{
+			final Map<EndpointType, PacketPrefixResolver> map = _containers.get(current);
+			final PacketPrefixResolver container = map != null ? map.get(endpoint) : null;
+			if (container != null)
+				return container;
+			
+			final T fallback = getFallback(current.getAltModes());
+			if (fallback == current)
+				break;
+			current = fallback;
+		}
+		return null;
 	}
 	
 	/**
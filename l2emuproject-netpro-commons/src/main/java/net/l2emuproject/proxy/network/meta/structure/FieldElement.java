@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.Set;
 
 import net.l2emuproject.network.mmocore.MMOBuffer;
+import net.l2emuproject.proxy.network.meta.FieldAliasRegistry;
 import net.l2emuproject.proxy.network.meta.exception.InvalidFieldValueInterpreterException;
 import net.l2emuproject.proxy.network.meta.exception.InvalidFieldValueModifierException;
 import net.l2emuproject.proxy.network.meta.structure.field.FieldValue;
@@ -46,6 +47,8 @@ public abstract class FieldElement<V extends FieldValue> implements PacketStruct
 	private final String _valueModifier;
 	private final String _valueInterpreter;
 	
+	private volatile int[] _fieldAliasIDs;
+	
 	/**
 	 * Constructs this field element.
 	 * 
@@ -110,6 +113,25 @@ public abstract class FieldElement<V extends FieldValue> implements PacketStruct
 		return _fieldAliases;
 	}
 	
+	/**
+	 * Returns interned IDs of all names used by various scripts to refer to this field within a packet.
+	 * 
+	 * @return field alias IDs for scripts
+	 * @see FieldAliasRegistry
+	 */
+	public int[] getFieldAliasIDs()
+	{
+		int[] ids = _fieldAliasIDs;
+		if (ids != null)
+			return ids;
+		
+		ids = new int[_fieldAliases.size()];
+		int i = 0;
+		for (final String alias : _fieldAliases)
+			ids[i++] = FieldAliasRegistry.getInstance().intern(alias);
+		return _fieldAliasIDs = ids;
+	}
+	
 	/**
 	 * Whether it is possible that this field may not be included within the packet.
 	 * 
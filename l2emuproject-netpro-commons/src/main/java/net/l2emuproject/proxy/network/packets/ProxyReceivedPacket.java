@@ -17,12 +17,10 @@ package net.l2emuproject.proxy.network.packets;
 
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 import net.l2emuproject.network.mmocore.InvalidPacketException;
 import net.l2emuproject.network.mmocore.MMOBuffer;
 import net.l2emuproject.network.mmocore.ReceivablePacket;
-import net.l2emuproject.proxy.network.ByteBufferUtils;
 import net.l2emuproject.proxy.network.FloatingPacketManager;
 import net.l2emuproject.proxy.network.Packet;
 import net.l2emuproject.proxy.network.Proxy;
@@ -100,22 +98,22 @@ public abstract class ProxyReceivedPacket extends ReceivablePacket<Proxy, ProxyR
 	@Override
 	protected final void read(MMOBuffer buf) throws BufferUnderflowException, RuntimeException
 	{
-		// read the whole packet body into a dedicated buffer
+		// read the whole packet body into a dedicated array
 		// since there's no access to the real buffer anyway
-		final ByteBuffer immutable;
+		// this array is also what will be transmitted, unless somebody modifies the packet
+		final Packet pack;
 		{
-			int bodySize = buf.getAvailableBytes();
-			byte[] bytes = new byte[1 + bodySize]; // opcode + body
+			final int bodySize = buf.getAvailableBytes();
+			final byte[] bytes = new byte[1 + bodySize]; // opcode + body
 			bytes[0] = (byte)_opcode;
 			buf.readB(bytes, 1, bodySize);
-			immutable = ByteBufferUtils.asReadOnly(ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN));
+			// create a wrapper for modification control
+			pack = new Packet(bytes);
 		}
 		
-		// create a wrapper for modification control
-		final Packet pack = new Packet(immutable);
-		
 		// apply internal modifications
 		{
+			final ByteBuffer immutable = pack.getReceivedBody();
 			// provide with a MMOBuffer that was passed here
 			final MMOBuffer buf2 = new MMOBuffer();
 			buf2.setByteBuffer(immutable);
@@ -29,6 +29,8 @@ import net.l2emuproject.proxy.network.Proxy;
 public final class ProxyRepeatedPacket extends SendablePacket<Proxy, ProxyReceivedPacket, ProxyRepeatedPacket>
 {
 	private final byte[] _body;
+	private long _receptionNanoTime;
+	private boolean _latencyMeasured;
 	
 	/**
 	 * Constructs a sendable packet.
@@ -62,9 +64,27 @@ public final class ProxyRepeatedPacket extends SendablePacket<Proxy, ProxyReceiv
 			_body = body.array();
 	}
 	
+	/**
+	 * Associates this packet with the arrival time of the packet that is being forwarded.
+	 * When this packet is written, the elapsed time will be recorded as forwarding latency.
+	 * 
+	 * @param receptionNanoTime arrival time, as given by {@link System#nanoTime()}
+	 * @return {@code this}
+	 */
+	public ProxyRepeatedPacket setReceptionNanoTime(long receptionNanoTime)
+	{
+		_receptionNanoTime = receptionNanoTime;
+		// System.nanoTime() may legitimately return 0, so it cannot double as "not set"
+		_latencyMeasured = true;
+		return this;
+	}
+	
 	@Override
 	protected void write(Proxy client, MMOBuffer buf) throws RuntimeException
 	{
 		buf.writeB(_body);
+		
+		if (_latencyMeasured)
+			client.recordForwardingLatency(System.nanoTime() - _receptionNanoTime);
 	}
 }
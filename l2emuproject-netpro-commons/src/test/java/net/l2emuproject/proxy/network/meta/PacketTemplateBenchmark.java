@@ -0,0 +1,230 @@
+/*
+ * Copyright 2011-2015 L2EMU UNIQUE
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.l2emuproject.proxy.network.meta;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import net.l2emuproject.proxy.network.meta.structure.BranchElement;
+import net.l2emuproject.proxy.network.meta.structure.LoopElement;
+import net.l2emuproject.proxy.network.meta.structure.PacketStructureElement;
+import net.l2emuproject.proxy.network.meta.structure.field.FieldValueReadOption;
+import net.l2emuproject.proxy.network.meta.structure.field.bytes.AbstractByteArrayFieldElement;
+import net.l2emuproject.proxy.network.meta.structure.field.bytes.ByteArrayFieldValue;
+import net.l2emuproject.proxy.network.meta.structure.field.bytes.DynamicSizeByteArrayFieldElement;
+import net.l2emuproject.proxy.network.meta.structure.field.decimal.AbstractDecimalFieldElement;
+import net.l2emuproject.proxy.network.meta.structure.field.decimal.DecimalFieldValue;
+import net.l2emuproject.proxy.network.meta.structure.field.decimal.DoublePrecisionFPElement;
+import net.l2emuproject.proxy.network.meta.structure.field.integer.AbstractIntegerFieldElement;
+import net.l2emuproject.proxy.network.meta.structure.field.integer.Int16FieldElement;
+import net.l2emuproject.proxy.network.meta.structure.field.integer.Int32FieldElement;
+import net.l2emuproject.proxy.network.meta.structure.field.integer.Int64FieldElement;
+import net.l2emuproject.proxy.network.meta.structure.field.integer.Int8FieldElement;
+import net.l2emuproject.proxy.network.meta.structure.field.integer.IntegerFieldValue;
+import net.l2emuproject.proxy.network.meta.structure.field.string.AbstractStringFieldElement;
+import net.l2emuproject.proxy.network.meta.structure.field.string.NulTerminatedUTF16StringElement;
+import net.l2emuproject.proxy.network.meta.structure.field.string.StringFieldValue;
+
+/**
+ * Measures how fast {@link PacketTemplate#visitStructureElements(PacketStructureElementVisitor, ByteBuffer, Map)} walks packets of a typical structure: a few
+ * header fields, a loop over item entries with a conditional part, and a sized byte array.<BR>
+ * <BR>
+ * This is not a unit test. The harness only uses API that predates compiled structures, so the same class can be run against an older {@code PacketTemplate} for
+ * comparison. Run it with the test classpath:
+ * 
+ * <PRE>
+ * java -cp ... net.l2emuproject.proxy.network.meta.PacketTemplateBenchmark [packets] [rounds]
+ * </PRE>
+ * 
+ * The defaults are 10000 packets and 10 rounds, after as many warm-up rounds.
+ * 
+ * @author _dev_
+ */
+public class PacketTemplateBenchmark
+{
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args amount of distinct packets and amount of measured rounds
+	 */
+	public static void main(String[] args)
+	{
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+		final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		
+		final PacketTemplate template = new PacketTemplate(new byte[] { 0x11 }, "ItemList", structure(), null);
+		final Random rnd = new Random(0);
+		final byte[][] packets = new byte[count][];
+		long bytes = 0;
+		for (int i = 0; i < count; ++i)
+			bytes += (packets[i] = packet(rnd)).length;
+		
+		final Map<FieldValueReadOption, ?> options = new EnumMap<>(FieldValueReadOption.class);
+		final CountingVisitor visitor = new CountingVisitor();
+		for (int round = -rounds; round < rounds; ++round)
+		{
+			visitor._fields = 0;
+			final long start = System.nanoTime();
+			for (final byte[] packet : packets)
+				template.visitStructureElements(visitor, ByteBuffer.wrap(packet).order(ByteOrder.LITTLE_ENDIAN), options);
+			final long elapsed = System.nanoTime() - start;
+			if (visitor._failures > 0)
+				throw new IllegalStateException(visitor._failures + " packets could not be walked");
+			if (round >= 0)
+				System.out.printf("Round %d: %d packets (%d KiB, %d fields) in %d ms, %.0f ns/packet, %.1f ns/field%n", round + 1, count, bytes >> 10, visitor._fields,
+						elapsed / 1_000_000, elapsed / (double)count, elapsed / (double)visitor._fields);
+		}
+	}
+	
+	private static List<PacketStructureElement> structure()
+	{
+		final List<PacketStructureElement> item = Arrays.asList(d("objectID"), d("itemID"), new Int64FieldElement("count", "Count", false, Collections.emptySet(), null, null),
+				new Int16FieldElement("enchant", "Enchant level", false, Collections.emptySet(), null, null),
+				new BranchElement("enchant", "Positive", Arrays.asList(d("augmentation1"), d("augmentation2"))), d("mana"));
+		return Arrays.asList(d("objectID"), new NulTerminatedUTF16StringElement("name", "Name", false, Collections.emptySet(), null, null),
+				new Int8FieldElement("race", "Race", false, Collections.emptySet(), null, null), new DoublePrecisionFPElement("x", "X", false, Collections.emptySet(), null, null),
+				d("items"), new LoopElement("items", item), d("bytesize"), new DynamicSizeByteArrayFieldElement("data", "Data", false, Collections.emptySet(), null, null));
+	}
+	
+	private static Int32FieldElement d(String id)
+	{
+		return new Int32FieldElement(id, id, false, Collections.emptySet(), null, null);
+	}
+	
+	private static byte[] packet(Random rnd)
+	{
+		final byte[] name = ("Player" + rnd.nextInt(1_000)).getBytes(StandardCharsets.UTF_16LE);
+		final int items = rnd.nextInt(40), data = rnd.nextInt(64);
+		final ByteBuffer buf = ByteBuffer.allocate(4 + name.length + 2 + 1 + 8 + 4 + items * (4 + 4 + 8 + 2 + 8 + 4) + 4 + data).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(0x10000000 + rnd.nextInt(1 << 16)).put(name).putChar('\0').put((byte)rnd.nextInt(6)).putDouble(rnd.nextDouble() * 100_000).putInt(items);
+		for (int i = 0; i < items; ++i)
+		{
+			buf.putInt(0x10000000 + rnd.nextInt(1 << 16)).putInt(rnd.nextInt(20_000)).putLong(1 + rnd.nextInt(1_000));
+			final int enchant = rnd.nextInt(4) == 0 ? 1 + rnd.nextInt(16) : 0;
+			buf.putShort((short)enchant);
+			if (enchant > 0)
+				buf.putInt(rnd.nextInt()).putInt(rnd.nextInt());
+			buf.putInt(-1);
+		}
+		buf.putInt(data).put(new byte[data]);
+		return Arrays.copyOf(buf.array(), buf.position());
+	}
+	
+	private static final class CountingVisitor implements PacketStructureElementVisitor
+	{
+		long _fields;
+		long _failures;
+		
+		CountingVisitor()
+		{
+			_fields = 0;
+			_failures = 0;
+		}
+		
+		@Override
+		public void onStart(int bytesWithoutOpcodes)
+		{
+			// nothing to do
+		}
+		
+		@Override
+		public void onBranch(BranchElement element, boolean conditionMet)
+		{
+			// nothing to do
+		}
+		
+		@Override
+		public void onBranchEnd(BranchElement element)
+		{
+			// nothing to do
+		}
+		
+		@Override
+		public void onLoopStart(LoopElement element, int expectedIterations)
+		{
+			// nothing to do
+		}
+		
+		@Override
+		public void onLoopIterationStart(LoopElement element)
+		{
+			// nothing to do
+		}
+		
+		@Override
+		public void onLoopIterationEnd(LoopElement element)
+		{
+			// nothing to do
+		}
+		
+		@Override
+		public void onLoopEnd(LoopElement element)
+		{
+			// nothing to do
+		}
+		
+		@Override
+		public void onByteArrayField(AbstractByteArrayFieldElement element, ByteArrayFieldValue value)
+		{
+			++_fields;
+		}
+		
+		@Override
+		public void onDecimalField(AbstractDecimalFieldElement element, DecimalFieldValue value)
+		{
+			++_fields;
+		}
+		
+		@Override
+		public void onIntegerField(AbstractIntegerFieldElement element, IntegerFieldValue value)
+		{
+			++_fields;
+		}
+		
+		@Override
+		public void onStringField(AbstractStringFieldElement element, StringFieldValue value)
+		{
+			++_fields;
+		}
+		
+		@Override
+		public void onAbruptTermination(BufferUnderflowException e, int remainingBytes)
+		{
+			++_failures;
+		}
+		
+		@Override
+		public void onException(Exception e, int remainingBytes)
+		{
+			++_failures;
+		}
+		
+		@Override
+		public void onCompletion(int remainingBytes)
+		{
+			if (remainingBytes != 0)
+				++_failures;
+		}
+	}
+}